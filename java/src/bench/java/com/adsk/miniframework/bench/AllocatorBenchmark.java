@@ -0,0 +1,75 @@
+package com.adsk.miniframework.bench;
+
+import com.adsk.miniframework.Application;
+import com.adsk.miniframework.ExecutorSpec;
+import com.adsk.miniframework.MiniAllocator;
+import com.adsk.miniframework.OfferPool;
+import com.adsk.miniframework.ResourceVector;
+import com.adsk.miniframework.TaskRegistry;
+import com.adsk.miniframework.allocation.AllocationPolicies;
+import com.adsk.miniframework.sim.SimulatedDriver;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.mesos.Protos.*;
+import org.openjdk.jmh.annotations.*;
+
+//
+// - One allocation round: every offer pooled, placed by the policy and accepted
+// - Rounds launch tasks, so each invocation starts again from the same untouched demand;
+// - building it isn't measured.
+//
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class AllocatorBenchmark
+{
+	@Param({"naive", "batch", "drf", "binpack", "spread", "optimal"})
+	public String policy;
+	
+	@Param({"10", "100"})
+	public int apps;
+	
+	@Param({"10", "100"})
+	public int offers;
+	
+	private List<Offer> offerList;
+	private MiniAllocator allocator;
+	private OfferPool pool;
+	private SimulatedDriver driver;
+	
+	@Setup(Level.Trial)
+	public void makeOffers()
+	{
+		this.offerList = new ArrayList<Offer>(this.offers);
+		for (int i = 0; i < this.offers; i++)
+		{
+			this.offerList.add(Fixtures.offer(i, 8, 32768));
+		}
+	}
+	
+	@Setup(Level.Invocation)
+	public void makeDemand() throws Exception
+	{
+		HashMap<String, Application> registered = new HashMap<String, Application>();
+		for (int a = 0; a < this.apps; a++)
+		{
+			Application app = Fixtures.app("app-" + a, 2, 10);
+			registered.put(app.name, app);
+		}
+		this.allocator = new MiniAllocator(registered, new TaskRegistry(), 10, ResourceVector.of(Double.MAX_VALUE, Double.MAX_VALUE),
+										AllocationPolicies.forName(this.policy));
+		this.pool = new OfferPool(0);
+		this.driver = new SimulatedDriver();
+	}
+	
+	@Benchmark
+	public List<TaskInfo> allocate()
+	{
+		this.pool.add(this.offerList, 0);
+		return this.allocator.allocate(this.driver, this.pool, 0);
+	}
+}
@@ -0,0 +1,61 @@
+package com.adsk.miniframework.bench;
+
+import com.adsk.miniframework.Application;
+
+import java.util.concurrent.TimeUnit;
+
+import org.apache.mesos.Protos.*;
+import org.openjdk.jmh.annotations.*;
+
+//
+// - Task bookkeeping: a task launched, running and stopped again, in an app that already
+// - has a number of live tasks
+//
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class ApplicationBenchmark
+{
+	private static final int CYCLE = 1024;
+	
+	@Param({"1", "10"})
+	public int executors;
+	
+	@Param({"100", "10000"})
+	public int liveTasks;
+	
+	private Application app;
+	private String[] names;
+	private TaskID[] cycle;
+	private int next;
+	
+	@Setup(Level.Trial)
+	public void makeApp() throws Exception
+	{
+		this.app = Fixtures.app("app", this.executors, this.liveTasks + CYCLE);
+		this.names = this.app.getExecutors().keySet().toArray(new String[0]);
+		
+		for (int i = 0; i < this.liveTasks; i++)
+		{
+			String name = this.names[i % this.names.length];
+			this.app.putLaunchedTask(name, Fixtures.task(i));
+			this.app.putRunningTask(name, Fixtures.task(i));
+		}
+		
+		this.cycle = new TaskID[CYCLE];
+		for (int i = 0; i < CYCLE; i++)
+		{
+			this.cycle[i] = Fixtures.task(this.liveTasks + i);
+		}
+	}
+	
+	@Benchmark
+	public boolean launchRunStop()
+	{
+		int i = this.next++ & (CYCLE - 1);
+		String name = this.names[i % this.names.length];
+		this.app.putLaunchedTask(name, this.cycle[i]);
+		this.app.putRunningTask(name, this.cycle[i]);
+		return this.app.putStoppedTask(name, this.cycle[i]);
+	}
+}
@@ -0,0 +1,175 @@
+package com.adsk.miniframework.bench;
+
+import java.io.File;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.TreeMap;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+//
+// - Runs the benchmarks with the GC profiler, so every result carries its allocation rate,
+// - and compares throughput and bytes allocated per op against a baseline
+// - Arguments are passed on to JMH (a benchmark regex, -f, -wi, -i, ...). System properties:
+// - bench.results (JMH's json, default target/jmh-result.json), bench.baseline (default
+// - src/bench/baseline.json), bench.tolerance (default 0.1) and bench.record, which writes the
+// - results as the new baseline instead of comparing.
+// - Exits with 1 when anything regressed beyond the tolerance.
+//
+public class Benchmarks
+{
+	//
+	// - Secondary metrics of the GC profiler; JMH prefixes them with a middle dot
+	//
+	private static final String ALLOC_RATE = "\u00b7gc.alloc.rate";
+	private static final String ALLOC_NORM = "\u00b7gc.alloc.rate.norm";
+	
+	//
+	// - Allocation per op is noisy by a few bytes even when nothing changed
+	//
+	private static final double ALLOC_SLACK_BYTES = 16;
+	
+	private static final ObjectMapper mapper = new ObjectMapper();
+	
+	public static void main(String[] args) throws Exception
+	{
+		File results = new File(System.getProperty("bench.results", "target/jmh-result.json"));
+		File baseline = new File(System.getProperty("bench.baseline", "src/bench/baseline.json"));
+		double tolerance = Double.parseDouble(System.getProperty("bench.tolerance", "0.1"));
+		
+		Options options = new OptionsBuilder()
+							.parent(new CommandLineOptions(args))
+							.addProfiler(GCProfiler.class)
+							.resultFormat(ResultFormatType.JSON)
+							.result(results.getPath())
+							.build();
+		new Runner(options).run();
+		
+		ObjectNode summary = summarise(mapper.readTree(results));
+		if (Boolean.getBoolean("bench.record"))
+		{
+			mapper.writerWithDefaultPrettyPrinter().writeValue(baseline, summary);
+			System.out.println("Recorded " + summary.size() + " results as the baseline in " + baseline);
+			return;
+		}
+		if (!baseline.exists())
+		{
+			System.out.println("No baseline at " + baseline + "; run with -Dbench.record=true to record one");
+			return;
+		}
+		
+		int regressions = compare(summary, (ObjectNode) mapper.readTree(baseline), tolerance);
+		if (regressions > 0)
+		{
+			System.out.println(regressions + " benchmarks regressed by more than " + (int) (tolerance * 100) + "%");
+			System.exit(1);
+		}
+	}
+	
+	//
+	// - One entry per benchmark and parameter combination: throughput, allocation rate (MB/s)
+	// - and bytes allocated per op
+	//
+	static ObjectNode summarise(JsonNode results)
+	{
+		ObjectNode summary = mapper.createObjectNode();
+		for (JsonNode result : results)
+		{
+			ObjectNode entry = summary.putObject(key(result));
+			entry.put("score", result.path("primaryMetric").path("score").asDouble());
+			entry.put("unit", result.path("primaryMetric").path("scoreUnit").asText());
+			
+			JsonNode secondary = result.path("secondaryMetrics");
+			if (secondary.has(ALLOC_RATE))
+			{
+				entry.put("allocRate", secondary.get(ALLOC_RATE).path("score").asDouble());
+			}
+			if (secondary.has(ALLOC_NORM))
+			{
+				entry.put("allocPerOp", secondary.get(ALLOC_NORM).path("score").asDouble());
+			}
+		}
+		return summary;
+	}
+	
+	//
+	// - Returns the number of regressions; benchmarks missing on either side are only reported
+	//
+	static int compare(ObjectNode current, ObjectNode baseline, double tolerance)
+	{
+		int regressions = 0;
+		Iterator<Map.Entry<String, JsonNode>> entries = current.fields();
+		while (entries.hasNext())
+		{
+			Map.Entry<String, JsonNode> entry = entries.next();
+			JsonNode now = entry.getValue();
+			JsonNode before = baseline.get(entry.getKey());
+			if (before == null)
+			{
+				System.out.println("NEW   " + entry.getKey() + ": " + format(now));
+				continue;
+			}
+			
+			double score = now.path("score").asDouble();
+			double baseScore = before.path("score").asDouble();
+			boolean slower = score < baseScore * (1 - tolerance);
+			boolean heavier = now.has("allocPerOp") && before.has("allocPerOp")
+							&& now.get("allocPerOp").asDouble() > before.get("allocPerOp").asDouble() * (1 + tolerance) + ALLOC_SLACK_BYTES;
+			
+			String change = String.format("%+.1f%%", baseScore > 0 ? 100 * (score - baseScore) / baseScore : 0);
+			System.out.println((slower || heavier ? "WORSE " : "OK    ") + entry.getKey() + ": " + format(now) + " (" + change
+								+ " vs " + format(before) + ")");
+			if (slower || heavier)
+			{
+				regressions++;
+			}
+		}
+		
+		Iterator<String> names = baseline.fieldNames();
+		while (names.hasNext())
+		{
+			String name = names.next();
+			if (!current.has(name))
+			{
+				System.out.println("GONE  " + name);
+			}
+		}
+		return regressions;
+	}
+	
+	private static String key(JsonNode result)
+	{
+		TreeMap<String, String> params = new TreeMap<String, String>();
+		Iterator<Map.Entry<String, JsonNode>> fields = result.path("params").fields();
+		while (fields.hasNext())
+		{
+			Map.Entry<String, JsonNode> field = fields.next();
+			params.put(field.getKey(), field.getValue().asText());
+		}
+		String benchmark = result.path("benchmark").asText();
+		return params.isEmpty() ? benchmark : benchmark + params;
+	}
+	
+	private static String format(JsonNode entry)
+	{
+		String formatted = String.format("%.1f %s", entry.path("score").asDouble(), entry.path("unit").asText());
+		if (entry.has("allocPerOp"))
+		{
+			formatted += String.format(", %.0f B/op", entry.get("allocPerOp").asDouble());
+		}
+		if (entry.has("allocRate"))
+		{
+			formatted += String.format(", %.0f MB/s", entry.get("allocRate").asDouble());
+		}
+		return formatted;
+	}
+}
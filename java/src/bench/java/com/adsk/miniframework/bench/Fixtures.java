@@ -0,0 +1,46 @@
+package com.adsk.miniframework.bench;
+
+import com.adsk.miniframework.Application;
+import com.adsk.miniframework.ExecutorSpec;
+import com.adsk.miniframework.ResourceVector;
+
+import org.apache.mesos.Protos.*;
+
+//
+// - Apps and offers shared by the benchmarks
+//
+final class Fixtures
+{
+	private Fixtures()
+	{
+	}
+	
+	//
+	// - Executors of 1 cpu and 1GB each
+	//
+	static Application app(String name, int executors, int instances) throws Exception
+	{
+		Application app = new Application(name);
+		for (int e = 0; e < executors; e++)
+		{
+			app.putExecutorSpec(new ExecutorSpec(name + "-executor-" + e, "benchmark", "true", false, 1, 1024, instances, null));
+		}
+		return app;
+	}
+	
+	static Offer offer(int agent, double cpu, double mem)
+	{
+		return Offer.newBuilder()
+				.setId(OfferID.newBuilder().setValue("offer-" + agent))
+				.setFrameworkId(FrameworkID.newBuilder().setValue("benchmark"))
+				.setSlaveId(SlaveID.newBuilder().setValue("agent-" + agent))
+				.setHostname("host-" + agent)
+				.addAllResources(ResourceVector.of(cpu, mem).toResources())
+				.build();
+	}
+	
+	static TaskID task(int i)
+	{
+		return TaskID.newBuilder().setValue("task-" + i).build();
+	}
+}
@@ -0,0 +1,75 @@
+package com.adsk.miniframework.bench;
+
+import com.adsk.miniframework.Application;
+import com.adsk.miniframework.ExecutorSpec;
+import com.adsk.miniframework.MiniScheduler;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.*;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+//
+// - Rendering through Serializers.ApplicationSerializer and ExecutorSpecSerializer, as the
+// - REST api and the published scheduler state do
+//
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class SerializerBenchmark
+{
+	@Param({"1", "10"})
+	public int executors;
+	
+	@Param({"10", "1000"})
+	public int tasksPerExecutor;
+	
+	private ObjectMapper mapper;
+	private Application app;
+	private ExecutorSpec eSpec;
+	
+	@Setup(Level.Trial)
+	public void makeApp() throws Exception
+	{
+		this.mapper = MiniScheduler.getObjectMapper();
+		this.app = Fixtures.app("app", this.executors, this.tasksPerExecutor);
+		
+		int task = 0;
+		for (String name : this.app.getExecutors().keySet())
+		{
+			for (int i = 0; i < this.tasksPerExecutor; i++, task++)
+			{
+				this.app.putLaunchedTask(name, Fixtures.task(task));
+				
+				//
+				// - Half of them running
+				//
+				if ((i & 1) == 0)
+				{
+					this.app.putRunningTask(name, Fixtures.task(task));
+				}
+			}
+		}
+		this.eSpec = this.app.getExecutors().values().iterator().next();
+	}
+	
+	@Benchmark
+	public byte[] application() throws Exception
+	{
+		return this.mapper.writeValueAsBytes(this.app);
+	}
+	
+	@Benchmark
+	public JsonNode applicationTree()
+	{
+		return this.mapper.valueToTree(this.app);
+	}
+	
+	@Benchmark
+	public byte[] executorSpec() throws Exception
+	{
+		return this.mapper.writeValueAsBytes(this.eSpec);
+	}
+}
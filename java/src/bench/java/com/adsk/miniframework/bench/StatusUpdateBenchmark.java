@@ -0,0 +1,81 @@
+package com.adsk.miniframework.bench;
+
+import com.adsk.miniframework.Application;
+import com.adsk.miniframework.ExecutorSpec;
+import com.adsk.miniframework.MiniScheduler;
+import com.adsk.miniframework.sim.SimulatedDriver;
+import com.adsk.miniframework.sim.Simulation;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.mesos.Protos.*;
+import org.openjdk.jmh.annotations.*;
+
+//
+// - Status updates through the whole scheduler: callback, loop, registry lookup, reconciler,
+// - acknowledgement and the once-per-batch work, for a burst of updates at a time
+// - The cluster is brought up with the simulator; the updates repeat TASK_RUNNING for running
+// - tasks, as the master does when it retries, so every invocation sees the same state.
+//
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class StatusUpdateBenchmark
+{
+	private static final int BURST = 256;
+	
+	private MiniScheduler scheduler;
+	private SimulatedDriver driver;
+	private List<TaskStatus> statuses;
+	private int next;
+	
+	@Setup(Level.Trial)
+	public void launch() throws Exception
+	{
+		Simulation.Config config = new Simulation.Config();
+		config.agents = 100;
+		config.apps = 10;
+		config.executorsPerApp = 2;
+		config.instances = 20;
+		
+		Simulation simulation = new Simulation(config);
+		Simulation.Report report = simulation.run();
+		if (report.running != report.target)
+		{
+			throw new IllegalStateException("Simulated cluster didn't launch: " + report);
+		}
+		this.scheduler = simulation.getScheduler();
+		this.driver = simulation.getDriver();
+		
+		this.statuses = new ArrayList<TaskStatus>();
+		for (String name : this.scheduler.getRegisteredAppNames())
+		{
+			Application app = this.scheduler.getSpecs(name);
+			for (ExecutorSpec eSpec : app.getExecutors().values())
+			{
+				for (TaskID task : eSpec.getRunningTasks())
+				{
+					this.statuses.add(TaskStatus.newBuilder()
+									.setTaskId(task)
+									.setExecutorId(eSpec.executor.getExecutorId())
+									.setState(TaskState.TASK_RUNNING)
+									.build());
+				}
+			}
+		}
+	}
+	
+	@Benchmark
+	@OperationsPerInvocation(BURST)
+	public long burst() throws InterruptedException
+	{
+		for (int i = 0; i < BURST; i++)
+		{
+			this.scheduler.statusUpdate(this.driver, this.statuses.get(this.next++ % this.statuses.size()));
+		}
+		this.scheduler.awaitIdle();
+		return this.driver.getAcknowledged();
+	}
+}
@@ -0,0 +1,242 @@
+package com.adsk.miniframework;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.mesos.Protos.*;
+
+//
+// - What we know about agents for placement constraints: hostname and attributes, refreshed
+// - from every offer, and how many instances of each constrained executor sit on each value
+// - of the attributes it's constrained on. Checking a constraint is then a couple of map
+// - lookups instead of a scan over running tasks. Scheduler loop only.
+//
+public class AgentIndex
+{
+	//
+	// - Extra placements to count on top of the launched ones, e.g. made earlier in the same round
+	//
+	public interface Counts
+	{
+		int get(ExecutorSpec executor, String attribute, String value);
+	}
+	
+	public static final Counts NONE = (executor, attribute, value) -> 0;
+	
+	//
+	// - attribute -> value, with the hostname under Constraint.HOSTNAME
+	//
+	private final HashMap<String, Map<String, String>> agents;
+	
+	//
+	// - attribute -> value -> number of agents with it; the values GROUP_BY spreads over
+	//
+	private final HashMap<String, HashMap<String, Integer>> values;
+	
+	//
+	// - executor -> attribute -> value -> instances, for executors with counting constraints
+	//
+	private final IdentityHashMap<ExecutorSpec, HashMap<String, HashMap<String, Integer>>> counts;
+	
+	private static class Placed
+	{
+		final ExecutorSpec executor;
+		final List<String[]> values;
+		
+		Placed(ExecutorSpec executor)
+		{
+			this.executor = executor;
+			this.values = new ArrayList<String[]>();
+		}
+	}
+	private final HashMap<String, Placed> tasks;
+	
+	public AgentIndex()
+	{
+		this.agents = new HashMap<String, Map<String, String>>();
+		this.values = new HashMap<String, HashMap<String, Integer>>();
+		this.counts = new IdentityHashMap<ExecutorSpec, HashMap<String, HashMap<String, Integer>>>();
+		this.tasks = new HashMap<String, Placed>();
+	}
+	
+	//
+	// - Agents can come back with different attributes, so every offer refreshes its agent
+	//
+	public void observe(Offer offer)
+	{
+		HashMap<String, String> attributes = new HashMap<String, String>();
+		attributes.put(Constraint.HOSTNAME, offer.getHostname());
+		for (Attribute attribute : offer.getAttributesList())
+		{
+			attributes.put(attribute.getName(), text(attribute));
+		}
+		
+		String slaveId = offer.getSlaveId().getValue();
+		Map<String, String> known = this.agents.get(slaveId);
+		if (attributes.equals(known)) return;
+		
+		this.forgetSlave(slaveId);
+		this.agents.put(slaveId, attributes);
+		for (Map.Entry<String, String> entry : attributes.entrySet())
+		{
+			HashMap<String, Integer> seen = this.values.get(entry.getKey());
+			if (seen == null)
+			{
+				seen = new HashMap<String, Integer>();
+				this.values.put(entry.getKey(), seen);
+			}
+			Integer n = seen.get(entry.getValue());
+			seen.put(entry.getValue(), n == null ? 1 : n + 1);
+		}
+	}
+	
+	public void forgetSlave(String slaveId)
+	{
+		Map<String, String> attributes = this.agents.remove(slaveId);
+		if (attributes == null) return;
+		
+		for (Map.Entry<String, String> entry : attributes.entrySet())
+		{
+			HashMap<String, Integer> seen = this.values.get(entry.getKey());
+			Integer n = seen.get(entry.getValue());
+			if (n <= 1) seen.remove(entry.getValue());
+			else seen.put(entry.getValue(), n - 1);
+		}
+	}
+	
+	public String getValue(String slaveId, String attribute)
+	{
+		Map<String, String> attributes = this.agents.get(slaveId);
+		return attributes == null ? null : attributes.get(attribute);
+	}
+	
+	public Collection<String> getValues(String attribute)
+	{
+		HashMap<String, Integer> seen = this.values.get(attribute);
+		return seen == null ? Collections.<String>emptySet() : seen.keySet();
+	}
+	
+	public int getCount(ExecutorSpec executor, String attribute, String value)
+	{
+		HashMap<String, HashMap<String, Integer>> byAttribute = this.counts.get(executor);
+		if (byAttribute == null) return 0;
+		HashMap<String, Integer> byValue = byAttribute.get(attribute);
+		if (byValue == null) return 0;
+		Integer n = byValue.get(value);
+		return n == null ? 0 : n;
+	}
+	
+	//
+	// - Whether an instance of the executor may go on the slave, counting extra placements too
+	//
+	public boolean allows(ExecutorSpec executor, String slaveId, Counts extra)
+	{
+		for (Constraint constraint : executor.getConstraints())
+		{
+			String value = this.getValue(slaveId, constraint.attribute);
+			if (value == null || !constraint.matches(value)) return false;
+			if (!constraint.isCounting()) continue;
+			
+			int count = this.getCount(executor, constraint.attribute, value) + extra.get(executor, constraint.attribute, value);
+			if (constraint.operator == Constraint.Operator.GROUP_BY)
+			{
+				for (String other : this.getValues(constraint.attribute))
+				{
+					int otherCount = this.getCount(executor, constraint.attribute, other) + extra.get(executor, constraint.attribute, other);
+					if (otherCount < count) return false;
+				}
+			}
+			else if (count >= constraint.getLimit())
+			{
+				return false;
+			}
+		}
+		return true;
+	}
+	
+	//
+	// - Count a launched instance against the values of its slave; only constrained executors are tracked
+	//
+	public void taskLaunched(ExecutorSpec executor, TaskID task, String slaveId)
+	{
+		Placed placed = null;
+		for (Constraint constraint : executor.getConstraints())
+		{
+			String value = this.getValue(slaveId, constraint.attribute);
+			if (!constraint.isCounting() || value == null) continue;
+			
+			if (placed == null)
+			{
+				placed = new Placed(executor);
+				this.tasks.put(task.getValue(), placed);
+			}
+			placed.values.add(new String[] { constraint.attribute, value });
+			this.adjust(executor, constraint.attribute, value, 1);
+		}
+	}
+	
+	public void taskStopped(TaskID task)
+	{
+		Placed placed = this.tasks.remove(task.getValue());
+		if (placed == null) return;
+		
+		for (String[] value : placed.values)
+		{
+			this.adjust(placed.executor, value[0], value[1], -1);
+		}
+	}
+	
+	private void adjust(ExecutorSpec executor, String attribute, String value, int delta)
+	{
+		HashMap<String, HashMap<String, Integer>> byAttribute = this.counts.get(executor);
+		if (byAttribute == null)
+		{
+			byAttribute = new HashMap<String, HashMap<String, Integer>>();
+			this.counts.put(executor, byAttribute);
+		}
+		HashMap<String, Integer> byValue = byAttribute.get(attribute);
+		if (byValue == null)
+		{
+			byValue = new HashMap<String, Integer>();
+			byAttribute.put(attribute, byValue);
+		}
+		
+		Integer n = byValue.get(value);
+		int count = (n == null ? 0 : n) + delta;
+		if (count > 0) byValue.put(value, count);
+		else byValue.remove(value);
+		
+		if (byValue.isEmpty()) byAttribute.remove(attribute);
+		if (byAttribute.isEmpty()) this.counts.remove(executor);
+	}
+	
+	//
+	// - Attribute values as text: text as is, scalars as numbers, ranges and sets the way mesos prints them
+	//
+	private static String text(Attribute attribute)
+	{
+		switch (attribute.getType())
+		{
+		case TEXT:
+			return attribute.getText().getValue();
+		case SCALAR:
+			double scalar = attribute.getScalar().getValue();
+			return scalar == Math.rint(scalar) ? Long.toString((long) scalar) : Double.toString(scalar);
+		case SET:
+			return "{" + String.join(",", attribute.getSet().getItemList()) + "}";
+		default:
+			StringBuilder ranges = new StringBuilder("[");
+			for (Value.Range range : attribute.getRanges().getRangeList())
+			{
+				if (ranges.length() > 1) ranges.append(",");
+				ranges.append(range.getBegin()).append("-").append(range.getEnd());
+			}
+			return ranges.append("]").toString();
+		}
+	}
+}
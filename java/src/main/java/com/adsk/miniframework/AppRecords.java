@@ -0,0 +1,58 @@
+package com.adsk.miniframework;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+
+//
+// - Each app's snapshot records (see StateLog.encodeApp()), kept between snapshots
+// - Usage listeners mark changed apps dirty, the same way SchedulerState does, and only those
+// - are encoded again when the next snapshot is captured; the rest is handed over as is.
+// - Scheduler loop only.
+//
+class AppRecords implements Application.UsageListener
+{
+	private final Reconciler reconciler;
+	private final IdentityHashMap<Application, List<byte[]>> encoded;
+	private final IdentityHashMap<Application, Boolean> dirty;
+	
+	AppRecords(Reconciler reconciler)
+	{
+		this.reconciler = reconciler;
+		this.encoded = new IdentityHashMap<Application, List<byte[]>>();
+		this.dirty = new IdentityHashMap<Application, Boolean>();
+	}
+	
+	public void appAdded(Application app)
+	{
+		app.addUsageListener(this);
+		this.dirty.put(app, Boolean.TRUE);
+	}
+	
+	public void appRemoved(Application app)
+	{
+		app.removeUsageListener(this);
+		this.dirty.remove(app);
+		this.encoded.remove(app);
+	}
+	
+	@Override
+	public void usageChanged(Application app)
+	{
+		this.dirty.put(app, Boolean.TRUE);
+	}
+	
+	//
+	// - Records of every app, up to date
+	//
+	public List<List<byte[]>> collect() throws IOException
+	{
+		for (Application app : this.dirty.keySet())
+		{
+			this.encoded.put(app, StateLog.encodeApp(app, this.reconciler::getSlave));
+		}
+		this.dirty.clear();
+		return new ArrayList<List<byte[]>>(this.encoded.values());
+	}
+}
@@ -26,24 +26,51 @@ public class Application
 	private HashMap<String, ExecutorSpec> executors;
 	
 	//
-	// - allocated resources
+	// - allocated resources (launched + running tasks)
 	//
 	private int allocInstances;
-	private double allocCpu;
-	private double allocMem;
+	private ResourceVector allocated;
+	
+	//
+	// - Running totals across all executors, kept up to date by the task transitions
+	// - so the getters below don't have to walk every executor
+	//
+	private int numLaunched;
+	private int numRunning;
+	private ResourceVector used;
 
 	//
 	// - Flags for app termination
 	//
 	private boolean appTerminated;
+	
+	//
+	// - Share of instances relative to other apps when they compete for offers; 1 by default
+	//
+	private int weight;
+	
+	//
+	// - Told on every task transition, spec change and termination (e.g. the DRF queue re-ranking
+	// - the app, the pending index, the published state)
+	//
+	private List<UsageListener> usageListeners;
+	
+	public interface UsageListener
+	{
+		void usageChanged(Application app);
+	}
 
 	public Application(String name)
 	{
 		this.name = name;
 		this.allocInstances = 0;
-		this.allocCpu = 0;
-		this.allocMem = 0;
+		this.allocated = new ResourceVector();
+		this.numLaunched = 0;
+		this.numRunning = 0;
+		this.used = new ResourceVector();
 		this.executors = new HashMap<String, ExecutorSpec>();
+		this.usageListeners = new ArrayList<UsageListener>();
+		this.weight = 1;
 	}
 
 	//
@@ -54,12 +81,32 @@ public class Application
 		if(this.executors.containsKey(executorInfo.getName())) return;
 		ExecutorSpec executor = new ExecutorSpec(executorInfo, reqCpu, reqMem, instances, verbatim);
 		this.executors.put(executorInfo.getName(), executor);
+		this.notifyUsageChanged();
 	}
 	
 	public void putExecutorSpec(ExecutorSpec executorSpec)
 	{
 		if(this.executors.containsKey(executorSpec.executor.getName())) return;
 		this.executors.put(executorSpec.executor.getName(), executorSpec);
+		
+		//
+		// - Specs normally arrive empty, but count anything they already carry
+		//
+		int launched = executorSpec.getNumLaunched();
+		int running = executorSpec.getNumRunning();
+		if (launched + running > 0)
+		{
+			this.numLaunched += launched;
+			this.numRunning += running;
+			this.allocInstances += launched + running;
+			this.allocated.add(executorSpec.getRequired(), launched + running);
+			this.used.add(executorSpec.getRequired(), running);
+		}
+		
+		//
+		// - New demand either way
+		//
+		this.notifyUsageChanged();
 	}
 	
 	//
@@ -70,28 +117,93 @@ public class Application
 		//
 		// - Just keeping track of tasks launched; could use a hashtable....
 		//
+		ExecutorSpec executor = this.executors.get(executorName);
+		if (!executor.putLaunchedTask(task)) return;
+		
 		this.allocInstances++;
-		this.allocCpu += this.executors.get(executorName).getRequiredCpu();
-		this.allocMem += this.executors.get(executorName).getRequiredMem();
-		this.executors.get(executorName).putLaunchedTask(task);
+		this.allocated.add(executor.getRequired(), 1);
+		this.numLaunched++;
+		this.notifyUsageChanged();
 	}
 	
-	public void putRunningTask(String executorName, TaskID task)
+	//
+	// - The transitions below return whether they changed anything
+	//
+	public boolean putRunningTask(String executorName, TaskID task)
 	{
-		this.executors.get(executorName).removeLaunchedTask(task);
-		this.executors.get(executorName).putRunningTask(task);
+		//
+		// - Only tasks we launched can start running; repeated updates are ignored
+		//
+		ExecutorSpec executor = this.executors.get(executorName);
+		if (executor.transitionTask(task, TaskTable.State.RUNNING) == null) return false;
+		
+		this.numLaunched--;
+		this.numRunning++;
+		this.used.add(executor.getRequired(), 1);
+		this.notifyUsageChanged();
+		return true;
 	}
 
-	public void putStoppedTask(String executorName, TaskID task)
+	public boolean putStoppedTask(String executorName, TaskID task)
+	{
+		return this.putStoppedTask(executorName, task, TaskTable.State.FINISHED);
+	}
+	
+	public boolean putStoppedTask(String executorName, TaskID task, TaskTable.State state)
 	{
 		//
-		// - Again, keeping track of tasks stopped
+		// - Again, keeping track of tasks stopped; unknown tasks don't touch the counters
 		//
+		ExecutorSpec executor = this.executors.get(executorName);
+		TaskTable.State previous = executor.transitionTask(task, state);
+		if (previous == null) return false;
+		boolean wasLaunched = previous == TaskTable.State.STAGED;
+		
 		this.allocInstances--;
-		this.allocCpu -= this.executors.get(executorName).getRequiredCpu();
-		this.allocMem -= this.executors.get(executorName).getRequiredMem();
-		this.executors.get(executorName).removeLaunchedTask(task);
-		this.executors.get(executorName).removeRunningTask(task);
+		this.allocated.add(executor.getRequired(), -1);
+		
+		if (wasLaunched)
+		{
+			this.numLaunched--;
+		}
+		else
+		{
+			this.numRunning--;
+			this.used.add(executor.getRequired(), -1);
+		}
+		
+		//
+		// - Don't let floating point residue linger once nothing is held
+		//
+		if (this.allocInstances == 0)
+		{
+			this.allocated.clear();
+		}
+		if (this.numRunning == 0)
+		{
+			this.used.clear();
+		}
+		
+		this.notifyUsageChanged();
+		return true;
+	}
+	
+	public void addUsageListener(UsageListener listener)
+	{
+		this.usageListeners.add(listener);
+	}
+	
+	public void removeUsageListener(UsageListener listener)
+	{
+		this.usageListeners.remove(listener);
+	}
+	
+	private void notifyUsageChanged()
+	{
+		for (UsageListener listener : this.usageListeners)
+		{
+			listener.usageChanged(this);
+		}
 	}
 	
 	//
@@ -105,6 +217,25 @@ public class Application
 		}
 		this.appTerminated = true;
 		
+		this.stopAllTasks(driver, payload);
+		this.notifyUsageChanged();
+	}
+	
+	//
+	// - Terminated in an earlier run of the scheduler; its kills go out again once registered
+	//
+	public void restoreTerminated()
+	{
+		if (this.appTerminated)
+		{
+			return;
+		}
+		this.appTerminated = true;
+		this.notifyUsageChanged();
+	}
+	
+	public void stopAllTasks(SchedulerDriver driver, byte[] payload)
+	{
 		for (ExecutorSpec executor : this.executors.values())
 		{
 			executor.stopAllTasks(driver, payload);
@@ -119,6 +250,20 @@ public class Application
 		return this.appTerminated;
 	}
 	
+	public int getWeight()
+	{
+		return this.weight;
+	}
+	
+	public void setWeight(int weight)
+	{
+		if (weight < 1)
+		{
+			throw new IllegalArgumentException("Weight of " + this.name + " must be at least 1, got " + weight);
+		}
+		this.weight = weight;
+	}
+	
 	public HashMap<String, ExecutorSpec> getExecutors()
 	{
 		return this.executors;
@@ -126,22 +271,12 @@ public class Application
 	
 	public int getNumRunning()
 	{
-		int sum = 0;
-		for (ExecutorSpec executor : this.executors.values())
-		{
-			sum += executor.getNumRunning();
-		}
-		return sum;
+		return this.numRunning;
 	}
 	
 	public int getNumLaunched()
 	{
-		int sum = 0;
-		for (ExecutorSpec executor : this.executors.values())
-		{
-			sum += executor.getNumLaunched();
-		}
-		return sum;
+		return this.numLaunched;
 	}
 	
 	public List<TaskID> getLaunchedTasks()
@@ -169,22 +304,53 @@ public class Application
 	//
 	public double getCpuUsed()
 	{
-		double sum = 0;
-		for (ExecutorSpec executor : this.executors.values())
-		{
-			sum += executor.getRequiredCpu() * executor.getNumRunning();
-		}
-		return sum;
+		return this.used.getCpu();
 	}
 	
 	public double getMemUsed()
 	{
-		double sum = 0;
-		for (ExecutorSpec executor : this.executors.values())
-		{
-			sum += executor.getRequiredMem() * executor.getNumRunning();
-		}
-		return sum;
+		return this.used.getMem();
+	}
+	
+	//
+	// - Full vectors; treat these as read-only
+	//
+	public ResourceVector getUsed()
+	{
+		return this.used;
+	}
+	
+	public ResourceVector getAllocated()
+	{
+		return this.allocated;
+	}
+	
+	//
+	// - Resources held by launched and running tasks
+	//
+	public int getAllocInstances()
+	{
+		return this.allocInstances;
+	}
+	
+	public double getAllocCpu()
+	{
+		return this.allocated.getCpu();
+	}
+	
+	public double getAllocMem()
+	{
+		return this.allocated.getMem();
+	}
+	
+	//
+	// - Largest fraction of any cluster resource held by this app (DRF)
+	//
+	public double getDominantShare(double totalCpu, double totalMem)
+	{
+		double cpuShare = totalCpu > 0 ? this.allocated.getCpu() / totalCpu : 0;
+		double memShare = totalMem > 0 ? this.allocated.getMem() / totalMem : 0;
+		return Math.max(cpuShare, memShare);
 	}
 		
 	//
@@ -0,0 +1,142 @@
+package com.adsk.miniframework;
+
+import java.util.regex.Pattern;
+
+//
+// - Placement rule on an executor, evaluated against agent attributes (see AgentIndex)
+// - Same vocabulary as Marathon: "hostname:UNIQUE", "rack:MAX_PER:2", "zone:GROUP_BY",
+// - "os:EQUALS:linux", "rack:LIKE:rack-[1-3]". "hostname" is the agent's hostname,
+// - anything else is one of its attributes; agents without the attribute never match.
+//
+public class Constraint
+{
+	public static final String HOSTNAME = "hostname";
+	
+	public enum Operator
+	{
+		EQUALS,
+		LIKE,
+		UNIQUE,
+		MAX_PER,
+		GROUP_BY
+	}
+	
+	public final String attribute;
+	public final Operator operator;
+	private final String value;
+	private final Pattern pattern;
+	private final int limit;
+	
+	private Constraint(String attribute, Operator operator, String value, int limit)
+	{
+		this.attribute = attribute;
+		this.operator = operator;
+		this.value = value;
+		this.pattern = operator == Operator.LIKE ? Pattern.compile(value) : null;
+		this.limit = limit;
+	}
+	
+	public static Constraint equalTo(String attribute, String value)
+	{
+		return new Constraint(attribute, Operator.EQUALS, value, 0);
+	}
+	
+	public static Constraint like(String attribute, String regex)
+	{
+		return new Constraint(attribute, Operator.LIKE, regex, 0);
+	}
+	
+	//
+	// - At most one instance per attribute value
+	//
+	public static Constraint unique(String attribute)
+	{
+		return new Constraint(attribute, Operator.UNIQUE, null, 1);
+	}
+	
+	public static Constraint maxPer(String attribute, int limit)
+	{
+		return new Constraint(attribute, Operator.MAX_PER, null, limit);
+	}
+	
+	//
+	// - Spread instances evenly over every value of the attribute seen so far
+	//
+	public static Constraint groupBy(String attribute)
+	{
+		return new Constraint(attribute, Operator.GROUP_BY, null, 0);
+	}
+	
+	//
+	// - "attribute:OPERATOR[:value]"
+	//
+	public static Constraint parse(String spec)
+	{
+		String[] parts = spec.split(":", 3);
+		if (parts.length < 2)
+		{
+			throw new IllegalArgumentException("Constraint should look like attribute:OPERATOR[:value], got '" + spec + "'");
+		}
+		
+		Operator operator;
+		try
+		{
+			operator = Operator.valueOf(parts[1].toUpperCase());
+		}
+		catch (IllegalArgumentException e)
+		{
+			throw new IllegalArgumentException("Unknown constraint operator '" + parts[1] + "' in '" + spec + "'");
+		}
+		
+		boolean needsValue = operator == Operator.EQUALS || operator == Operator.LIKE || operator == Operator.MAX_PER;
+		if (needsValue && parts.length < 3)
+		{
+			throw new IllegalArgumentException("Constraint " + operator + " needs a value in '" + spec + "'");
+		}
+		
+		switch (operator)
+		{
+		case EQUALS:
+			return equalTo(parts[0], parts[2]);
+		case LIKE:
+			return like(parts[0], parts[2]);
+		case UNIQUE:
+			return unique(parts[0]);
+		case MAX_PER:
+			return maxPer(parts[0], Integer.parseInt(parts[2]));
+		default:
+			return groupBy(parts[0]);
+		}
+	}
+	
+	//
+	// - Whether the rule depends on how many instances are already placed per value
+	//
+	public boolean isCounting()
+	{
+		return this.operator == Operator.UNIQUE || this.operator == Operator.MAX_PER || this.operator == Operator.GROUP_BY;
+	}
+	
+	//
+	// - EQUALS and LIKE only look at the agent's value
+	//
+	public boolean matches(String value)
+	{
+		if (this.operator == Operator.EQUALS) return this.value.equals(value);
+		if (this.operator == Operator.LIKE) return this.pattern.matcher(value).matches();
+		return true;
+	}
+	
+	public int getLimit()
+	{
+		return this.limit;
+	}
+	
+	@Override
+	public String toString()
+	{
+		if (this.operator == Operator.MAX_PER) return this.attribute + ":" + this.operator + ":" + this.limit;
+		if (this.value != null) return this.attribute + ":" + this.operator + ":" + this.value;
+		return this.attribute + ":" + this.operator;
+	}
+}
@@ -0,0 +1,193 @@
+package com.adsk.miniframework;
+
+import com.adsk.miniframework.logging.Logger;
+
+//
+// - Bounded ring buffer of scheduler events drained by one thread in batches
+// - Producers (the driver's callback thread, timers, REST) only copy a reference in; if the
+// - loop falls a whole ring behind they block, which is the only time the driver waits on us.
+// - The handler sees every event of a batch, then once afterBatch(), which is where work that
+// - only needs doing once per burst (offer interest, publishing state) goes.
+//
+public class EventLoop implements Runnable
+{
+	private static final Logger logger = Logger.get(EventLoop.class);
+	
+	public static final int DEFAULT_CAPACITY = 4096;
+	public static final int MAX_BATCH = 256;
+	
+	public interface Handler
+	{
+		void handle(SchedulerEvent event);
+		
+		void afterBatch();
+	}
+	
+	private final SchedulerEvent[] ring;
+	private final int mask;
+	private final Handler handler;
+	
+	//
+	// - Next slot to read and next slot to write; guarded by this
+	//
+	private long head;
+	private long tail;
+	
+	//
+	// - Events fully handled, after batch included; guarded by this
+	//
+	private long handled;
+	private volatile boolean running;
+	private Thread thread;
+	
+	public EventLoop(Handler handler, int capacity)
+	{
+		int size = Integer.highestOneBit(Math.max(2, capacity - 1)) << 1;
+		this.ring = new SchedulerEvent[size];
+		this.mask = size - 1;
+		this.handler = handler;
+	}
+	
+	public synchronized void start()
+	{
+		if (this.thread != null) return;
+		
+		this.running = true;
+		this.thread = new Thread(this, "scheduler-loop");
+		this.thread.setDaemon(true);
+		this.thread.start();
+	}
+	
+	public void stop()
+	{
+		this.running = false;
+		synchronized (this)
+		{
+			this.notifyAll();
+		}
+	}
+	
+	public void post(SchedulerEvent event)
+	{
+		synchronized (this)
+		{
+			boolean warned = false;
+			while (this.tail - this.head == this.ring.length)
+			{
+				if (!warned)
+				{
+					logger.warn("Scheduler loop is {} events behind; blocking {}", this.ring.length, Thread.currentThread().getName());
+					warned = true;
+				}
+				try
+				{
+					this.wait();
+				}
+				catch (InterruptedException e)
+				{
+					Thread.currentThread().interrupt();
+					return;
+				}
+			}
+			
+			this.ring[(int) (this.tail & this.mask)] = event;
+			this.tail++;
+			if (this.tail - this.head == 1)
+			{
+				this.notifyAll();
+			}
+		}
+	}
+	
+	public synchronized int size()
+	{
+		return (int) (this.tail - this.head);
+	}
+	
+	//
+	// - Block until everything posted so far has been handled (simulations and tests)
+	//
+	public synchronized void awaitIdle() throws InterruptedException
+	{
+		while (this.handled < this.tail && this.running)
+		{
+			this.wait();
+		}
+	}
+	
+	@Override
+	public void run()
+	{
+		SchedulerEvent[] batch = new SchedulerEvent[MAX_BATCH];
+		while (this.running)
+		{
+			int n = this.take(batch);
+			for (int i = 0; i < n; i++)
+			{
+				try
+				{
+					this.handler.handle(batch[i]);
+				}
+				catch (RuntimeException e)
+				{
+					logger.error("Failed to handle {} event", batch[i].type, e);
+				}
+				batch[i] = null;
+			}
+			
+			if (n > 0)
+			{
+				try
+				{
+					this.handler.afterBatch();
+				}
+				catch (RuntimeException e)
+				{
+					logger.error("Failed to finish event batch", e);
+				}
+				this.finished(n);
+			}
+		}
+	}
+	
+	private synchronized void finished(int n)
+	{
+		this.handled += n;
+		if (this.handled == this.tail)
+		{
+			this.notifyAll();
+		}
+	}
+	
+	//
+	// - Wait for events and take up to a batch of them; 0 once stopped
+	//
+	private synchronized int take(SchedulerEvent[] batch)
+	{
+		while (this.head == this.tail && this.running)
+		{
+			try
+			{
+				this.wait();
+			}
+			catch (InterruptedException e)
+			{
+				this.running = false;
+			}
+		}
+		
+		int n = (int) Math.min(this.tail - this.head, batch.length);
+		for (int i = 0; i < n; i++)
+		{
+			int slot = (int) (this.head & this.mask);
+			batch[i] = this.ring[slot];
+			this.ring[slot] = null;
+			this.head++;
+		}
+		if (n > 0)
+		{
+			this.notifyAll();
+		}
+		return n;
+	}
+}
@@ -26,20 +26,21 @@ public class ExecutorSpec
 	public ExecutorInfo executor;
 	
 	//
-	// - required resources per task
+	// - required resources per task (cpus, mem, disk, ports, ...)
 	// - plus # of instances
 	//
-	private double reqCpu;
-	private double reqMem;
+	private ResourceVector required;
 	private int instances;
 	
 	//
-	// - Tasks launched by executor; decreased when the task is running
-	// - Tasks running; increased when launch is complete, decreased when task is stopped
+	// - Placement rules checked against agent attributes; none by default
 	//
+	private List<Constraint> constraints;
 	
-	protected List<TaskID> tasksLaunched;
-	protected List<TaskID> tasksRunning;
+	//
+	// - Tasks by state: launched tasks are STAGED until they run, then RUNNING until they stop
+	//
+	protected TaskTable tasks;
 	
 	//
 	// - Verbatim json payload sent to each task
@@ -52,11 +53,17 @@ public class ExecutorSpec
 	//
 	public ExecutorSpec(String executorName, String executorImage, String command, 
 						boolean forcePull, double reqCpu, double reqMem, int instances, JsonNode verbatim) throws Exception
+	{
+		this(executorName, executorImage, command, forcePull, ResourceVector.of(reqCpu, reqMem), instances, verbatim);
+	}
+	
+	public ExecutorSpec(String executorName, String executorImage, String command, 
+						boolean forcePull, ResourceVector required, int instances, JsonNode verbatim) throws Exception
 	{
 		//
 		// - Calls below constructor, then builds the executorinfo with the right containeriser
 		//
-		this(null, reqCpu, reqMem, instances, verbatim);
+		this((ExecutorInfo) null, required, instances, verbatim);
 		
 		//
 		// - Build docker & container info
@@ -104,12 +111,16 @@ public class ExecutorSpec
 	//
 	public ExecutorSpec(ExecutorInfo executorInfo, double reqCpu, double reqMem, int instances, JsonNode verbatim)
 	{
-		this.tasksLaunched = new ArrayList<TaskID>();
-		this.tasksRunning = new ArrayList<TaskID>();
+		this(executorInfo, ResourceVector.of(reqCpu, reqMem), instances, verbatim);
+	}
+	
+	public ExecutorSpec(ExecutorInfo executorInfo, ResourceVector required, int instances, JsonNode verbatim)
+	{
+		this.tasks = new TaskTable();
 		
-		this.reqCpu = reqCpu;
-		this.reqMem = reqMem;
+		this.required = required;
 		this.instances = instances;
+		this.constraints = new ArrayList<Constraint>();
 		this.verbatim = verbatim;
 		
 		this.executor = executorInfo;		
@@ -148,7 +159,7 @@ public class ExecutorSpec
 	
 	public void stopAllTasks(SchedulerDriver driver, byte[] payload)
 	{
-		for (TaskID task: this.tasksRunning)
+		for (TaskID task: this.tasks.tasks(TaskTable.State.RUNNING))
 		{
 			//
 			// - TODO will need to implement graceful shutdowns here, probably some sort of future
@@ -159,57 +170,65 @@ public class ExecutorSpec
 		}
 	}
 	
-	public void putRunningTask(TaskID task)
+	public boolean putLaunchedTask(TaskID task)
 	{
-		this.tasksRunning.add(task);
+		return this.tasks.stage(task);
 	}
 	
-	public void putLaunchedTask(TaskID task)
+	//
+	// - Returns the state the task was in, null if the update didn't apply (see TaskTable)
+	//
+	public TaskTable.State transitionTask(TaskID task, TaskTable.State state)
 	{
-		this.tasksLaunched.add(task);
+		return this.tasks.transition(task, state);
 	}
 	
-	public void removeLaunchedTask(TaskID task)
+	//
+	// - Various getters for info
+	//
+	public int getNumLaunched()
 	{
-		this.tasksLaunched.remove(task);
+		return this.tasks.count(TaskTable.State.STAGED);
 	}
 	
-	public void removeRunningTask(TaskID task)
+	public int getNumRunning()
 	{
-		this.tasksRunning.remove(task);
+		return this.tasks.count(TaskTable.State.RUNNING);
 	}
 	
-	//
-	// - Various getters for info
-	//
-	public int getNumLaunched()
+	public int getTaskCount(TaskTable.State state)
 	{
-		return this.tasksLaunched.size();
+		return this.tasks.count(state);
 	}
 	
-	public int getNumRunning()
+	public TaskTable getTasks()
 	{
-		return this.tasksRunning.size();
+		return this.tasks;
 	}
 	
 	public List<TaskID> getLaunchedTasks()
 	{
-		return this.tasksLaunched;
+		return this.tasks.tasks(TaskTable.State.STAGED);
 	}
 	
 	public List<TaskID> getRunningTasks()
 	{
-		return this.tasksRunning;
+		return this.tasks.tasks(TaskTable.State.RUNNING);
 	}
 	
 	public double getRequiredCpu()
 	{
-		return this.reqCpu;
+		return this.required.getCpu();
 	}
 		
 	public double getRequiredMem()
 	{
-		return this.reqMem;
+		return this.required.getMem();
+	}
+	
+	public ResourceVector getRequired()
+	{
+		return this.required;
 	}
 	
 	public int getRequiredInstances()
@@ -217,4 +236,39 @@ public class ExecutorSpec
 		return this.instances;
 	}
 	
+	//
+	// - Docker image the executor runs in, null when it isn't containerised with docker
+	//
+	public String getImage()
+	{
+		if (this.executor == null || !this.executor.hasContainer() || !this.executor.getContainer().hasDocker())
+		{
+			return null;
+		}
+		return this.executor.getContainer().getDocker().getImage();
+	}
+	
+	public void addConstraint(Constraint constraint)
+	{
+		this.constraints.add(constraint);
+	}
+	
+	public JsonNode getVerbatim()
+	{
+		return this.verbatim;
+	}
+	
+	public List<Constraint> getConstraints()
+	{
+		return this.constraints;
+	}
+	
+	//
+	// - Instances still waiting for a launch
+	//
+	public int getNumPending()
+	{
+		return Math.max(0, this.instances - this.getNumLaunched());
+	}
+	
 }
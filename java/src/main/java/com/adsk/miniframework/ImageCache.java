@@ -0,0 +1,82 @@
+package com.adsk.miniframework;
+
+import java.util.HashMap;
+import java.util.Iterator;
+
+//
+// - Docker images we've seen come up on each agent, so offers from agents that already have
+// - an executor's image can be preferred over ones that'd need a cold pull
+// - Entries older than the staleness bound are ignored and dropped, since agents garbage
+// - collect images we can't see. Scheduler loop only.
+//
+public class ImageCache
+{
+	public static final long DEFAULT_TTL_MILLIS = 60 * 60 * 1000;
+	
+	//
+	// - slave id -> image -> last time a task with it reached TASK_RUNNING there
+	//
+	private final HashMap<String, HashMap<String, Long>> images;
+	private long ttlMillis;
+	
+	public ImageCache(long ttlMillis)
+	{
+		this.images = new HashMap<String, HashMap<String, Long>>();
+		this.ttlMillis = ttlMillis;
+	}
+	
+	public void setTtlMillis(long ttlMillis)
+	{
+		this.ttlMillis = ttlMillis;
+	}
+	
+	public long getTtlMillis()
+	{
+		return this.ttlMillis;
+	}
+	
+	public void record(String slaveId, String image, long now)
+	{
+		if (image == null) return;
+		
+		HashMap<String, Long> cached = this.images.get(slaveId);
+		if (cached == null)
+		{
+			cached = new HashMap<String, Long>();
+			this.images.put(slaveId, cached);
+		}
+		cached.put(image, now);
+		
+		//
+		// - Age out the agent's other images while we're here
+		//
+		Iterator<Long> it = cached.values().iterator();
+		while (it.hasNext())
+		{
+			if (now - it.next() > this.ttlMillis) it.remove();
+		}
+	}
+	
+	public boolean has(String slaveId, String image, long now)
+	{
+		if (image == null) return false;
+		
+		HashMap<String, Long> cached = this.images.get(slaveId);
+		if (cached == null) return false;
+		Long seen = cached.get(image);
+		if (seen == null) return false;
+		
+		if (now - seen > this.ttlMillis)
+		{
+			cached.remove(image);
+			if (cached.isEmpty()) this.images.remove(slaveId);
+			return false;
+		}
+		return true;
+	}
+	
+	public void forgetSlave(String slaveId)
+	{
+		this.images.remove(slaveId);
+	}
+}
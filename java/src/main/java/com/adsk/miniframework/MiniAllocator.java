@@ -1,28 +1,455 @@
 package com.adsk.miniframework;
 
+import com.adsk.miniframework.allocation.AllocationPolicy;
+import com.adsk.miniframework.allocation.AllocationView;
+import com.adsk.miniframework.allocation.PendingIndex;
+import com.adsk.miniframework.allocation.StrideScheduler;
+import com.adsk.miniframework.allocation.Placement;
+import com.adsk.miniframework.logging.Logger;
+
+import java.io.IOException;
 import java.util.ArrayList;
-import java.util.HashMap;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.List;
-import java.util.UUID;
+import java.util.Map;
 
 import org.apache.mesos.*;
 import org.apache.mesos.Protos.*;
 
-public class MiniAllocator
+//
+// - Runs the configured AllocationPolicy over the pooled offers and applies its decisions:
+// - placements are re-checked against the offer, turned into tasks and booked against the app,
+// - then each slave's offers are accepted once with everything placed on them. Slaves that got
+// - nothing keep their offers in the pool until the hold window runs out, then they're declined.
+//
+public class MiniAllocator implements Application.UsageListener
 {
+	private static final Logger logger = Logger.get(MiniAllocator.class);
+	
+	//
+	// - Scheduler state we allocate against; the maps are owned by the scheduler
+	//
+	private final Map<String, Application> apps;
+	private final TaskRegistry tasks;
+	private final int instanceLimit;
+	private final ResourceVector quota;
+	private AllocationPolicy policy;
+	
+	//
+	// - Per-slave refuse times for declines, and whether anything was pending at the
+	// - last check, which decides how long expired offers are refused for
+	//
+	private final OfferFilters filters;
+	private volatile boolean pendingDemand;
+	
+	//
+	// - Only the executors with instances left to launch; updated as app usage changes
+	//
+	private final PendingIndex pending;
+	
+	//
+	// - Agent attributes and per-value instance counts for placement constraints
+	//
+	private final AgentIndex agents;
+	
+	//
+	// - Images known to be on each agent; offers from those agents are preferred
+	//
+	private final ImageCache images;
+	
+	//
+	// - Weighted fair order of the apps with pending demand; charged for every instance actually launched
+	//
+	private final StrideScheduler order;
+	
+	//
+	// - Live tasks and where they were launched, for reconciliation
+	//
+	private final Reconciler reconciler;
+	
+	//
+	// - Launches are logged here before the offers are accepted, when a log is configured
+	//
+	private StateLog log;
+	
+	//
+	// - Unregistered until the scheduler hands over its own
+	//
+	private SchedulerMetrics metrics;
+	
+	public MiniAllocator(Map<String, Application> apps, TaskRegistry tasks, int instanceLimit, ResourceVector quota, AllocationPolicy policy)
+	{
+		this.apps = apps;
+		this.tasks = tasks;
+		this.instanceLimit = instanceLimit;
+		this.quota = quota;
+		this.policy = policy;
+		this.filters = new OfferFilters();
+		this.pendingDemand = true;
+		this.pending = new PendingIndex();
+		this.agents = new AgentIndex();
+		this.images = new ImageCache(ImageCache.DEFAULT_TTL_MILLIS);
+		this.order = new StrideScheduler();
+		this.reconciler = new Reconciler();
+		this.metrics = new SchedulerMetrics();
+		
+		for (Application app : apps.values())
+		{
+			this.applicationAdded(app);
+		}
+	}
+	
+	public AllocationPolicy getPolicy()
+	{
+		return this.policy;
+	}
+	
+	//
+	// - Swap policies at runtime; the old one lets go of every registered app (the DRF queue
+	// - would otherwise keep listening to them) and the new one is told about each
+	//
+	public void setPolicy(AllocationPolicy policy)
+	{
+		for (Application app : this.apps.values())
+		{
+			this.policy.applicationRemoved(app);
+		}
+		this.policy = policy;
+		for (Application app : this.apps.values())
+		{
+			policy.applicationAdded(app);
+		}
+	}
+	
+	public OfferFilters getFilters()
+	{
+		return this.filters;
+	}
+	
+	public PendingIndex getPendingIndex()
+	{
+		return this.pending;
+	}
+	
+	public AgentIndex getAgents()
+	{
+		return this.agents;
+	}
+	
+	public ImageCache getImages()
+	{
+		return this.images;
+	}
+	
+	public Reconciler getReconciler()
+	{
+		return this.reconciler;
+	}
+	
+	public void setMetrics(SchedulerMetrics metrics)
+	{
+		this.metrics = metrics;
+	}
+	
+	public void setStateLog(StateLog log)
+	{
+		this.log = log;
+	}
+	
+	//
+	// - A task launched before a restart, replayed from the state log; the slave may be unknown
+	//
+	public void restoreTask(Application app, ExecutorSpec eSpec, TaskID task, SlaveID slave)
+	{
+		app.putLaunchedTask(eSpec.executor.getExecutorId().getValue(), task);
+		if (slave != null)
+		{
+			this.agents.taskLaunched(eSpec, task, slave.getValue());
+		}
+		this.reconciler.taskLaunched(task, eSpec.executor.getExecutorId(), slave);
+	}
+	
+	//
+	// - Start tracking an app's demand; the policy hears about it too
+	//
+	public void applicationAdded(Application app)
+	{
+		app.addUsageListener(this);
+		this.tasks.addApplication(app);
+		this.order.add(app);
+		this.usageChanged(app);
+		this.policy.applicationAdded(app);
+	}
+	
+	public void applicationRemoved(Application app)
+	{
+		app.removeUsageListener(this);
+		this.pending.remove(app);
+		this.order.remove(app);
+		this.policy.applicationRemoved(app);
+	}
+	
+	//
+	// - Launches, task updates, new specs and termination all land here; apps are only in
+	// - the stride order while they have something pending
+	//
+	@Override
+	public void usageChanged(Application app)
+	{
+		for (ExecutorSpec eSpec : app.getExecutors().values())
+		{
+			this.pending.update(app, eSpec, this.getPending(app, eSpec));
+		}
+		this.order.setPending(app, this.pending.hasPending(app));
+	}
+	
+	//
+	// - Instances of the executor that may be launched now
+	// - if the application is terminated, or the team is already at quota,
+	// - or the executor already runs as many instances as allowed, nothing is pending
+	//
+	public int getPending(Application app, ExecutorSpec executor)
+	{
+		if (app.getAppTerminated() || app.getUsed().reaches(this.quota) || executor.getNumRunning() >= this.instanceLimit)
+		{
+			return 0;
+		}
+		return executor.getNumPending();
+	}
+	
+	//
+	// - Whether any app wants more instances; scheduler loop only
+	//
+	public boolean refreshDemand()
+	{
+		this.pendingDemand = !this.pending.isEmpty();
+		return this.pendingDemand;
+	}
+	
+	//
+	// - One allocation round over every pooled offer, grouped by slave
+	//
+	public List<TaskInfo> allocate(SchedulerDriver driver, OfferPool pool, long now)
+	{
+		List<OfferPool.Group> groups = pool.groups();
+		Round round = new Round(groups, now);
+		List<Placement> placements = this.policy.allocate(round);
+		
+		List<List<TaskInfo>> launches = new ArrayList<List<TaskInfo>>(groups.size());
+		for (int i = 0; i < groups.size(); i++)
+		{
+			launches.add(new ArrayList<TaskInfo>());
+		}
+		
+		List<TaskInfo> tasks = new ArrayList<TaskInfo>();
+		for (Placement placement : placements)
+		{
+			ResourceVector remaining = round.remaining[placement.offer];
+			ExecutorSpec eSpec = placement.executor;
+			Offer offer = round.getOffer(placement.offer);
+			
+			//
+			// - Don't trust the policy blindly; skip anything that no longer fits, isn't wanted
+			// - or breaks a constraint given what's been launched so far
+			//
+			if (round.getPending(placement.app, eSpec) <= 0 || !remaining.fits(eSpec.getRequired())
+					|| !round.allows(eSpec, placement.offer, AgentIndex.NONE))
+			{
+				logger.warn("Dropping placement of {} from {}", eSpec.executor.getName(), placement.app.name);
+				continue;
+			}
+			
+			TaskID taskId = this.tasks.newTaskId(placement.app);
+			TaskInfo task = buildTask(taskId, eSpec, offer, remaining.subtract(eSpec.getRequired()));
+			launches.get(placement.offer).add(task);
+			tasks.add(task);
+			
+            //
+            // - Set the task as being launched for the app; the registry already maps it back
+            //
+			placement.app.putLaunchedTask(eSpec.executor.getExecutorId().getValue(), task.getTaskId());
+			this.agents.taskLaunched(eSpec, task.getTaskId(), offer.getSlaveId().getValue());
+			this.reconciler.taskLaunched(task.getTaskId(), eSpec.executor.getExecutorId(), offer.getSlaveId());
+			if (this.log != null)
+			{
+				try
+				{
+					this.log.taskLaunched(placement.app.name, eSpec.executor.getExecutorId().getValue(), task.getTaskId(), offer.getSlaveId());
+				}
+				catch (IOException e)
+				{
+					logger.error("Could not log launch of {}: {}", task.getTaskId().getValue(), e);
+				}
+			}
+			this.order.charge(placement.app);
+			
+			logger.debug("Launching task {} on slave {}", task.getTaskId().getValue(), offer.getSlaveId().getValue());
+		}
+		
+		for (int i = 0; i < groups.size(); i++)
+		{
+			OfferPool.Group group = groups.get(i);
+			if (!launches.get(i).isEmpty())
+			{
+				acceptOffers(launches.get(i), driver, group.getOfferIds());
+				this.metrics.offerToAccept.record(System.nanoTime() - group.getOldestNanos());
+				this.metrics.tasksLaunched.add(launches.get(i).size());
+				this.filters.used(group.slaveId);
+				pool.remove(group);
+			}
+			else if (pool.isExpired(group, now))
+			{
+				this.decline(driver, group);
+				pool.remove(group);
+			}
+		}
+		return tasks;
+	}
+	
+	//
+	// - Decline whatever has been held past the window; called from a timer when holding offers
+	//
+	public void expire(SchedulerDriver driver, OfferPool pool, long now)
+	{
+		for (OfferPool.Group group : pool.expire(now))
+		{
+			this.decline(driver, group);
+		}
+	}
+	
+	//
+	// - With nothing pending there's no point seeing the slave again soon (reviving clears this);
+	// - otherwise back off from slaves whose offers keep going unused
+	//
+	private void decline(SchedulerDriver driver, OfferPool.Group group)
+	{
+		double refuseSeconds = OfferFilters.MAX_SECONDS;
+		if (this.pendingDemand)
+		{
+			refuseSeconds = this.filters.refuseSeconds(group.slaveId);
+			this.filters.missed(group.slaveId);
+		}
+		
+		Filters filters = Filters.newBuilder().setRefuseSeconds(refuseSeconds).build();
+		for (Offer offer : group.getOffers())
+		{
+			driver.declineOffer(offer.getId(), filters);
+		}
+		this.metrics.offersDeclined.add(group.getOffers().size());
+	}
+	
+	//
+	// - View handed to the policy; one entry per slave, with its pooled offers combined
+	//
+	private class Round implements AllocationView
+	{
+		private final List<OfferPool.Group> groups;
+		private final ResourceVector[] available;
+		private final ResourceVector[] remaining;
+		private final long now;
+		
+		Round(List<OfferPool.Group> groups, long now)
+		{
+			this.groups = groups;
+			this.now = now;
+			this.available = new ResourceVector[groups.size()];
+			this.remaining = new ResourceVector[groups.size()];
+			for (int i = 0; i < groups.size(); i++)
+			{
+				this.available[i] = groups.get(i).getAvailable();
+				this.remaining[i] = this.available[i].copy();
+				if (logger.isDebugEnabled())
+				{
+					logger.debug("Offers from slave {} with {} ({} offers)", groups.get(i).slaveId, this.available[i].toString(),
+								groups.get(i).getOffers().size());
+				}
+			}
+		}
+		
+		@Override
+		public int getNumOffers()
+		{
+			return this.groups.size();
+		}
+		
+		//
+		// - Any of the slave's offers will do; they share slave id, hostname and attributes
+		//
+		@Override
+		public Offer getOffer(int offer)
+		{
+			return this.groups.get(offer).getOffers().get(0);
+		}
+		
+		@Override
+		public ResourceVector getAvailable(int offer)
+		{
+			return this.available[offer];
+		}
+		
+		@Override
+		public Collection<Application> getApplications()
+		{
+			return Collections.unmodifiableCollection(MiniAllocator.this.apps.values());
+		}
+		
+		@Override
+		public StrideScheduler getOrder()
+		{
+			return MiniAllocator.this.order;
+		}
+		
+		@Override
+		public boolean hasPending(Application app)
+		{
+			return MiniAllocator.this.pending.hasPending(app);
+		}
+		
+		@Override
+		public int getPending(Application app, ExecutorSpec executor)
+		{
+			return MiniAllocator.this.pending.getPending(executor);
+		}
+		
+		@Override
+		public Iterable<PendingIndex.Entry> getPendingExecutors()
+		{
+			return MiniAllocator.this.pending.all();
+		}
+		
+		@Override
+		public Iterable<PendingIndex.Entry> getPendingFitting(ResourceVector available)
+		{
+			return MiniAllocator.this.pending.fitting(available);
+		}
+		
+		@Override
+		public String getAttribute(int offer, String attribute)
+		{
+			return MiniAllocator.this.agents.getValue(this.groups.get(offer).slaveId, attribute);
+		}
+		
+		@Override
+		public boolean hasImage(int offer, ExecutorSpec executor)
+		{
+			return MiniAllocator.this.images.has(this.groups.get(offer).slaveId, executor.getImage(), this.now);
+		}
+		
+		@Override
+		public boolean allows(ExecutorSpec executor, int offer, AgentIndex.Counts extra)
+		{
+			return executor.getConstraints().isEmpty()
+					|| MiniAllocator.this.agents.allows(executor, this.groups.get(offer).slaveId, extra);
+		}
+	}
+	
 	
 	//
 	// Builds a taskinfo with info provided
 	//
-    private static TaskInfo buildTask(Application app, ExecutorSpec eSpec, Offer offer)
+    private static TaskInfo buildTask(TaskID taskID, ExecutorSpec eSpec, Offer offer, ResourceVector grant)
     {
-    	
-        // 
-        // - Set task ID as name + number launched 
-        // 
-        TaskID taskID = TaskID.newBuilder().setValue(app.name + "-" + UUID.randomUUID()).build();
-
         // 
         // - Queue the task onto the launcher
         // 
@@ -30,16 +457,8 @@ public class MiniAllocator
                         .setName("task " + taskID.getValue())
                         .setTaskId(taskID)
                         .setSlaveId(offer.getSlaveId())
-                        // Get the required cpus off of the specs
-                        .addResources(Resource.newBuilder()
-                                      .setName("cpus")
-                                      .setType(Value.Type.SCALAR)
-                                      .setScalar(Value.Scalar.newBuilder().setValue(eSpec.getRequiredCpu())))
-                        // Do the same for required mem
-                        .addResources(Resource.newBuilder()
-                                      .setName("mem")
-                                      .setType(Value.Type.SCALAR)
-                                      .setScalar(Value.Scalar.newBuilder().setValue(eSpec.getRequiredMem())))
+                        // Everything granted out of the offer (cpus, mem, disk, concrete ports...)
+                        .addAllResources(grant.toResources())
                         //.setContainer(container)
                         //.setCommand(CommandInfo.newBuilder().setValue("echo").build())
                         .setExecutor(eSpec.executor)
@@ -48,9 +467,9 @@ public class MiniAllocator
     }
     
     //
-    // - Takes a list of taskinfo and sends it to the executor
+    // - Takes a list of taskinfo and sends it to the executor; all offers must be from one slave
     //
-	private static void acceptOffer(List<TaskInfo> tasks, SchedulerDriver driver, Offer offer)
+	private static void acceptOffers(List<TaskInfo> tasks, SchedulerDriver driver, List<OfferID> offerIds)
 	{
         Offer.Operation.Launch.Builder launcher = Offer.Operation.Launch.newBuilder();
 
@@ -62,9 +481,6 @@ public class MiniAllocator
         // - This janky bit of code is from the example framework;
         // - will apparently deprecate SchedulerDriver.launchTasks()
         // 
-        List<OfferID> offerIds = new ArrayList<OfferID>();
-        offerIds.add(offer.getId());
-
         List<Offer.Operation> operations = new ArrayList<Offer.Operation>();
 
         Offer.Operation operation = Offer.Operation.newBuilder()
@@ -81,125 +497,4 @@ public class MiniAllocator
         // 
         driver.acceptOffers(offerIds, operations, filters);
 	}
-	
-    //
-    // - Naieve allocation scheme.
-    // - Want to return a list of taskinfo 
-	//
-	public static List<TaskInfo> naieveAllocate(SchedulerDriver driver, Offer offer, HashMap<String, Application> apps, HashMap<String, String> tasksToApps, 
-										int instanceLimit, double cpuLimit, double memLimit)
-	{
-		//
-		// - Tasks that we will launch
-		//
-		List<TaskInfo> tasks = new ArrayList<TaskInfo>();
-		
-        // 
-        // - Shuffle the list of specs, for fairness (will be greedy after shuffle)
-        // 
-        List<Application> shuffled = new ArrayList<Application>(apps.values());
-        Collections.shuffle(shuffled);
-		// 
-        // - Build an offer launcher; functions just as queue of tasks
-        // 
-        double offerCpu = 0;
-        double offerMem = 0;
-        
-        //
-        // - Resources for a particular offer; count resources in offer
-        // - would want to count the instances (though one offer is from one slave)
-        // 
-        for (Resource resource : offer.getResourcesList())
-        {
-            if (resource.getName().equals("cpus"))
-            {
-                offerCpu += resource.getScalar().getValue();
-            }
-            else if (resource.getName().equals("mem"))
-            {
-                offerMem += resource.getScalar().getValue();
-            }
-        }
-
-        System.out.println("Received offer " + offer.getId().getValue() + " with cpus: " + offerCpu + " and mem: " + offerMem);
-
-        double remainingCpu = offerCpu;
-        double remainingMem = offerMem;
-
-        // 
-        // - Main loop queueing tasks
-        // 
-        for (Application app : shuffled)
-        {   
-        	
-        	//
-        	// - if the application is terminated, or
-        	// - if the team is already at quota,
-        	// continue
-        	//
-        	if (app.getAppTerminated() || app.getCpuUsed() >= cpuLimit || app.getMemUsed() >= memLimit)
-        	{
-        		continue;
-        	}
-        	
-        	//
-        	// - look through each executor wrapper
-        	//
-        	for (ExecutorSpec eSpec : app.getExecutors().values())
-        	{
-	
-	            // 
-        		// if offer isn't enough for task, 
-        		// or if there are enough launched tasks queued
-	            // - continue
-	            // 
-	            if (eSpec.getNumRunning() >= instanceLimit || eSpec.getRequiredCpu() > remainingCpu || eSpec.getRequiredMem() > remainingMem
-	            		|| eSpec.getNumLaunched() >= eSpec.getRequiredInstances())
-	            {
-	                continue;
-	            }
-	            
-	            //
-	            // - Build the task in our naieve algorithm; pass the application, executor, offer along
-	            //
-	            TaskInfo task = buildTask(app, eSpec, offer);
-		    
-	            //
-	            // - Update list of tasks to be sent to driver
-	            //
-	            tasks.add(task);
-	            
-	            //
-	            // - Set the task as being launched for the app
-	            //
-	            app.putLaunchedTask(eSpec.executor.getExecutorId().getValue(), task.getTaskId());
-	            
-	            //
-	            // - Update the hashmap for reverse search from task to app
-	            //
-	            tasksToApps.put(task.getTaskId().getValue(), app.name);
-	            
-	            System.out.println("Launching task " + task.getTaskId().getValue() + " using offer " + offer.getId().getValue());
-
-	            remainingCpu -= eSpec.getRequiredCpu();
-	            remainingMem -= eSpec.getRequiredMem();
-        	}
-        }
-        
-        //
-        // - Accept the resource offer
-        //
-        acceptOffer(tasks, driver, offer);   
-        
-        return tasks;
-	}
-
-	//
-	// - DRF Allocation
-	//
-	public static void drfAllocate(SchedulerDriver driver, Offer offer, HashMap<String, Application> apps, HashMap<String, String> tasksToApps, 
-			int instanceLimit, double cpuLimit, double memLimit)
-	{
-		
-	}
 }
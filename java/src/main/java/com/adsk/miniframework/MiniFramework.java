@@ -3,16 +3,27 @@ package com.adsk.miniframework;
 //import com.adsk.miniframework.server.WebApp;
 //import org.springframework.boot.builder.SpringApplicationBuilder;
 
+import java.io.File;
 import java.util.UUID;
 import java.util.HashMap;
 
 import org.apache.mesos.*;
 import org.apache.mesos.Protos.*;
 
+import com.adsk.miniframework.allocation.AllocationPolicies;
+import com.adsk.miniframework.logging.AsyncLog;
+import com.adsk.miniframework.logging.Level;
+import com.adsk.miniframework.logging.Logger;
 import com.adsk.miniframework.webapp.WebServer;
 
 public class MiniFramework
 {   
+	private static final Logger logger = Logger.get(MiniFramework.class);
+	
+	//
+	// - How long the master waits for a failed-over scheduler before killing its tasks
+	//
+	private static final double DEFAULT_FAILOVER_TIMEOUT_S = 7 * 24 * 3600;
 	
     private static void usage()
     {
@@ -27,6 +38,14 @@ public class MiniFramework
             usage();
             System.exit(1);
         }
+        
+        //
+        // - Scheduler log level (debug, info, warn, error); info by default
+        //
+        if (System.getenv("LOG_LEVEL") != null)
+        {
+            AsyncLog.get().setLevel(Level.valueOf(System.getenv("LOG_LEVEL").toUpperCase()));
+        }
                 
         // 
         // - Standard framework builder used by example framework
@@ -35,7 +54,6 @@ public class MiniFramework
         FrameworkInfo.Builder frameworkBuilder = FrameworkInfo.newBuilder()
         .setUser("") // Have Mesos fill in the current user.
         .setName("MiniFramework Java")
-        .setId(FrameworkID.newBuilder().setValue("MiniFramework-" + UUID.randomUUID()).build())
         .setCheckpoint(true);
 
         // 
@@ -45,7 +63,7 @@ public class MiniFramework
 
         if (System.getenv("MESOS_EXPLICIT_ACKNOWLEDGEMENTS") != null)
         {
-            System.out.println("Enabling explicit acknowledgements for status updates");
+            logger.info("Enabling explicit acknowledgements for status updates");
             implicitAcknowledgements = false;
         }
 
@@ -54,6 +72,63 @@ public class MiniFramework
         //
         Scheduler scheduler = new MiniScheduler(implicitAcknowledgements);
         
+        //
+        // - Pick the allocation policy (naive, batch, drf, binpack, spread); naive by default
+        //
+        if (System.getenv("ALLOCATION_POLICY") != null)
+        {
+            logger.info("Using allocation policy {}", System.getenv("ALLOCATION_POLICY"));
+            ((MiniScheduler) scheduler).setAllocationPolicy(AllocationPolicies.forName(System.getenv("ALLOCATION_POLICY")));
+        }
+        
+        //
+        // - Optionally hold unused offers for a few ms so small offers from one agent can be combined
+        //
+        if (System.getenv("OFFER_HOLD_MS") != null)
+        {
+            logger.info("Holding offers for up to {}ms", System.getenv("OFFER_HOLD_MS"));
+            ((MiniScheduler) scheduler).setOfferHoldMillis(Long.parseLong(System.getenv("OFFER_HOLD_MS")));
+        }
+        
+        //
+        // - How long to keep preferring agents that have already pulled an executor image
+        //
+        if (System.getenv("IMAGE_CACHE_TTL_MS") != null)
+        {
+            ((MiniScheduler) scheduler).setImageCacheTtlMillis(Long.parseLong(System.getenv("IMAGE_CACHE_TTL_MS")));
+        }
+        
+        //
+        // - With a state directory, replay the state log and fail over to the framework id on record;
+        // - the master keeps our tasks running for the failover timeout while we're gone
+        //
+        String frameworkId = null;
+        if (System.getenv("STATE_DIR") != null)
+        {
+            logger.info("Logging scheduler state to {}", System.getenv("STATE_DIR"));
+            if (System.getenv("STATE_SNAPSHOT_RECORDS") != null)
+            {
+                ((MiniScheduler) scheduler).setSnapshotRecords(Long.parseLong(System.getenv("STATE_SNAPSHOT_RECORDS")));
+            }
+            frameworkId = ((MiniScheduler) scheduler).recover(new StateLog(new File(System.getenv("STATE_DIR"))));
+            
+            double failoverTimeout = DEFAULT_FAILOVER_TIMEOUT_S;
+            if (System.getenv("FAILOVER_TIMEOUT_S") != null)
+            {
+                failoverTimeout = Double.parseDouble(System.getenv("FAILOVER_TIMEOUT_S"));
+            }
+            frameworkBuilder.setFailoverTimeout(failoverTimeout);
+        }
+        if (frameworkId == null)
+        {
+            frameworkId = "MiniFramework-" + UUID.randomUUID();
+        }
+        else
+        {
+            logger.info("Failing over to framework {}", frameworkId);
+        }
+        frameworkBuilder.setId(FrameworkID.newBuilder().setValue(frameworkId).build());
+        
         //
         // - standard bit of framework code to look for credentials
         // 
@@ -71,7 +146,7 @@ public class MiniFramework
 
         else
         {
-            System.out.println("Enabling authentication for the framework");
+            logger.info("Enabling authentication for the framework");
 
             if (System.getenv("PRINCIPAL") == null)
             {
@@ -99,15 +174,15 @@ public class MiniFramework
         //
         // - Run parallel netty with resteasy for small api
         //
-        System.out.println("===> Building API...");
+        logger.info("===> Building API...");
         WebServer server = new WebServer(8079);
         server.start((MiniScheduler) scheduler);
-        System.out.println("===> Netty server launched.");
+        logger.info("===> Netty server launched.");
         
         // 
         // - Run the thing, duh
         // 
-        System.out.println("Running scheduler driver...");
+        logger.info("Running scheduler driver...");
         int status = driver.run() == Status.DRIVER_STOPPED ? 0 : 1;
         
         // Ensure that the driver process terminates.
@@ -1,11 +1,23 @@
 package com.adsk.miniframework;
 
+import com.adsk.miniframework.allocation.AllocationPolicy;
+import com.adsk.miniframework.allocation.NaivePolicy;
+import com.adsk.miniframework.logging.Logger;
 import com.adsk.miniframework.webapp.Serializers.*;
 
+import java.io.IOException;
 import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
 import java.util.List;
-import java.util.ArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Predicate;
 
 import org.apache.mesos.*;
 import org.apache.mesos.Protos.*;
@@ -16,6 +28,8 @@ import com.fasterxml.jackson.databind.module.SimpleModule;
 
 public class MiniScheduler implements Scheduler
 {
+	private static final Logger logger = Logger.get(MiniScheduler.class);
+	
 	//
 	// - Json parser
 	//
@@ -44,16 +58,107 @@ public class MiniScheduler implements Scheduler
     private double cpuLimit;
     private double memLimit;
     private int instanceLimit;
+    private ResourceVector quota;
+    
+    //
+    // - Task ids we've handed out, mapped back to their apps
+    //
+    private TaskRegistry tasks;
+    
+    //
+    // - Apps not terminated yet and tasks running across all apps, kept current on every
+    // - transition so checking whether the framework is done doesn't walk the apps
+    //
+    private int activeApps;
+    private int runningTasks;
     
     //
-    // - Dict from taskids to app names
+    // - Only the scheduler loop touches the maps above and the apps; others read snapshots
     //
-    private HashMap<String, String> tasksToApps;
+    private final SchedulerState state;
     
     //
     // - See mesos documentation on this one
     //
     private boolean implicitAcknowledgements;
+    
+    //
+    // - Status updates are buffered and applied a batch at a time; termination is checked once
+    // - per touched app. In explicit mode updates are acknowledged only after their batch has
+    // - been applied, so anything lost before that is redelivered by the master.
+    //
+    private final List<TaskStatus> statusBatch;
+    private final LinkedHashSet<Application> statusApps;
+    private final List<TaskStatus> unacknowledged;
+    private boolean statusApplied;
+    
+    //
+    // - Applies the configured allocation policy to each batch of offers
+    //
+    private MiniAllocator allocator;
+    
+    //
+    // - Latencies, counts and usage, scraped through the REST api
+    //
+    private final SchedulerMetrics metrics;
+    
+    //
+    // - Outstanding offers; held for a short window when configured so small offers can be combined
+    // - The expiry timer needs a driver, so remember the one the callbacks hand us
+    //
+    private OfferPool offerPool;
+    private ScheduledExecutorService offerExpiry;
+    private volatile SchedulerDriver driver;
+    
+    //
+    // - Ticks the reconciler, which decides itself whether a batch is due
+    //
+    private final ScheduledExecutorService reconcileTimer;
+    
+    //
+    // - Driver callbacks only post events here; all the work happens on the loop's thread
+    //
+    private final EventLoop loop;
+    
+    //
+    // - Offers are suppressed while nothing is pending and revived when demand comes back
+    //
+    private boolean offersSuppressed;
+    
+    //
+    // - Set when new work arrives: revive and clear the refuse filters even if offers aren't
+    // - suppressed, otherwise it could wait out declines that have backed off to minutes
+    //
+    private boolean newDemand;
+    
+    private static final long RECONCILE_TICK_MILLIS = 1000;
+    
+    //
+    // - When an app is done and its tasks get killed; checked for apps whose tasks changed
+    // - The toy condition is 3 running tasks
+    //
+    private Predicate<Application> terminationCondition = app -> app.getNumRunning() >= 3;
+    
+    //
+    // - Write-ahead log of registrations and task transitions, if configured (see recover())
+    // - and the framework id it has on record
+    //
+    private StateLog log;
+    private String frameworkId;
+    
+    //
+    // - Snapshots of the state are written in the background every so many logged records,
+    // - one at a time, after which the log segments they cover are dropped
+    //
+    public static final long DEFAULT_SNAPSHOT_RECORDS = 100000;
+    private long snapshotRecords = DEFAULT_SNAPSHOT_RECORDS;
+    private ExecutorService snapshotWriter;
+    private Future<?> snapshot;
+    
+    //
+    // - Apps' snapshot records, encoded again only for apps that changed since the last snapshot
+    //
+    private final AppRecords appRecords;
    
     //
     // - a toy scheduler with some limits and a toy ubuntu task for the executor to run
@@ -73,12 +178,13 @@ public class MiniScheduler implements Scheduler
 	    										1,
 	    										mapper.createObjectNode());
 	    	app1.putExecutorSpec(exe1);
-	    	this.registeredApps.put(app1.name, app1);
+	    	this.putSpecs(app1.name, app1);
+	    	this.state.publish();
 	    	
     	}
     	catch (Exception e)
     	{
-    		System.out.println("Could not create toy executor");
+    		logger.error("Could not create toy executor: {}", e);
     	}
     }
     
@@ -100,6 +206,9 @@ public class MiniScheduler implements Scheduler
     {
         
         this.implicitAcknowledgements = implicitAcknowledgements;
+        this.statusBatch = new ArrayList<TaskStatus>();
+        this.statusApps = new LinkedHashSet<Application>();
+        this.unacknowledged = new ArrayList<TaskStatus>();
         
         // 
         // - Resource limits per registeredApps app (may be one task)
@@ -107,8 +216,260 @@ public class MiniScheduler implements Scheduler
         this.instanceLimit = instanceLimit;
         this.cpuLimit = cpuLimit;
         this.memLimit = memLimit;
-        this.registeredApps = new HashMap<String, Application>(teams);
-        this.tasksToApps = new HashMap<String, String>();
+        this.quota = ResourceVector.of(cpuLimit, memLimit);
+        this.registeredApps = new HashMap<String, Application>();
+        this.tasks = new TaskRegistry();
+        this.state = new SchedulerState(mapper);
+        this.allocator = new MiniAllocator(this.registeredApps, this.tasks, instanceLimit, this.quota, new NaivePolicy());
+        this.metrics = new SchedulerMetrics();
+        this.allocator.setMetrics(this.metrics);
+        this.appRecords = new AppRecords(this.allocator.getReconciler());
+        this.offerPool = new OfferPool(0);
+        this.loop = new EventLoop(new LoopHandler(), EventLoop.DEFAULT_CAPACITY);
+        
+        //
+        // - The driver isn't running yet, so this thread is still the only writer
+        //
+        for (Application app : teams.values())
+        {
+        	this.putSpecs(app.name, app);
+        }
+        this.state.publish();
+        this.loop.start();
+        
+        this.reconcileTimer = Executors.newSingleThreadScheduledExecutor(r -> {
+        	Thread thread = new Thread(r, "reconcile-timer");
+        	thread.setDaemon(true);
+        	return thread;
+        });
+        this.reconcileTimer.scheduleAtFixedRate(() -> {
+        	SchedulerDriver current = this.driver;
+        	if (current != null)
+        	{
+        		this.loop.post(SchedulerEvent.reconcile(current));
+        	}
+        }, RECONCILE_TICK_MILLIS, RECONCILE_TICK_MILLIS, TimeUnit.MILLISECONDS);
+    }
+    
+    //
+    // - Replay the state log before the driver starts, then keep appending to it
+    // - Returns the framework id to fail over to, null if the log has none
+    //
+    public String recover(StateLog log) throws IOException
+    {
+    	Recovery recovery = new Recovery();
+    	long start = System.currentTimeMillis();
+    	long records = log.replay(recovery);
+    	
+    	//
+    	// - Counters are rebuilt in one go rather than tracked through the replay
+    	//
+    	this.activeApps = 0;
+    	this.runningTasks = 0;
+    	for (Application app : this.registeredApps.values())
+    	{
+    		this.count(app, 1);
+    	}
+    	logger.info("Replayed {} state log records in {}ms; {} tasks running in {} apps",
+    				records, System.currentTimeMillis() - start, this.runningTasks, this.registeredApps.size());
+    	
+    	this.log = log;
+    	this.allocator.setStateLog(log);
+    	this.snapshotWriter = Executors.newSingleThreadExecutor(r -> {
+    		Thread thread = new Thread(r, "state-snapshot");
+    		thread.setDaemon(true);
+    		return thread;
+    	});
+    	
+    	//
+    	// - Apps built in (constructor) but never logged
+    	//
+    	for (Application app : this.registeredApps.values())
+    	{
+    		if (!recovery.apps.contains(app.name))
+    		{
+    			log.appRegistered(app);
+    		}
+    	}
+    	log.flush();
+    	this.state.publish();
+    	return this.frameworkId;
+    }
+    
+    //
+    // - Applies replayed records the same way the live events did, minus talking to the driver
+    //
+    private class Recovery implements StateLog.Visitor
+    {
+    	final HashSet<String> apps = new HashSet<String>();
+    	
+    	@Override
+    	public void frameworkId(String id)
+    	{
+    		frameworkId = id;
+    	}
+    	
+    	@Override
+    	public void appRegistered(Application app)
+    	{
+    		this.apps.add(app.name);
+    		putSpecs(app.name, app);
+    	}
+    	
+    	@Override
+    	public void appTerminated(String name)
+    	{
+    		Application app = registeredApps.get(name);
+    		if (app != null)
+    		{
+    			app.restoreTerminated();
+    		}
+    	}
+    	
+    	@Override
+    	public void taskLaunched(String name, String executor, TaskID task, SlaveID slave)
+    	{
+    		Application app = registeredApps.get(name);
+    		if (app != null && app.getExecutors().containsKey(executor) && tasks.register(task, app))
+    		{
+    			allocator.restoreTask(app, app.getExecutors().get(executor), task, slave);
+    		}
+    	}
+    	
+    	@Override
+    	public void taskRunning(String name, String executor, TaskID task)
+    	{
+    		Application app = registeredApps.get(name);
+    		if (app != null && app.getExecutors().containsKey(executor))
+    		{
+    			app.putRunningTask(executor, task);
+    		}
+    	}
+    	
+    	@Override
+    	public void taskStopped(String name, String executor, TaskID task, TaskTable.State state)
+    	{
+    		Application app = registeredApps.get(name);
+    		if (app != null && app.getExecutors().containsKey(executor))
+    		{
+    			app.putStoppedTask(executor, task, state);
+    		}
+    		allocator.getAgents().taskStopped(task);
+    		allocator.getReconciler().forget(task);
+    		tasks.remove(task);
+    	}
+    }
+    
+    public void setTerminationCondition(Predicate<Application> condition)
+    {
+    	this.terminationCondition = condition;
+    }
+    
+    //
+    // - Wait for the scheduler loop to catch up with everything handed to it so far
+    //
+    public void awaitIdle() throws InterruptedException
+    {
+    	this.loop.awaitIdle();
+    }
+    
+    public void setSnapshotRecords(long records)
+    {
+    	this.snapshotRecords = records;
+    }
+    
+    //
+    // - Capture the state on the loop (the apps' records, re-encoding only apps that changed),
+    // - write it out on the side
+    //
+    private void snapshotIfDue()
+    {
+    	if (this.log == null || this.log.getAppended() < this.snapshotRecords)
+    	{
+    		return;
+    	}
+    	if (this.snapshot != null && !this.snapshot.isDone())
+    	{
+    		return;
+    	}
+    	
+    	try
+    	{
+    		StateLog log = this.log;
+    		StateLog.Checkpoint checkpoint = log.checkpoint();
+    		if (this.frameworkId != null)
+    		{
+    			checkpoint.frameworkId(this.frameworkId);
+    		}
+    		
+    		for (List<byte[]> app : this.appRecords.collect())
+    		{
+    			checkpoint.app(app);
+    		}
+    		
+    		this.snapshot = this.snapshotWriter.submit(() -> {
+    			long start = System.currentTimeMillis();
+    			try
+    			{
+    				log.writeSnapshot(checkpoint);
+    				logger.info("Wrote state snapshot of {} apps in {}ms", checkpoint.getNumApps(), System.currentTimeMillis() - start);
+    			}
+    			catch (IOException e)
+    			{
+    				logger.error("Could not write state snapshot: {}", e);
+    			}
+    		});
+    	}
+    	catch (IOException e)
+    	{
+    		logger.error("Could not start state snapshot: {}", e);
+    	}
+    }
+    
+    public void setAllocationPolicy(AllocationPolicy policy)
+    {
+    	this.allocator.setPolicy(policy);
+    }
+    
+    public AllocationPolicy getAllocationPolicy()
+    {
+    	return this.allocator.getPolicy();
+    }
+    
+    //
+    // - Hold unused offers for up to holdMillis; call before the driver starts
+    //
+    public void setOfferHoldMillis(long holdMillis)
+    {
+    	this.offerPool = new OfferPool(holdMillis);
+    	if (holdMillis <= 0 || this.offerExpiry != null) return;
+    	
+    	this.offerExpiry = Executors.newSingleThreadScheduledExecutor(r -> {
+    		Thread thread = new Thread(r, "offer-expiry");
+    		thread.setDaemon(true);
+    		return thread;
+    	});
+    	long period = Math.max(10, holdMillis / 2);
+    	this.offerExpiry.scheduleAtFixedRate(() -> {
+    		SchedulerDriver current = this.driver;
+    		if (current != null)
+    		{
+    			this.loop.post(SchedulerEvent.expireOffers(current));
+    		}
+    	}, period, period, TimeUnit.MILLISECONDS);
+    }
+    
+    //
+    // - How long an image seen on an agent is assumed to still be there
+    //
+    public void setImageCacheTtlMillis(long ttlMillis)
+    {
+    	this.allocator.getImages().setTtlMillis(ttlMillis);
+    }
+    
+    public OfferPool getOfferPool()
+    {
+    	return this.offerPool;
     }
     
     public Application getSpecs(String name)
@@ -124,65 +485,417 @@ public class MiniScheduler implements Scheduler
     	//
     	// - Update specs for registeredApps app
     	//
-        registeredApps.put(name, spec);
+        Application old = registeredApps.put(name, spec);
+        if (old != null)
+        {
+        	this.count(old, -1);
+        }
+        if (old != null && old != spec)
+        {
+        	this.allocator.applicationRemoved(old);
+        	this.state.appRemoved(old);
+        	this.metrics.appRemoved(old);
+        	this.appRecords.appRemoved(old);
+        }
+        this.count(spec, 1);
+        this.allocator.applicationAdded(spec);
+        this.newDemand = true;
+        if (this.log != null)
+        {
+        	try
+        	{
+        		this.log.appRegistered(spec);
+        	}
+        	catch (IOException e)
+        	{
+        		logger.error("Could not log registration of {}: {}", name, e);
+        	}
+        }
+        this.state.appAdded(spec);
+        this.metrics.appAdded(spec);
+        this.appRecords.appAdded(spec);
+        this.reviseOfferInterest(this.driver);
+        this.allocateHeld(this.driver);
+    }
+    
+    //
+    // - Held offers are otherwise only looked at again when more offers come in; give new
+    // - demand (a new app, a task to relaunch) a round over them straight away
+    //
+    private void allocateHeld(SchedulerDriver driver)
+    {
+    	if (driver == null || this.offerPool.size() == 0)
+    	{
+    		return;
+    	}
+    	this.allocator.allocate(driver, this.offerPool, System.currentTimeMillis());
     }
     
+    //
+    // - Suppress offers when there is no pending demand, revive them once there is again
+    //
+    private void reviseOfferInterest(SchedulerDriver driver)
+    {
+    	boolean demand = this.allocator.refreshDemand();
+    	if (driver == null)
+    	{
+    		return;
+    	}
+    	
+    	if (!demand && !this.offersSuppressed)
+    	{
+    		logger.info("Nothing pending; suppressing offers");
+    		driver.suppressOffers();
+    		this.offersSuppressed = true;
+    	}
+    	else if (demand && (this.offersSuppressed || this.newDemand))
+    	{
+    		logger.info("New demand; reviving offers");
+    		driver.reviveOffers();
+    		this.allocator.getFilters().reset();
+    		this.offersSuppressed = false;
+    	}
+    	this.newDemand = false;
+    }
+    
+    //
+    // - Driver callbacks: capture and hand over to the scheduler loop, nothing else
+    //
     @Override
     public void registered(SchedulerDriver driver, FrameworkID frameworkId, MasterInfo masterInfo)
     {
-        System.out.println("registered framework: " + frameworkId.getValue());
+    	this.driver = driver;
+        this.loop.post(SchedulerEvent.registered(driver, frameworkId, masterInfo));
     }
 
     @Override
-    public void reregistered(SchedulerDriver driver, MasterInfo masterInfo){
-        System.out.println("driver reregistered");
+    public void reregistered(SchedulerDriver driver, MasterInfo masterInfo)
+    {
+        this.loop.post(SchedulerEvent.reregistered(driver, masterInfo));
     }
 
     @Override
     public void disconnected(SchedulerDriver driver) 
     {
-        System.out.println("Driver disconnection.");
+        this.loop.post(SchedulerEvent.disconnected(driver));
     }
 
     @Override
     public void resourceOffers(SchedulerDriver driver, List<Offer> offers)
     {
+    	this.driver = driver;
+    	this.loop.post(SchedulerEvent.offers(driver, offers));
+    }
 
+    @Override
+    public void statusUpdate(SchedulerDriver driver, TaskStatus status)
+    {
+    	this.loop.post(SchedulerEvent.status(driver, status));
+    }
+    
+    @Override
+    public void offerRescinded(SchedulerDriver driver, OfferID offerId) 
+    {
+    	this.loop.post(SchedulerEvent.offerRescinded(driver, offerId));
+    }
+    
+    @Override
+    public void frameworkMessage(SchedulerDriver driver, ExecutorID executorId, SlaveID slaveId, byte[] data) 
+    {
+    	this.loop.post(SchedulerEvent.frameworkMessage(driver, executorId, slaveId, data));
+    }
+    
+    @Override
+    public void slaveLost(SchedulerDriver driver, SlaveID slaveId) 
+    {
+    	this.loop.post(SchedulerEvent.slaveLost(driver, slaveId));
+    }
+    
+    @Override
+    public void executorLost(SchedulerDriver driver, ExecutorID executorId, SlaveID slaveId, int status) 
+    {
+    	this.loop.post(SchedulerEvent.executorLost(driver, executorId, slaveId, status));
+    }
+    
+    @Override
+    public void error(SchedulerDriver driver, String message)
+    {
+    	this.loop.post(SchedulerEvent.error(driver, message));
+    }
+    
+    //
+    // - Runs on the scheduler loop; the only code that touches scheduler state
+    //
+    private class LoopHandler implements EventLoop.Handler
+    {
+    	@Override
+    	public void handle(SchedulerEvent event)
+    	{
+    		metrics.eventDelay.record(System.nanoTime() - event.nanos);
+    		
+    		//
+    		// - Anything else sees the updates before it applied, as if they came one by one
+    		// - Registrations don't come with a driver; the updates go to the current one
+    		//
+    		if (event.type == SchedulerEvent.Type.STATUS)
+    		{
+    			statusBatch.add(event.status);
+    			return;
+    		}
+    		flushStatusUpdates(event.driver != null ? event.driver : driver);
+    		
+    		switch (event.type)
+    		{
+    		case REGISTERED:
+    			handleRegistered(event.driver, event.frameworkId);
+    			break;
+    		case REREGISTERED:
+    			handleReregistered(event.driver);
+    			break;
+    		case DISCONNECTED:
+    			logger.warn("Driver disconnection.");
+    			break;
+    		case OFFERS:
+    			handleOffers(event.driver, event.offers, event.timestamp, event.nanos);
+    			break;
+    		case OFFER_RESCINDED:
+    			handleOfferRescinded(event.offerId);
+    			break;
+    		case FRAMEWORK_MESSAGE:
+    			logger.info("framework message: {}", new String(event.data, StandardCharsets.UTF_8));
+    			break;
+    		case SLAVE_LOST:
+    			handleSlaveLost(event.slaveId);
+    			break;
+    		case EXECUTOR_LOST:
+    			handleExecutorLost(event.executorId, event.slaveId, event.exitStatus);
+    			break;
+    		case ERROR:
+    			logger.error("Error: {}", event.message);
+    			break;
+    		case REGISTRATIONS:
+    			applyRegistrations();
+    			break;
+    		case EXPIRE_OFFERS:
+    			allocator.expire(event.driver, offerPool, System.currentTimeMillis());
+    			break;
+    		case RECONCILE:
+    			allocator.getReconciler().tick(event.driver, System.currentTimeMillis());
+    			break;
+    		}
+    	}
+    	
+    	//
+    	// - Once per batch, however many status updates or offers it had
+    	//
+    	@Override
+    	public void afterBatch()
+    	{
+    		flushStatusUpdates(driver);
+    		applyRegistrations();
+    		reviseOfferInterest(driver);
+    		state.publish();
+    		updateGauges();
+    		
+    		//
+    		// - Whatever the batch logged is on disk before it's acknowledged
+    		//
+    		if (log != null)
+    		{
+    			log.flush();
+    		}
+    		acknowledgeStatusUpdates(driver);
+    		snapshotIfDue();
+    		
+    		if (statusApplied)
+    		{
+    			statusApplied = false;
+    			terminateFramework(driver);
+    		}
+    	}
+    }
+    
+    private void handleRegistered(SchedulerDriver driver, FrameworkID frameworkId)
+    {
+        logger.info("registered framework: {}", frameworkId.getValue());
+        this.offersSuppressed = false;
+        
+        if (this.log != null && !frameworkId.getValue().equals(this.frameworkId))
+        {
+        	try
+        	{
+        		this.log.frameworkId(frameworkId.getValue());
+        		this.log.flush();
+        	}
+        	catch (IOException e)
+        	{
+        		logger.error("Could not log framework id: {}", e);
+        	}
+        }
+        this.frameworkId = frameworkId.getValue();
+        
+        //
+        // - Apps terminated before a failover may still have tasks; their kills could have been lost
+        //
+        for (Application app : this.registeredApps.values())
+        {
+        	if (app.getAppTerminated() && app.getNumRunning() > 0)
+        	{
+        		app.stopAllTasks(driver, new byte[0]);
+        	}
+        }
+        this.startReconciliation(driver);
+    }
+    
+    //
+    // - Updates may have been missed while we were disconnected
+    //
+    private void handleReregistered(SchedulerDriver driver)
+    {
+    	logger.info("driver reregistered");
+    	this.startReconciliation(driver);
+    }
+    
+    private void startReconciliation(SchedulerDriver driver)
+    {
+    	long now = System.currentTimeMillis();
+    	Reconciler reconciler = this.allocator.getReconciler();
+    	reconciler.reconcileAll(now);
+    	reconciler.tick(driver, now);
+    }
+    
+    private void handleOffers(SchedulerDriver driver, List<Offer> offers, long now, long nanos)
+    {
     	//
         // - Wish there were more documentation on the Offer class...
         // - Use allocation scheme here. The allocator has to update the # of launched tasks.
+        // - New offers join any still held from the same slaves.
         //
         for (Offer offer : offers)
         {
-        	MiniAllocator.naieveAllocate(driver, offer, this.registeredApps, this.tasksToApps, instanceLimit, cpuLimit, memLimit);
+        	this.allocator.getAgents().observe(offer);
         }
+        this.metrics.offersReceived.add(offers.size());
+        this.offerPool.add(offers, now, nanos);
+        this.allocator.allocate(driver, this.offerPool, now);
     }
 
-    @Override
-    public void statusUpdate(SchedulerDriver driver, TaskStatus status)
+    //
+    // - Apply the buffered status updates, then see whether any app they touched is done
+    //
+    private void flushStatusUpdates(SchedulerDriver driver)
+    {
+    	if (this.statusBatch.isEmpty())
+    	{
+    		return;
+    	}
+    	
+    	try
+    	{
+    		for (TaskStatus status : this.statusBatch)
+    		{
+    			long start = System.nanoTime();
+    			Application app = this.handleStatusUpdate(driver, status);
+    			this.metrics.statusProcessing.record(System.nanoTime() - start);
+    			this.metrics.statusUpdates.inc();
+    			if (app != null)
+    			{
+    				this.statusApps.add(app);
+    			}
+    		}
+    		
+    		//
+    		// - See if we should kill all tasks in the apps; whether all apps are done is checked
+    		// - once the batch is acknowledged
+    		//
+    		for (Application app : this.statusApps)
+    		{
+    			this.terminateApp(driver, app);
+    		}
+    		this.allocateHeld(driver);
+    		
+    		if (!this.implicitAcknowledgements)
+    		{
+    			this.unacknowledged.addAll(this.statusBatch);
+    		}
+    	}
+    	finally
+    	{
+    		//
+    		// - A failed batch isn't acknowledged, so the master sends it again; applying it
+    		// - again is harmless, retrying it with every later batch isn't
+    		//
+    		this.statusBatch.clear();
+    		this.statusApps.clear();
+    		this.statusApplied = true;
+    	}
+    }
+    
+    //
+    // - Every update applied so far, including ones for tasks we didn't know, so the master
+    // - stops retrying them
+    //
+    private void acknowledgeStatusUpdates(SchedulerDriver driver)
+    {
+    	if (this.unacknowledged.isEmpty() || driver == null)
+    	{
+    		return;
+    	}
+    	
+    	for (TaskStatus status : this.unacknowledged)
+    	{
+    		driver.acknowledgeStatusUpdate(status);
+    	}
+    	this.unacknowledged.clear();
+    }
+    
+    //
+    // - Applies one update; returns the app of the task, null if the task isn't ours
+    //
+    private Application handleStatusUpdate(SchedulerDriver driver, TaskStatus status)
     {
     	
         // 
-        // - Get the application name using the reverse search dict
+        // - Get the application from the task registry
         // 
-    	String appName = this.tasksToApps.get(status.getTaskId().getValue());
+    	Application registered = this.tasks.getApplication(status.getTaskId());
+    	if (registered == null)
+    	{
+    		logger.warn("Status update for unknown task {} in state {}", status.getTaskId().getValue(), status.getState());
+    		
+    		//
+    		// - A live task nobody accounts for (e.g. launched just before a crash); don't leave it running
+    		//
+    		if (!Reconciler.isTerminal(status.getState()))
+    		{
+    			driver.killTask(status.getTaskId());
+    		}
+    		return null;
+    	}
+    	int runningBefore = registered.getNumRunning();
+    	this.allocator.getReconciler().statusUpdate(status);
         String executorName = status.getExecutorId().getValue();
         
-        //
-        // - Get the message from the status update
-        //
-        try
-        {
-			JsonNode msgJson = DockerExecutor.getObjectMapper().readValue(status.getMessage(), JsonNode.class);
-        }
-        catch (Exception e)
-        {
-        	// Don't bother handling it right now
-        }
-        
         if (status.getState() == TaskState.TASK_RUNNING)
         {
-        	this.registeredApps.get(appName).putRunningTask(executorName, status.getTaskId());
+        	ExecutorSpec eSpec = registered.getExecutors().get(executorName);
+        	long staged = eSpec != null ? eSpec.getTasks().getSince(status.getTaskId()) : -1;
+        	if (registered.putRunningTask(executorName, status.getTaskId()))
+        	{
+        		this.logTransition(registered, executorName, status.getTaskId(), TaskTable.State.RUNNING);
+        		if (staged >= 0)
+        		{
+        			this.metrics.launchToRunning.record(System.nanoTime() - staged);
+        		}
+        	}
+        	
+        	//
+        	// - The agent has the image now; prefer it for the next instances
+        	//
+        	if (eSpec != null && status.hasSlaveId())
+        	{
+        		this.allocator.getImages().record(status.getSlaveId().getValue(), eSpec.getImage(), System.currentTimeMillis());
+        	}
         }
         // 
         // - Finished task; retrieve the name and update the app registration
@@ -195,96 +908,154 @@ public class MiniScheduler implements Scheduler
             // - If the task is the app's final task (find it in the Json message),
             // - update the app to be terminated. See Application.taskStopped().
             //
-            this.registeredApps.get(appName).putStoppedTask(executorName, status.getTaskId());         
+            if (registered.putStoppedTask(executorName, status.getTaskId()))
+            {
+            	this.logTransition(registered, executorName, status.getTaskId(), TaskTable.State.FINISHED);
+            }
+            this.allocator.getAgents().taskStopped(status.getTaskId());
+            this.tasks.remove(status.getTaskId());
         }
         
         //
-        // - TODO, don't abort the driver. Initiate task reconciliation here
+        // - Lost, killed or failed: the instance is freed, so unless the app is terminated it
+        // - shows up as pending again and is relaunched with the next offers
         //
-        else if (status.getState() == TaskState.TASK_LOST || status.getState() == TaskState.TASK_KILLED || status.getState() == TaskState.TASK_FAILED)
+        else if (Reconciler.isTerminal(status.getState()))
         {
-            System.err.println("Aborting because task " + status.getTaskId().getValue() +
-                               " is in unexpected state " +  status.getState().getValueDescriptor().getName() +
-                               " with reason '" + status.getReason().getValueDescriptor().getName() + "'" +
-                               " from source '" + status.getSource().getValueDescriptor().getName() + "'" +
-                               " with message '" + status.getMessage() + "'");
-            
-            // 
-            // - aborting driver shuts everything down;
-            // - otherwise will have to update registeredApps specs
-            // 
-            driver.abort();
+            TaskTable.State stopped = stoppedState(status.getState());
+            if (registered.putStoppedTask(executorName, status.getTaskId(), stopped))
+            {
+            	this.logTransition(registered, executorName, status.getTaskId(), stopped);
+            }
+            this.allocator.getAgents().taskStopped(status.getTaskId());
+            this.tasks.remove(status.getTaskId());
+            if (!registered.getAppTerminated())
+            {
+            	//
+            	// - The message is in the status update line below
+            	//
+            	logger.warn("Relaunching task {} in unexpected state {} with reason '{}' from source '{}'",
+            				status.getTaskId().getValue(), status.getState(), status.getReason(), status.getSource());
+            }
         }
         
         // 
         // - Standard status update 
         // 
-    	System.out.println("Status update: task " + status.getTaskId().getValue() +
-                       " in state " + status.getState().getValueDescriptor().getName() +
-                       " with message " + status.getMessage());
+    	logger.debug("Status update: task {} in state {} with message {}",
+    				status.getTaskId().getValue(), status.getState(), status.getMessage());
 
         //
-        // - See if we should kill all tasks in the app
-        // - then see if we have killed all tasks in all apps
+        // - What's pending changed too; offer interest is revised once the batch is done
         //
-        this.terminateApp(driver, appName);
-        this.terminateFramework(driver);
-        
-        if (!implicitAcknowledgements)
-        {
-            driver.acknowledgeStatusUpdate(status);
-        }
+        this.runningTasks += registered.getNumRunning() - runningBefore;
+        return registered;
     }
     
-    //
-    // - We're not using these for now...
-    //
-    @Override
-    public void offerRescinded(SchedulerDriver driver, OfferID offerId) 
+    private void logTransition(Application app, String executor, TaskID task, TaskTable.State state)
     {
-    	System.out.println("offer rescinded");
+    	if (this.log == null)
+    	{
+    		return;
+    	}
+    	
+    	try
+    	{
+    		if (state == TaskTable.State.RUNNING)
+    		{
+    			this.log.taskRunning(app.name, executor, task);
+    		}
+    		else
+    		{
+    			this.log.taskStopped(app.name, executor, task, state);
+    		}
+    	}
+    	catch (IOException e)
+    	{
+    		logger.error("Could not log task {} {}: {}", task.getValue(), state, e);
+    	}
     }
-
-    @Override
-    public void frameworkMessage(SchedulerDriver driver, ExecutorID executorId, SlaveID slaveId, byte[] data) 
+    
+    //
+    // - Where a task that stopped ends up in its spec's task table
+    //
+    static TaskTable.State stoppedState(TaskState state)
     {
-    	System.out.println("framework message: " + new String(data, StandardCharsets.UTF_8));
+    	switch (state)
+    	{
+    	case TASK_FINISHED:
+    		return TaskTable.State.FINISHED;
+    	case TASK_LOST:
+    		return TaskTable.State.LOST;
+    	default:
+    		return TaskTable.State.FAILED;
+    	}
     }
-
-    @Override
-    public void slaveLost(SchedulerDriver driver, SlaveID slaveId) 
+    
+    //
+    // - Rescinded offers must never be used again
+    //
+    private void handleOfferRescinded(OfferID offerId) 
     {
-    	System.out.println("--> Slave " + slaveId.getValue() + " lost");
+    	boolean held = this.offerPool.rescind(offerId);
+    	logger.debug("offer {} rescinded{}", offerId.getValue(), held ? "; dropped from pool" : "");
     }
-
-    @Override
-    public void executorLost(SchedulerDriver driver, ExecutorID executorId, SlaveID slaveId, int status) 
+    
+    private void handleSlaveLost(SlaveID slaveId) 
     {
-    	System.out.println("--> Executor " + executorId.getValue() + " lost with status " + status);
+    	logger.warn("Slave {} lost", slaveId.getValue());
+    	this.allocator.getPolicy().slaveRemoved(slaveId.getValue());
+    	this.offerPool.removeSlave(slaveId.getValue());
+    	this.allocator.getFilters().forget(slaveId.getValue());
+    	this.allocator.getAgents().forgetSlave(slaveId.getValue());
+    	this.allocator.getImages().forgetSlave(slaveId.getValue());
+    	
+    	//
+    	// - Its tasks should come back lost; ask until they do
+    	//
+    	int asked = this.allocator.getReconciler().reconcileSlave(slaveId, System.currentTimeMillis());
+    	if (asked > 0)
+    	{
+    		logger.info("Reconciling {} tasks of lost slave {}", asked, slaveId.getValue());
+    	}
     }
-
-    public void error(SchedulerDriver driver, String message)
+    
+    private void handleExecutorLost(ExecutorID executorId, SlaveID slaveId, int exitStatus)
     {
-        System.out.println("Error: " + message);
+    	logger.warn("Executor {} lost with status {}", executorId.getValue(), exitStatus);
+    	this.allocator.getReconciler().reconcileExecutor(executorId, slaveId, System.currentTimeMillis());
     }
     
     //
     // - On status update, this checks if the task's application
     // - is entirely finished. Our e.g. condition is to stop any application with 2 running tasks.
+    // - Only apps whose tasks changed are looked at, once per batch.
     // - TODO replace with termination function in Application
     //
-    public void terminateApp(SchedulerDriver driver, String appName)
+    public void terminateApp(SchedulerDriver driver, Application app)
     {
     	//
     	// - Only have to modify this boolean condition for whatever termination condition is needed
     	//
-    	if (this.registeredApps.get(appName).getNumRunning() >= 3)
+    	if (!app.getAppTerminated() && this.terminationCondition.test(app))
 		{   		
     		//
     		// = Update our application spec with termination flag
     		//
-    		System.out.println("Sending kill to " + appName);
-    		this.registeredApps.get(appName).terminateApp(driver, new byte[0]);;
+    		logger.info("Sending kill to {}", app.name);
+    		app.terminateApp(driver, new byte[0]);
+    		this.activeApps--;
+    		if (this.log != null)
+    		{
+    			try
+    			{
+    				this.log.appTerminated(app.name);
+    			}
+    			catch (IOException e)
+    			{
+    				logger.error("Could not log termination of {}: {}", app.name, e);
+    			}
+    		}
 		}
     }
     
@@ -293,61 +1064,117 @@ public class MiniScheduler implements Scheduler
     //
     public void terminateFramework(SchedulerDriver driver)
     {
-        //
-        // - Check if all the apps are finished (yes it's not the fastest check... but will do for now)
-        //
-        boolean allAppsTerminated = true;
-        boolean allTasksStopped = true;
-        
-        for (Application spec : this.registeredApps.values())
-        {
-        	if(!spec.getAppTerminated())
-    		{
-        		allAppsTerminated = false;
-    			break;
-    		}
-        	
-        	if(spec.getNumRunning()!= 0)
-        	{
-        		allTasksStopped = false;
-        		break;
-        	}
-        }
-        
         //
         // - All done; we're finished
         // - Important: wait for all tasks to register as finished first.
         //
-        if (allAppsTerminated && allTasksStopped)
+        if (this.activeApps == 0 && this.runningTasks == 0)
         {
-        	System.out.println("All tasks complete. Driver terminating.");
+        	logger.info("All tasks complete. Driver terminating.");
             driver.stop();
+            this.reconcileTimer.shutdown();
+            if (this.offerExpiry != null)
+            {
+            	this.offerExpiry.shutdown();
+            }
+            this.loop.stop();
+            
+            //
+            // - Nothing to fail over to any more
+            //
+            if (this.log != null)
+            {
+            	this.snapshotWriter.shutdown();
+            	try
+            	{
+            		this.snapshotWriter.awaitTermination(10, TimeUnit.SECONDS);
+            		this.log.delete();
+            	}
+            	catch (IOException | InterruptedException e)
+            	{
+            		logger.error("Could not delete state log: {}", e);
+            	}
+            	this.log = null;
+            }
         }
     }
     
+    //
+    // - Once per batch, together with the per app gauges of the apps whose usage changed
+    //
+    private void updateGauges()
+    {
+    	this.metrics.pendingInstances.set(this.allocator.getPendingIndex().getTotalPending());
+    	this.metrics.activeApps.set(this.activeApps);
+    	this.metrics.runningTasks.set(this.runningTasks);
+    	this.metrics.eventQueue.set(this.loop.size());
+    	this.metrics.refresh();
+    }
+    
+    //
+    // - Add (sign 1) or take out (sign -1) an app's share of the counters above
+    //
+    private void count(Application app, int sign)
+    {
+    	if (!app.getAppTerminated())
+    	{
+    		this.activeApps += sign;
+    	}
+    	this.runningTasks += sign * app.getNumRunning();
+    }
+    
     //
     // - Methods for the REST api
     //
+    //
+    // - Safe from any thread
+    //
+    public SchedulerMetrics getMetrics()
+    {
+    	return this.metrics;
+    }
+    
+    //
+    // - Latest published state; safe from any thread
+    //
+    public SchedulerState.Snapshot getSnapshot()
+    {
+    	return this.state.getSnapshot();
+    }
+    
     public List<String> getRegisteredAppNames()
     {
-    	List<String> names = new ArrayList<String>();
-    	names.addAll(this.registeredApps.keySet());
-    	return names;
+    	return this.state.getSnapshot().getAppNames();
     }
     
     //
-    // Returns jsonnode of an app, rendered by our custom mapper
+    // Returns jsonnode of an app, rendered by our custom mapper when it last changed
     //
     public JsonNode getRegisteredApp(String appName)
     {
-    	return mapper.valueToTree(this.registeredApps.get(appName));
+    	return this.state.getSnapshot().getApp(appName);
     }
     
-    
+    //
+    // - Safe from any thread: the app is queued for the scheduler loop, which is woken to pick it up
+    //
     public void registerApp(Application app)
     {
-    	this.registeredApps.put(app.name, app);
-    	//return this.registeredApps.containsKey(app.name);
+    	this.state.queueRegistration(app);
+    	this.loop.post(SchedulerEvent.registrations());
+    }
+    
+    //
+    // - Scheduler loop: take on everything registered since the last batch
+    //
+    private void applyRegistrations()
+    {
+    	Application app;
+    	while ((app = this.state.pollRegistration()) != null)
+    	{
+    		logger.info("Registering app {}", app.name);
+    		this.putSpecs(app.name, app);
+    	}
     }
     
     //
@@ -0,0 +1,53 @@
+package com.adsk.miniframework;
+
+import java.util.HashMap;
+
+//
+// - Adaptive refuse filters for declined offers
+// - Every time a slave's offers go unused while we do have demand, the refuse time for that
+// - slave doubles (up to a cap), so agents that never fit anything stop being re-offered every
+// - second. A launch on the slave, or reviving offers (which clears master filters), resets it.
+//
+public class OfferFilters
+{
+	public static final double BASE_SECONDS = 1;
+	public static final double MAX_SECONDS = 120;
+	
+	private final HashMap<String, Integer> misses;
+	
+	public OfferFilters()
+	{
+		this.misses = new HashMap<String, Integer>();
+	}
+	
+	public double refuseSeconds(String slaveId)
+	{
+		Integer missed = this.misses.get(slaveId);
+		if (missed == null) return BASE_SECONDS;
+		return Math.min(MAX_SECONDS, BASE_SECONDS * Math.pow(2, missed));
+	}
+	
+	//
+	// - Offers from the slave were declined although something was pending
+	//
+	public void missed(String slaveId)
+	{
+		Integer missed = this.misses.get(slaveId);
+		this.misses.put(slaveId, missed == null ? 1 : missed + 1);
+	}
+	
+	public void used(String slaveId)
+	{
+		this.misses.remove(slaveId);
+	}
+	
+	public void forget(String slaveId)
+	{
+		this.misses.remove(slaveId);
+	}
+	
+	public void reset()
+	{
+		this.misses.clear();
+	}
+}
@@ -0,0 +1,209 @@
+package com.adsk.miniframework;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+
+import org.apache.mesos.Protos.*;
+
+//
+// - Outstanding offers, indexed by slave and by offer id
+// - Offers that weren't used are held for a short window instead of being declined straight
+// - away, so several small offers from one agent can be combined into one big enough for an
+// - executor. Rescinded offers and offers from lost slaves are dropped immediately.
+// - A hold window of 0 keeps the old behaviour: anything unused is declined in the same round.
+// - Only the scheduler loop touches it, so it isn't synchronized.
+//
+public class OfferPool
+{
+	//
+	// - All held offers of one slave, combined
+	//
+	public static class Group
+	{
+		public final String slaveId;
+		private final List<Offer> offers;
+		private final List<ResourceVector> parsed;
+		private long oldest;
+		private long oldestNanos;
+		
+		Group(String slaveId)
+		{
+			this.slaveId = slaveId;
+			this.offers = new ArrayList<Offer>();
+			this.parsed = new ArrayList<ResourceVector>();
+			this.oldest = Long.MAX_VALUE;
+			this.oldestNanos = Long.MAX_VALUE;
+		}
+		
+		public List<Offer> getOffers()
+		{
+			return this.offers;
+		}
+		
+		public List<OfferID> getOfferIds()
+		{
+			List<OfferID> ids = new ArrayList<OfferID>(this.offers.size());
+			for (Offer offer : this.offers)
+			{
+				ids.add(offer.getId());
+			}
+			return ids;
+		}
+		
+		//
+		// - Sum of the offers' resources; each offer was only parsed once, when it arrived
+		//
+		public ResourceVector getAvailable()
+		{
+			ResourceVector available = new ResourceVector();
+			for (ResourceVector vector : this.parsed)
+			{
+				available.addAll(vector);
+			}
+			return available;
+		}
+		
+		public long getOldest()
+		{
+			return this.oldest;
+		}
+		
+		//
+		// - When the oldest offer arrived on System.nanoTime()'s clock
+		//
+		public long getOldestNanos()
+		{
+			return this.oldestNanos;
+		}
+	}
+	
+	private final long holdMillis;
+	private final LinkedHashMap<String, Group> bySlave;
+	private final HashMap<String, Group> byOffer;
+	
+	public OfferPool(long holdMillis)
+	{
+		this.holdMillis = holdMillis;
+		this.bySlave = new LinkedHashMap<String, Group>();
+		this.byOffer = new HashMap<String, Group>();
+	}
+	
+	public long getHoldMillis()
+	{
+		return this.holdMillis;
+	}
+	
+	public void add(List<Offer> offers, long now)
+	{
+		this.add(offers, now, System.nanoTime());
+	}
+	
+	public void add(List<Offer> offers, long now, long nanos)
+	{
+		for (Offer offer : offers)
+		{
+			String slaveId = offer.getSlaveId().getValue();
+			Group group = this.bySlave.get(slaveId);
+			if (group == null)
+			{
+				group = new Group(slaveId);
+				this.bySlave.put(slaveId, group);
+			}
+			group.offers.add(offer);
+			group.parsed.add(ResourceVector.fromResources(offer.getResourcesList()));
+			group.oldest = Math.min(group.oldest, now);
+			group.oldestNanos = Math.min(group.oldestNanos, nanos);
+			this.byOffer.put(offer.getId().getValue(), group);
+		}
+	}
+	
+	//
+	// - Snapshot of the current groups
+	//
+	public List<Group> groups()
+	{
+		return new ArrayList<Group>(this.bySlave.values());
+	}
+	
+	//
+	// - Offers of a group have been accepted or declined
+	//
+	public void remove(Group group)
+	{
+		if (this.bySlave.get(group.slaveId) != group) return;
+		this.bySlave.remove(group.slaveId);
+		for (Offer offer : group.offers)
+		{
+			this.byOffer.remove(offer.getId().getValue());
+		}
+	}
+	
+	public boolean isExpired(Group group, long now)
+	{
+		return now - group.oldest >= this.holdMillis;
+	}
+	
+	//
+	// - Removes and returns groups held longer than the window; the caller declines them
+	//
+	public List<Group> expire(long now)
+	{
+		List<Group> expired = new ArrayList<Group>();
+		Iterator<Group> it = this.bySlave.values().iterator();
+		while (it.hasNext())
+		{
+			Group group = it.next();
+			if (now - group.oldest < this.holdMillis) continue;
+			it.remove();
+			for (Offer offer : group.offers)
+			{
+				this.byOffer.remove(offer.getId().getValue());
+			}
+			expired.add(group);
+		}
+		return expired;
+	}
+	
+	//
+	// - The master took the offer back; forget it without touching the rest of the slave's offers
+	//
+	public boolean rescind(OfferID offerId)
+	{
+		Group group = this.byOffer.remove(offerId.getValue());
+		if (group == null) return false;
+		
+		for (int i = 0; i < group.offers.size(); i++)
+		{
+			if (group.offers.get(i).getId().getValue().equals(offerId.getValue()))
+			{
+				group.offers.remove(i);
+				group.parsed.remove(i);
+				break;
+			}
+		}
+		if (group.offers.isEmpty())
+		{
+			this.bySlave.remove(group.slaveId);
+		}
+		return true;
+	}
+	
+	public int removeSlave(String slaveId)
+	{
+		Group group = this.bySlave.remove(slaveId);
+		if (group == null) return 0;
+		for (Offer offer : group.offers)
+		{
+			this.byOffer.remove(offer.getId().getValue());
+		}
+		return group.offers.size();
+	}
+	
+	public int size()
+	{
+		return this.byOffer.size();
+	}
+}
@@ -0,0 +1,301 @@
+package com.adsk.miniframework;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+
+import org.apache.mesos.*;
+import org.apache.mesos.Protos.*;
+
+import com.adsk.miniframework.logging.Logger;
+
+//
+// - Task reconciliation, following the mesos recommendations: explicitly ask about every task
+// - we think is live until each has been answered, backing off exponentially between passes,
+// - then finish with an implicit reconciliation so the master tells us about anything else
+// - Requests go out in batches, at most one per tick, so a big cluster doesn't flood the master
+// - Answers come back as ordinary status updates; lost or failed tasks free their instance,
+// - which the allocator then launches again. Scheduler loop only.
+//
+public class Reconciler
+{
+	private static final Logger logger = Logger.get(Reconciler.class);
+	
+	public static final int DEFAULT_BATCH_SIZE = 500;
+	public static final long DEFAULT_INITIAL_BACKOFF_MILLIS = 1000;
+	public static final long DEFAULT_MAX_BACKOFF_MILLIS = 60 * 1000;
+	
+	//
+	// - Full reconciliation this often even when nothing seems wrong
+	//
+	public static final long DEFAULT_PERIOD_MILLIS = 15 * 60 * 1000;
+	
+	private final int batchSize;
+	private final long initialBackoffMillis;
+	private final long maxBackoffMillis;
+	private final long periodMillis;
+	
+	//
+	// - Last status of every task we believe is live (synthesized as staging at launch)
+	//
+	private final LinkedHashMap<String, TaskStatus> known;
+	
+	//
+	// - Tasks asked about and not answered yet, and what's left to send of the current pass
+	//
+	private final LinkedHashSet<String> outstanding;
+	private final ArrayDeque<String> queue;
+	private boolean implicitDue;
+	private int attempt;
+	private long nextSend;
+	private long nextFullRound;
+	
+	public Reconciler()
+	{
+		this(DEFAULT_BATCH_SIZE, DEFAULT_INITIAL_BACKOFF_MILLIS, DEFAULT_MAX_BACKOFF_MILLIS, DEFAULT_PERIOD_MILLIS);
+	}
+	
+	public Reconciler(int batchSize, long initialBackoffMillis, long maxBackoffMillis, long periodMillis)
+	{
+		if (batchSize < 1)
+		{
+			throw new IllegalArgumentException("Reconciliation batch size must be at least 1, got " + batchSize);
+		}
+		this.batchSize = batchSize;
+		this.initialBackoffMillis = initialBackoffMillis;
+		this.maxBackoffMillis = maxBackoffMillis;
+		this.periodMillis = periodMillis;
+		this.known = new LinkedHashMap<String, TaskStatus>();
+		this.outstanding = new LinkedHashSet<String>();
+		this.queue = new ArrayDeque<String>();
+		this.nextFullRound = Long.MAX_VALUE;
+	}
+	
+	//
+	// - The slave may be unknown (null) for tasks restored from a snapshot; the master works it out
+	//
+	public void taskLaunched(TaskID task, ExecutorID executor, SlaveID slave)
+	{
+		TaskStatus.Builder status = TaskStatus.newBuilder()
+				.setTaskId(task)
+				.setExecutorId(executor)
+				.setState(TaskState.TASK_STAGING);
+		if (slave != null)
+		{
+			status.setSlaveId(slave);
+		}
+		this.known.put(task.getValue(), status.build());
+	}
+	
+	//
+	// - Stopped before we came back up (see StateLog); nothing left to ask about
+	//
+	public void forget(TaskID task)
+	{
+		this.known.remove(task.getValue());
+		this.outstanding.remove(task.getValue());
+	}
+	
+	//
+	// - Every status update counts as an answer, whatever its reason
+	//
+	public void statusUpdate(TaskStatus status)
+	{
+		String id = status.getTaskId().getValue();
+		this.outstanding.remove(id);
+		
+		if (isTerminal(status.getState()))
+		{
+			this.known.remove(id);
+			return;
+		}
+		
+		//
+		// - Keep what the launch told us if the update leaves it out
+		//
+		TaskStatus previous = this.known.get(id);
+		if (previous != null && (!status.hasSlaveId() || !status.hasExecutorId()))
+		{
+			TaskStatus.Builder merged = status.toBuilder();
+			if (!status.hasSlaveId() && previous.hasSlaveId()) merged.setSlaveId(previous.getSlaveId());
+			if (!status.hasExecutorId() && previous.hasExecutorId()) merged.setExecutorId(previous.getExecutorId());
+			status = merged.build();
+		}
+		this.known.put(id, status);
+	}
+	
+	//
+	// - Start over with every known task, then an implicit round; on (re)registration and periodically
+	//
+	public void reconcileAll(long now)
+	{
+		this.outstanding.clear();
+		this.queue.clear();
+		this.outstanding.addAll(this.known.keySet());
+		this.implicitDue = true;
+		this.attempt = 0;
+		this.nextSend = now;
+		this.nextFullRound = now + this.periodMillis;
+	}
+	
+	//
+	// - The agent is gone; the master should report its tasks lost, make sure we hear about them
+	//
+	public int reconcileSlave(SlaveID slave, long now)
+	{
+		int added = 0;
+		for (TaskStatus status : this.known.values())
+		{
+			if (status.hasSlaveId() && status.getSlaveId().equals(slave))
+			{
+				added += this.ask(status.getTaskId().getValue());
+			}
+		}
+		this.askSoon(added, now);
+		return added;
+	}
+	
+	//
+	// - Same for the tasks of an executor that exited
+	//
+	public int reconcileExecutor(ExecutorID executor, SlaveID slave, long now)
+	{
+		int added = 0;
+		for (TaskStatus status : this.known.values())
+		{
+			if (status.hasExecutorId() && status.getExecutorId().equals(executor)
+					&& (!status.hasSlaveId() || status.getSlaveId().equals(slave)))
+			{
+				added += this.ask(status.getTaskId().getValue());
+			}
+		}
+		this.askSoon(added, now);
+		return added;
+	}
+	
+	//
+	// - Sends at most one batch when it's due; returns the number of tasks asked about
+	//
+	public int tick(SchedulerDriver driver, long now)
+	{
+		if (now >= this.nextFullRound)
+		{
+			this.reconcileAll(now);
+		}
+		if (now < this.nextSend)
+		{
+			return 0;
+		}
+		
+		//
+		// - A new pass over whoever hasn't answered yet
+		//
+		if (this.queue.isEmpty())
+		{
+			this.queue.addAll(this.outstanding);
+		}
+		
+		if (!this.queue.isEmpty())
+		{
+			List<TaskStatus> batch = new ArrayList<TaskStatus>(Math.min(this.batchSize, this.queue.size()));
+			while (batch.size() < this.batchSize && !this.queue.isEmpty())
+			{
+				String id = this.queue.poll();
+				TaskStatus status = this.known.get(id);
+				if (status != null && this.outstanding.contains(id))
+				{
+					batch.add(status);
+				}
+			}
+			
+			if (!batch.isEmpty())
+			{
+				logger.info("Reconciling {} tasks (pass {})", batch.size(), this.attempt + 1);
+				driver.reconcileTasks(batch);
+			}
+			
+			//
+			// - Rest of this pass next tick; after a full pass give the master time to answer
+			//
+			if (this.queue.isEmpty())
+			{
+				this.nextSend = now + this.backoff(this.attempt++);
+			}
+			return batch.size();
+		}
+		
+		if (this.implicitDue)
+		{
+			logger.info("Reconciling implicitly");
+			driver.reconcileTasks(Collections.<TaskStatus>emptyList());
+			this.implicitDue = false;
+			this.attempt = 0;
+		}
+		return 0;
+	}
+	
+	//
+	// - Agent a live task was launched on, null if we don't know the task
+	//
+	public SlaveID getSlave(TaskID task)
+	{
+		TaskStatus status = this.known.get(task.getValue());
+		return status != null && status.hasSlaveId() ? status.getSlaveId() : null;
+	}
+	
+	public boolean isReconciling()
+	{
+		return !this.outstanding.isEmpty() || this.implicitDue;
+	}
+	
+	public int getNumKnown()
+	{
+		return this.known.size();
+	}
+	
+	public int getNumOutstanding()
+	{
+		return this.outstanding.size();
+	}
+	
+	public static boolean isTerminal(TaskState state)
+	{
+		switch (state)
+		{
+		case TASK_FINISHED:
+		case TASK_FAILED:
+		case TASK_KILLED:
+		case TASK_LOST:
+		case TASK_ERROR:
+			return true;
+		default:
+			return false;
+		}
+	}
+	
+	private long backoff(int attempt)
+	{
+		long delay = this.initialBackoffMillis << Math.min(attempt, 30);
+		return Math.min(this.maxBackoffMillis, delay);
+	}
+	
+	private int ask(String id)
+	{
+		return this.outstanding.add(id) ? 1 : 0;
+	}
+	
+	//
+	// - Fresh questions shouldn't wait out the backoff of an older pass
+	//
+	private void askSoon(int added, long now)
+	{
+		if (added > 0 && this.queue.isEmpty())
+		{
+			this.attempt = 0;
+			this.nextSend = Math.min(this.nextSend, now);
+		}
+	}
+}
@@ -0,0 +1,658 @@
+package com.adsk.miniframework;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+
+import org.apache.mesos.Protos.*;
+
+//
+// - Compact multi-resource vector backed by primitive arrays
+// - Resource names are resolved to integer slots once (registry below), so fit checks,
+// - subtraction and quota comparisons never compare strings
+// - Scalars (cpus, mem, disk, ...) are doubles, ranges (ports) are kept as sorted [begin, end] pairs
+// - plus a count of values, sets are sorted arrays of interned item ids
+// - Offers carry concrete ranges; demands only carry how many range values they need, and
+// - get concrete values assigned by subtract()
+//
+public final class ResourceVector
+{
+	//
+	// - Slot registry; the well known resources get fixed slots
+	// - Slots are only ever added, under the class lock. The names by slot are copy-on-write
+	// - arrays published through volatile fields, so toResources(), writeTo() and toString()
+	// - read them from netty and snapshot threads without locking.
+	//
+	private static final HashMap<String, Integer> scalarSlots = new HashMap<String, Integer>();
+	private static final HashMap<String, Integer> rangeSlots = new HashMap<String, Integer>();
+	private static final HashMap<String, Integer> setSlots = new HashMap<String, Integer>();
+	private static volatile String[] scalarNames = new String[0];
+	private static volatile String[] rangeNames = new String[0];
+	private static volatile String[] setNames = new String[0];
+
+	//
+	// - Set items are interned per set resource, by id within their set, and at most
+	// - MAX_SET_ITEMS per set: items come from offers, so the registry can't grow with whatever
+	// - agents advertise. Offered items past the cap are left out of the offer.
+	//
+	public static final int MAX_SET_ITEMS = 4096;
+	private static final List<HashMap<String, Integer>> setItemIds = new ArrayList<HashMap<String, Integer>>();
+	private static volatile String[][] setItems = new String[0][];
+
+	public static final int CPUS = scalarSlot("cpus");
+	public static final int MEM = scalarSlot("mem");
+	public static final int DISK = scalarSlot("disk");
+	public static final int PORTS = rangeSlot("ports");
+
+	//
+	// - Mesos rounds scalars to three decimals; anything smaller is noise
+	//
+	private static final double EPSILON = 1e-6;
+
+	private static final long[] NO_RANGES = new long[0];
+	private static final int[] NO_ITEMS = new int[0];
+
+	private double[] scalars;
+	private long[] rangeCounts;
+	private long[][] ranges;
+	private int[][] sets;
+
+	public ResourceVector()
+	{
+		this.scalars = new double[3];
+		this.rangeCounts = new long[1];
+		this.ranges = new long[1][];
+		this.sets = new int[0][];
+	}
+
+	public static ResourceVector of(double cpu, double mem)
+	{
+		return new ResourceVector().setScalar(CPUS, cpu).setScalar(MEM, mem);
+	}
+
+	public static synchronized int scalarSlot(String name)
+	{
+		Integer slot = scalarSlots.get(name);
+		if (slot == null)
+		{
+			slot = scalarNames.length;
+			scalarSlots.put(name, slot);
+			scalarNames = append(scalarNames, name);
+		}
+		return slot;
+	}
+
+	public static synchronized int rangeSlot(String name)
+	{
+		Integer slot = rangeSlots.get(name);
+		if (slot == null)
+		{
+			slot = rangeNames.length;
+			rangeSlots.put(name, slot);
+			rangeNames = append(rangeNames, name);
+		}
+		return slot;
+	}
+
+	public static synchronized int setSlot(String name)
+	{
+		Integer slot = setSlots.get(name);
+		if (slot == null)
+		{
+			slot = setNames.length;
+			setSlots.put(name, slot);
+			setItemIds.add(new HashMap<String, Integer>());
+			String[][] items = Arrays.copyOf(setItems, slot + 1);
+			items[slot] = new String[0];
+			setItems = items;
+			setNames = append(setNames, name);
+		}
+		return slot;
+	}
+
+	//
+	// - Id of the item within its set; -1 once the set has MAX_SET_ITEMS others
+	//
+	private static synchronized int setItemId(int slot, String item)
+	{
+		HashMap<String, Integer> ids = setItemIds.get(slot);
+		Integer id = ids.get(item);
+		if (id == null)
+		{
+			if (ids.size() >= MAX_SET_ITEMS) return -1;
+			id = ids.size();
+			ids.put(item, id);
+			String[][] items = setItems.clone();
+			items[slot] = append(items[slot], item);
+			setItems = items;
+		}
+		return id;
+	}
+
+	private static String[] append(String[] names, String name)
+	{
+		String[] grown = Arrays.copyOf(names, names.length + 1);
+		grown[names.length] = name;
+		return grown;
+	}
+
+	//
+	// - Parse a resource list (offer, task or executor) once; unreserved and reserved roles are summed
+	//
+	public static ResourceVector fromResources(List<Resource> resources)
+	{
+		ResourceVector vector = new ResourceVector();
+		for (Resource resource : resources)
+		{
+			switch (resource.getType())
+			{
+				case SCALAR:
+					int scalar = scalarSlot(resource.getName());
+					vector.setScalar(scalar, vector.getScalar(scalar) + resource.getScalar().getValue());
+					break;
+				case RANGES:
+					int range = rangeSlot(resource.getName());
+					for (Value.Range r : resource.getRanges().getRangeList())
+					{
+						vector.addRange(range, r.getBegin(), r.getEnd());
+					}
+					break;
+				case SET:
+					int set = setSlot(resource.getName());
+					for (String item : resource.getSet().getItemList())
+					{
+						int id = setItemId(set, item);
+						if (id >= 0) vector.addSetItemId(set, id);
+					}
+					break;
+				default:
+					break;
+			}
+		}
+		return vector;
+	}
+
+	//
+	// - Builder-style setters
+	//
+	public ResourceVector setScalar(int slot, double value)
+	{
+		if (slot >= this.scalars.length) this.scalars = Arrays.copyOf(this.scalars, slot + 1);
+		this.scalars[slot] = value;
+		return this;
+	}
+
+	//
+	// - Demand for a number of values out of a range resource (e.g. 2 ports)
+	//
+	public ResourceVector setRangeCount(int slot, long count)
+	{
+		this.growRanges(slot);
+		this.rangeCounts[slot] = count;
+		return this;
+	}
+
+	public ResourceVector addRange(int slot, long begin, long end)
+	{
+		this.growRanges(slot);
+		long[] current = this.ranges[slot] == null ? NO_RANGES : this.ranges[slot];
+		long[] merged = Arrays.copyOf(current, current.length + 2);
+		merged[current.length] = begin;
+		merged[current.length + 1] = end;
+		this.ranges[slot] = normalise(merged);
+		this.rangeCounts[slot] = width(this.ranges[slot]);
+		return this;
+	}
+
+	//
+	// - Throws IllegalStateException if the set already has MAX_SET_ITEMS distinct items
+	//
+	public ResourceVector addSetItem(int slot, String item)
+	{
+		int id = setItemId(slot, item);
+		if (id < 0)
+		{
+			throw new IllegalStateException("More than " + MAX_SET_ITEMS + " distinct items in set resource " + setNames[slot]);
+		}
+		return this.addSetItemId(slot, id);
+	}
+
+	private ResourceVector addSetItemId(int slot, int id)
+	{
+		this.growSets(slot);
+		int[] current = this.sets[slot] == null ? NO_ITEMS : this.sets[slot];
+		if (Arrays.binarySearch(current, id) >= 0) return this;
+		int[] items = Arrays.copyOf(current, current.length + 1);
+		items[current.length] = id;
+		Arrays.sort(items);
+		this.sets[slot] = items;
+		return this;
+	}
+
+	//
+	// - Getters
+	//
+	public double getScalar(int slot)
+	{
+		return slot < this.scalars.length ? this.scalars[slot] : 0;
+	}
+
+	public double getCpu()
+	{
+		return this.getScalar(CPUS);
+	}
+
+	public double getMem()
+	{
+		return this.getScalar(MEM);
+	}
+
+	public double getDisk()
+	{
+		return this.getScalar(DISK);
+	}
+
+	public long getRangeCount(int slot)
+	{
+		return slot < this.rangeCounts.length ? this.rangeCounts[slot] : 0;
+	}
+
+	public long[] getRanges(int slot)
+	{
+		return slot < this.ranges.length && this.ranges[slot] != null ? this.ranges[slot] : NO_RANGES;
+	}
+
+	public int getSetSize(int slot)
+	{
+		return slot < this.sets.length && this.sets[slot] != null ? this.sets[slot].length : 0;
+	}
+
+	public boolean hasSets()
+	{
+		for (int[] set : this.sets)
+		{
+			if (set != null && set.length > 0) return true;
+		}
+		return false;
+	}
+
+	//
+	// - True if every part of the demand fits into this vector
+	//
+	public boolean fits(ResourceVector demand)
+	{
+		for (int i = 0; i < demand.scalars.length; i++)
+		{
+			if (demand.scalars[i] > this.getScalar(i) + EPSILON) return false;
+		}
+		for (int i = 0; i < demand.rangeCounts.length; i++)
+		{
+			if (demand.rangeCounts[i] > this.getRangeCount(i)) return false;
+		}
+		for (int i = 0; i < demand.sets.length; i++)
+		{
+			if (demand.sets[i] != null && !containsAll(this.sets.length > i ? this.sets[i] : null, demand.sets[i])) return false;
+		}
+		return true;
+	}
+
+	//
+	// - True if any scalar with a positive limit has been reached (quota check)
+	//
+	public boolean reaches(ResourceVector limit)
+	{
+		for (int i = 0; i < limit.scalars.length; i++)
+		{
+			if (limit.scalars[i] > 0 && this.getScalar(i) >= limit.scalars[i] - EPSILON) return true;
+		}
+		return false;
+	}
+
+	//
+	// - Takes the demand out of this vector and returns what was actually granted;
+	// - range counts are turned into concrete values from the low end of our ranges.
+	// - Callers check fits() first.
+	//
+	public ResourceVector subtract(ResourceVector demand)
+	{
+		ResourceVector grant = new ResourceVector();
+		for (int i = 0; i < demand.scalars.length; i++)
+		{
+			if (demand.scalars[i] == 0) continue;
+			double left = this.getScalar(i) - demand.scalars[i];
+			this.setScalar(i, left < EPSILON ? 0 : left);
+			grant.setScalar(i, demand.scalars[i]);
+		}
+		for (int i = 0; i < demand.rangeCounts.length; i++)
+		{
+			long wanted = demand.rangeCounts[i];
+			if (wanted == 0) continue;
+			this.growRanges(i);
+			long[] mine = this.getRanges(i);
+			int k = 0;
+			while (wanted > 0 && k < mine.length)
+			{
+				long take = Math.min(wanted, mine[k + 1] - mine[k] + 1);
+				grant.addRange(i, mine[k], mine[k] + take - 1);
+				mine[k] += take;
+				wanted -= take;
+				if (mine[k] > mine[k + 1]) k += 2;
+			}
+			this.ranges[i] = Arrays.copyOfRange(mine, k, mine.length);
+			this.rangeCounts[i] = width(this.ranges[i]);
+		}
+		for (int i = 0; i < demand.sets.length; i++)
+		{
+			if (demand.sets[i] == null) continue;
+			if (i < this.sets.length && this.sets[i] != null) this.sets[i] = removeAll(this.sets[i], demand.sets[i]);
+			grant.growSets(i);
+			grant.sets[i] = demand.sets[i].clone();
+		}
+		return grant;
+	}
+
+	//
+	// - Accumulate (e.g. usage counters); concrete ranges and sets are not tracked here
+	//
+	public void add(ResourceVector other, int times)
+	{
+		for (int i = 0; i < other.scalars.length; i++)
+		{
+			if (other.scalars[i] != 0) this.setScalar(i, this.getScalar(i) + other.scalars[i] * times);
+		}
+		for (int i = 0; i < other.rangeCounts.length; i++)
+		{
+			if (other.rangeCounts[i] == 0) continue;
+			this.growRanges(i);
+			this.rangeCounts[i] += other.rangeCounts[i] * times;
+		}
+	}
+
+	//
+	// - Merge another offer's resources into this one (concrete ranges and set items included),
+	// - e.g. to combine several offers from the same agent
+	//
+	public void addAll(ResourceVector other)
+	{
+		this.add(other, 1);
+		for (int i = 0; i < other.ranges.length; i++)
+		{
+			long[] theirs = other.ranges[i];
+			if (theirs == null || theirs.length == 0) continue;
+			this.growRanges(i);
+			long[] mine = this.getRanges(i);
+			long[] merged = Arrays.copyOf(mine, mine.length + theirs.length);
+			System.arraycopy(theirs, 0, merged, mine.length, theirs.length);
+			this.ranges[i] = normalise(merged);
+			this.rangeCounts[i] = width(this.ranges[i]);
+		}
+		for (int i = 0; i < other.sets.length; i++)
+		{
+			int[] theirs = other.sets[i];
+			if (theirs == null || theirs.length == 0) continue;
+			this.growSets(i);
+			for (int id : theirs)
+			{
+				int[] current = this.sets[i] == null ? NO_ITEMS : this.sets[i];
+				if (Arrays.binarySearch(current, id) >= 0) continue;
+				int[] items = Arrays.copyOf(current, current.length + 1);
+				items[current.length] = id;
+				Arrays.sort(items);
+				this.sets[i] = items;
+			}
+		}
+	}
+
+	public void clear()
+	{
+		Arrays.fill(this.scalars, 0);
+		Arrays.fill(this.rangeCounts, 0);
+		Arrays.fill(this.ranges, null);
+		Arrays.fill(this.sets, null);
+	}
+
+	public ResourceVector copy()
+	{
+		ResourceVector copy = new ResourceVector();
+		copy.scalars = this.scalars.clone();
+		copy.rangeCounts = this.rangeCounts.clone();
+		copy.ranges = new long[this.ranges.length][];
+		for (int i = 0; i < this.ranges.length; i++)
+		{
+			copy.ranges[i] = this.ranges[i] == null ? null : this.ranges[i].clone();
+		}
+		copy.sets = new int[this.sets.length][];
+		for (int i = 0; i < this.sets.length; i++)
+		{
+			copy.sets[i] = this.sets[i] == null ? null : this.sets[i].clone();
+		}
+		return copy;
+	}
+
+	//
+	// - Mesos resources for a TaskInfo; only concrete ranges are emitted
+	//
+	public List<Resource> toResources()
+	{
+		String[] scalarNames = ResourceVector.scalarNames;
+		String[] rangeNames = ResourceVector.rangeNames;
+		String[] setNames = ResourceVector.setNames;
+		String[][] setItems = ResourceVector.setItems;
+		List<Resource> resources = new ArrayList<Resource>();
+		for (int i = 0; i < this.scalars.length; i++)
+		{
+			if (this.scalars[i] <= 0) continue;
+			resources.add(Resource.newBuilder()
+							.setName(scalarNames[i])
+							.setType(Value.Type.SCALAR)
+							.setScalar(Value.Scalar.newBuilder().setValue(this.scalars[i]))
+							.build());
+		}
+		for (int i = 0; i < this.ranges.length; i++)
+		{
+			if (this.ranges[i] == null || this.ranges[i].length == 0) continue;
+			Value.Ranges.Builder ranges = Value.Ranges.newBuilder();
+			for (int k = 0; k < this.ranges[i].length; k += 2)
+			{
+				ranges.addRange(Value.Range.newBuilder().setBegin(this.ranges[i][k]).setEnd(this.ranges[i][k + 1]));
+			}
+			resources.add(Resource.newBuilder()
+							.setName(rangeNames[i])
+							.setType(Value.Type.RANGES)
+							.setRanges(ranges)
+							.build());
+		}
+		for (int i = 0; i < this.sets.length; i++)
+		{
+			if (this.sets[i] == null || this.sets[i].length == 0) continue;
+			Value.Set.Builder set = Value.Set.newBuilder();
+			for (int id : this.sets[i])
+			{
+				set.addItem(setItems[i][id]);
+			}
+			resources.add(Resource.newBuilder()
+							.setName(setNames[i])
+							.setType(Value.Type.SET)
+							.setSet(set)
+							.build());
+		}
+		return resources;
+	}
+
+	//
+	// - Binary form for the state log; slots are written by name since they're assigned per process
+	//
+	public void writeTo(DataOutput out) throws IOException
+	{
+		String[] scalarNames = ResourceVector.scalarNames;
+		String[] rangeNames = ResourceVector.rangeNames;
+		String[] setNames = ResourceVector.setNames;
+		String[][] setItems = ResourceVector.setItems;
+		out.writeInt(this.scalars.length);
+		for (int i = 0; i < this.scalars.length; i++)
+		{
+			out.writeUTF(scalarNames[i]);
+			out.writeDouble(this.scalars[i]);
+		}
+		out.writeInt(this.rangeCounts.length);
+		for (int i = 0; i < this.rangeCounts.length; i++)
+		{
+			long[] ranges = this.getRanges(i);
+			out.writeUTF(rangeNames[i]);
+			out.writeLong(this.rangeCounts[i]);
+			out.writeInt(ranges.length);
+			for (long bound : ranges) out.writeLong(bound);
+		}
+		out.writeInt(this.sets.length);
+		for (int i = 0; i < this.sets.length; i++)
+		{
+			int[] items = this.sets[i] == null ? NO_ITEMS : this.sets[i];
+			out.writeUTF(setNames[i]);
+			out.writeInt(items.length);
+			for (int id : items) out.writeUTF(setItems[i][id]);
+		}
+	}
+
+	public static ResourceVector readFrom(DataInput in) throws IOException
+	{
+		ResourceVector vector = new ResourceVector();
+		for (int n = in.readInt(); n > 0; n--)
+		{
+			int slot = scalarSlot(in.readUTF());
+			vector.setScalar(slot, in.readDouble());
+		}
+		for (int n = in.readInt(); n > 0; n--)
+		{
+			int slot = rangeSlot(in.readUTF());
+			long count = in.readLong();
+			int bounds = in.readInt();
+			for (int k = 0; k < bounds; k += 2)
+			{
+				vector.addRange(slot, in.readLong(), in.readLong());
+			}
+			vector.setRangeCount(slot, count);
+		}
+		for (int n = in.readInt(); n > 0; n--)
+		{
+			int slot = setSlot(in.readUTF());
+			vector.growSets(slot);
+			for (int items = in.readInt(); items > 0; items--)
+			{
+				vector.addSetItem(slot, in.readUTF());
+			}
+		}
+		return vector;
+	}
+
+	@Override
+	public String toString()
+	{
+		String[] scalarNames = ResourceVector.scalarNames;
+		String[] rangeNames = ResourceVector.rangeNames;
+		String[] setNames = ResourceVector.setNames;
+		StringBuilder sb = new StringBuilder("{");
+		for (int i = 0; i < this.scalars.length; i++)
+		{
+			if (this.scalars[i] == 0) continue;
+			if (sb.length() > 1) sb.append(", ");
+			sb.append(scalarNames[i]).append(": ").append(this.scalars[i]);
+		}
+		for (int i = 0; i < this.rangeCounts.length; i++)
+		{
+			if (this.rangeCounts[i] == 0) continue;
+			if (sb.length() > 1) sb.append(", ");
+			sb.append(rangeNames[i]).append(": ").append(this.rangeCounts[i]);
+		}
+		for (int i = 0; i < this.sets.length; i++)
+		{
+			if (this.sets[i] == null) continue;
+			if (sb.length() > 1) sb.append(", ");
+			sb.append(setNames[i]).append(": ").append(this.sets[i].length);
+		}
+		return sb.append("}").toString();
+	}
+
+	//
+	// - Array helpers
+	//
+	private void growRanges(int slot)
+	{
+		if (slot < this.rangeCounts.length) return;
+		this.rangeCounts = Arrays.copyOf(this.rangeCounts, slot + 1);
+		this.ranges = Arrays.copyOf(this.ranges, slot + 1);
+	}
+
+	private void growSets(int slot)
+	{
+		if (slot < this.sets.length) return;
+		this.sets = Arrays.copyOf(this.sets, slot + 1);
+	}
+
+	private static long width(long[] ranges)
+	{
+		long width = 0;
+		for (int k = 0; k < ranges.length; k += 2)
+		{
+			width += ranges[k + 1] - ranges[k] + 1;
+		}
+		return width;
+	}
+
+	//
+	// - Sort [begin, end] pairs and merge overlapping or adjacent ones
+	//
+	private static long[] normalise(long[] pairs)
+	{
+		int n = pairs.length / 2;
+		long[][] sorted = new long[n][];
+		for (int k = 0; k < n; k++)
+		{
+			sorted[k] = new long[] { pairs[2 * k], pairs[2 * k + 1] };
+		}
+		Arrays.sort(sorted, (a, b) -> Long.compare(a[0], b[0]));
+		
+		long[] merged = new long[pairs.length];
+		int m = 0;
+		for (long[] range : sorted)
+		{
+			if (m > 0 && range[0] <= merged[m - 1] + 1)
+			{
+				merged[m - 1] = Math.max(merged[m - 1], range[1]);
+			}
+			else
+			{
+				merged[m++] = range[0];
+				merged[m++] = range[1];
+			}
+		}
+		return Arrays.copyOf(merged, m);
+	}
+
+	private static boolean containsAll(int[] haystack, int[] needles)
+	{
+		if (needles.length == 0) return true;
+		if (haystack == null) return false;
+		int h = 0;
+		for (int needle : needles)
+		{
+			while (h < haystack.length && haystack[h] < needle) h++;
+			if (h == haystack.length || haystack[h] != needle) return false;
+		}
+		return true;
+	}
+
+	private static int[] removeAll(int[] items, int[] removed)
+	{
+		int[] left = new int[items.length];
+		int n = 0;
+		for (int item : items)
+		{
+			if (Arrays.binarySearch(removed, item) < 0) left[n++] = item;
+		}
+		return Arrays.copyOf(left, n);
+	}
+}
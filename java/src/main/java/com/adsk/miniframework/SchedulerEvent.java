@@ -0,0 +1,149 @@
+package com.adsk.miniframework;
+
+import java.util.List;
+
+import org.apache.mesos.*;
+import org.apache.mesos.Protos.*;
+
+//
+// - A driver callback (or timer tick) captured as is, to be handled on the scheduler loop
+// - Only the fields of its type are set
+//
+public final class SchedulerEvent
+{
+	public enum Type
+	{
+		REGISTERED,
+		REREGISTERED,
+		DISCONNECTED,
+		OFFERS,
+		OFFER_RESCINDED,
+		STATUS,
+		FRAMEWORK_MESSAGE,
+		SLAVE_LOST,
+		EXECUTOR_LOST,
+		ERROR,
+		REGISTRATIONS,
+		EXPIRE_OFFERS,
+		RECONCILE
+	}
+	
+	public final Type type;
+	public final SchedulerDriver driver;
+	public final long timestamp;
+	
+	//
+	// - Same moment on the monotonic clock, for measuring how long events wait
+	//
+	public final long nanos;
+	
+	FrameworkID frameworkId;
+	MasterInfo masterInfo;
+	List<Offer> offers;
+	OfferID offerId;
+	TaskStatus status;
+	ExecutorID executorId;
+	SlaveID slaveId;
+	int exitStatus;
+	byte[] data;
+	String message;
+	
+	private SchedulerEvent(Type type, SchedulerDriver driver)
+	{
+		this.type = type;
+		this.driver = driver;
+		this.timestamp = System.currentTimeMillis();
+		this.nanos = System.nanoTime();
+	}
+	
+	public static SchedulerEvent registered(SchedulerDriver driver, FrameworkID frameworkId, MasterInfo masterInfo)
+	{
+		SchedulerEvent event = new SchedulerEvent(Type.REGISTERED, driver);
+		event.frameworkId = frameworkId;
+		event.masterInfo = masterInfo;
+		return event;
+	}
+	
+	public static SchedulerEvent reregistered(SchedulerDriver driver, MasterInfo masterInfo)
+	{
+		SchedulerEvent event = new SchedulerEvent(Type.REREGISTERED, driver);
+		event.masterInfo = masterInfo;
+		return event;
+	}
+	
+	public static SchedulerEvent disconnected(SchedulerDriver driver)
+	{
+		return new SchedulerEvent(Type.DISCONNECTED, driver);
+	}
+	
+	public static SchedulerEvent offers(SchedulerDriver driver, List<Offer> offers)
+	{
+		SchedulerEvent event = new SchedulerEvent(Type.OFFERS, driver);
+		event.offers = offers;
+		return event;
+	}
+	
+	public static SchedulerEvent offerRescinded(SchedulerDriver driver, OfferID offerId)
+	{
+		SchedulerEvent event = new SchedulerEvent(Type.OFFER_RESCINDED, driver);
+		event.offerId = offerId;
+		return event;
+	}
+	
+	public static SchedulerEvent status(SchedulerDriver driver, TaskStatus status)
+	{
+		SchedulerEvent event = new SchedulerEvent(Type.STATUS, driver);
+		event.status = status;
+		return event;
+	}
+	
+	public static SchedulerEvent frameworkMessage(SchedulerDriver driver, ExecutorID executorId, SlaveID slaveId, byte[] data)
+	{
+		SchedulerEvent event = new SchedulerEvent(Type.FRAMEWORK_MESSAGE, driver);
+		event.executorId = executorId;
+		event.slaveId = slaveId;
+		event.data = data;
+		return event;
+	}
+	
+	public static SchedulerEvent slaveLost(SchedulerDriver driver, SlaveID slaveId)
+	{
+		SchedulerEvent event = new SchedulerEvent(Type.SLAVE_LOST, driver);
+		event.slaveId = slaveId;
+		return event;
+	}
+	
+	public static SchedulerEvent executorLost(SchedulerDriver driver, ExecutorID executorId, SlaveID slaveId, int exitStatus)
+	{
+		SchedulerEvent event = new SchedulerEvent(Type.EXECUTOR_LOST, driver);
+		event.executorId = executorId;
+		event.slaveId = slaveId;
+		event.exitStatus = exitStatus;
+		return event;
+	}
+	
+	public static SchedulerEvent error(SchedulerDriver driver, String message)
+	{
+		SchedulerEvent event = new SchedulerEvent(Type.ERROR, driver);
+		event.message = message;
+		return event;
+	}
+	
+	//
+	// - Not from the driver: apps were queued by registerApp, or held offers may have expired
+	//
+	public static SchedulerEvent registrations()
+	{
+		return new SchedulerEvent(Type.REGISTRATIONS, null);
+	}
+	
+	public static SchedulerEvent expireOffers(SchedulerDriver driver)
+	{
+		return new SchedulerEvent(Type.EXPIRE_OFFERS, driver);
+	}
+	
+	public static SchedulerEvent reconcile(SchedulerDriver driver)
+	{
+		return new SchedulerEvent(Type.RECONCILE, driver);
+	}
+}
@@ -0,0 +1,144 @@
+package com.adsk.miniframework;
+
+import com.adsk.miniframework.metrics.Counter;
+import com.adsk.miniframework.metrics.Gauge;
+import com.adsk.miniframework.metrics.Histogram;
+import com.adsk.miniframework.metrics.MetricsRegistry;
+
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+//
+// - What the scheduler measures about itself, registered under prometheus names
+// - Everything is recorded on the scheduler loop; the registry is scraped from netty threads.
+// - Per app usage follows the apps' usage listeners, the same way SchedulerState does: changed
+// - apps are marked dirty and only those are read again, once per batch (see refresh()).
+//
+public class SchedulerMetrics implements Application.UsageListener
+{
+	private static final class AppGauges
+	{
+		final Gauge cpu;
+		final Gauge mem;
+		final Gauge running;
+		final Gauge launched;
+		
+		AppGauges(MetricsRegistry registry, String app)
+		{
+			this.cpu = registry.gauge("miniframework_app_cpus_used", "Cpus of the app's running tasks", "app", app);
+			this.mem = registry.gauge("miniframework_app_mem_used_megabytes", "Memory of the app's running tasks", "app", app);
+			this.running = registry.gauge("miniframework_app_tasks_running", "Running tasks of the app", "app", app);
+			this.launched = registry.gauge("miniframework_app_tasks_staged", "Launched tasks of the app not running yet", "app", app);
+		}
+	}
+	
+	private final MetricsRegistry registry;
+	
+	public final Histogram offerToAccept;
+	public final Histogram launchToRunning;
+	public final Histogram statusProcessing;
+	public final Histogram eventDelay;
+	
+	public final Counter offersReceived;
+	public final Counter offersDeclined;
+	public final Counter tasksLaunched;
+	public final Counter statusUpdates;
+	
+	public final Gauge pendingInstances;
+	public final Gauge activeApps;
+	public final Gauge runningTasks;
+	public final Gauge eventQueue;
+	
+	private final IdentityHashMap<Application, AppGauges> apps;
+	private final IdentityHashMap<Application, AppGauges> dirty;
+	
+	public SchedulerMetrics()
+	{
+		this(new MetricsRegistry());
+	}
+	
+	public SchedulerMetrics(MetricsRegistry registry)
+	{
+		this.registry = registry;
+		this.offerToAccept = registry.latency("miniframework_offer_accept_seconds",
+											"From receiving an offer to accepting it with launches");
+		this.launchToRunning = registry.latency("miniframework_task_launch_running_seconds",
+											"From launching a task to its TASK_RUNNING update");
+		this.statusProcessing = registry.latency("miniframework_status_update_processing_seconds",
+											"Applying one status update on the scheduler loop");
+		this.eventDelay = registry.latency("miniframework_event_delay_seconds",
+											"From a driver callback to the scheduler loop handling it; grows when the loop stalls");
+		
+		this.offersReceived = registry.counter("miniframework_offers_received_total", "Offers received");
+		this.offersDeclined = registry.counter("miniframework_offers_declined_total", "Offers declined");
+		this.tasksLaunched = registry.counter("miniframework_tasks_launched_total", "Tasks launched");
+		this.statusUpdates = registry.counter("miniframework_status_updates_total", "Status updates applied");
+		
+		this.pendingInstances = registry.gauge("miniframework_pending_instances", "Executor instances waiting for an offer");
+		this.activeApps = registry.gauge("miniframework_apps_active", "Registered apps not terminated yet");
+		this.runningTasks = registry.gauge("miniframework_tasks_running", "Running tasks over all apps");
+		this.eventQueue = registry.gauge("miniframework_event_queue_length", "Events waiting for the scheduler loop");
+		
+		this.apps = new IdentityHashMap<Application, AppGauges>();
+		this.dirty = new IdentityHashMap<Application, AppGauges>();
+	}
+	
+	public MetricsRegistry getRegistry()
+	{
+		return this.registry;
+	}
+	
+	public void appAdded(Application app)
+	{
+		if (!this.apps.containsKey(app))
+		{
+			this.apps.put(app, new AppGauges(this.registry, app.name));
+			app.addUsageListener(this);
+		}
+		refresh(app, this.apps.get(app));
+	}
+	
+	public void appRemoved(Application app)
+	{
+		app.removeUsageListener(this);
+		this.dirty.remove(app);
+		if (this.apps.remove(app) == null) return;
+		
+		this.registry.remove("miniframework_app_cpus_used", "app", app.name);
+		this.registry.remove("miniframework_app_mem_used_megabytes", "app", app.name);
+		this.registry.remove("miniframework_app_tasks_running", "app", app.name);
+		this.registry.remove("miniframework_app_tasks_staged", "app", app.name);
+	}
+	
+	@Override
+	public void usageChanged(Application app)
+	{
+		AppGauges gauges = this.apps.get(app);
+		if (gauges != null)
+		{
+			this.dirty.put(app, gauges);
+		}
+	}
+	
+	//
+	// - Scheduler loop, after each batch; only the apps whose usage changed since the last one
+	//
+	public void refresh()
+	{
+		if (this.dirty.isEmpty()) return;
+		
+		for (Map.Entry<Application, AppGauges> entry : this.dirty.entrySet())
+		{
+			refresh(entry.getKey(), entry.getValue());
+		}
+		this.dirty.clear();
+	}
+	
+	private static void refresh(Application app, AppGauges gauges)
+	{
+		gauges.cpu.set(app.getCpuUsed());
+		gauges.mem.set(app.getMemUsed());
+		gauges.running.set(app.getNumRunning());
+		gauges.launched.set(app.getNumLaunched());
+	}
+}
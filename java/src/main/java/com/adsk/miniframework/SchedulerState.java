@@ -0,0 +1,137 @@
+package com.adsk.miniframework;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+//
+// - The scheduler loop is the only writer of scheduler state. Everyone else (the REST handlers
+// - on netty threads) reads immutable, versioned snapshots it publishes, so they never see
+// - collections mid-update and never take a lock; registrations from outside go through a
+// - queue the loop drains.
+// - Apps are rendered to json when they change, and only then; a snapshot shares the
+// - rendered trees of the apps that didn't change since the last one.
+//
+public class SchedulerState implements Application.UsageListener
+{
+	public static final class Snapshot
+	{
+		private final long version;
+		private final Map<String, JsonNode> apps;
+		private final List<String> appNames;
+		
+		private Snapshot(long version, Map<String, JsonNode> apps)
+		{
+			this.version = version;
+			this.apps = Collections.unmodifiableMap(apps);
+			this.appNames = Collections.unmodifiableList(new ArrayList<String>(apps.keySet()));
+		}
+		
+		public long getVersion()
+		{
+			return this.version;
+		}
+		
+		public List<String> getAppNames()
+		{
+			return this.appNames;
+		}
+		
+		//
+		// - Rendered app, null if there's no such app; shared between readers, don't modify it
+		//
+		public JsonNode getApp(String name)
+		{
+			return this.apps.get(name);
+		}
+	}
+	
+	private final ObjectMapper mapper;
+	private final ConcurrentLinkedQueue<Application> registrations;
+	private volatile Snapshot current;
+	
+	//
+	// - Writer side: rendered apps and the ones changed since the last snapshot
+	//
+	private final HashMap<String, JsonNode> rendered;
+	private final IdentityHashMap<Application, Boolean> dirty;
+	private boolean removed;
+	
+	public SchedulerState(ObjectMapper mapper)
+	{
+		this.mapper = mapper;
+		this.registrations = new ConcurrentLinkedQueue<Application>();
+		this.rendered = new HashMap<String, JsonNode>();
+		this.dirty = new IdentityHashMap<Application, Boolean>();
+		this.current = new Snapshot(0, new HashMap<String, JsonNode>());
+	}
+	
+	//
+	// - Any thread
+	//
+	public Snapshot getSnapshot()
+	{
+		return this.current;
+	}
+	
+	public void queueRegistration(Application app)
+	{
+		this.registrations.add(app);
+	}
+	
+	//
+	// - Writer only from here on
+	//
+	public Application pollRegistration()
+	{
+		return this.registrations.poll();
+	}
+	
+	public void appAdded(Application app)
+	{
+		app.addUsageListener(this);
+		this.dirty.put(app, Boolean.TRUE);
+	}
+	
+	public void appRemoved(Application app)
+	{
+		app.removeUsageListener(this);
+		this.dirty.remove(app);
+		this.rendered.remove(app.name);
+		this.removed = true;
+	}
+	
+	@Override
+	public void usageChanged(Application app)
+	{
+		this.dirty.put(app, Boolean.TRUE);
+	}
+	
+	//
+	// - Render whatever changed and publish a new snapshot; false if nothing had
+	//
+	public boolean publish()
+	{
+		if (this.dirty.isEmpty() && !this.removed)
+		{
+			return false;
+		}
+		
+		for (Application app : this.dirty.keySet())
+		{
+			this.rendered.put(app.name, this.mapper.<JsonNode>valueToTree(app));
+		}
+		this.dirty.clear();
+		this.removed = false;
+		
+		this.current = new Snapshot(this.current.version + 1, new HashMap<String, JsonNode>(this.rendered));
+		return true;
+	}
+}
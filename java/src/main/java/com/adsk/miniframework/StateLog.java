@@ -0,0 +1,735 @@
+package com.adsk.miniframework;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.zip.CRC32;
+
+import org.apache.mesos.Protos.*;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import com.adsk.miniframework.logging.Logger;
+
+//
+// - Append-only write-ahead log of app registrations and task transitions, so a restarted
+// - scheduler can rebuild its task mappings and fail over with the same framework id
+// - The log is a series of preallocated, memory-mapped segment files (wal-<seq>.log). A record is
+// - [length][crc32][type][fields]; a zero length ends a segment. Appends only copy into the mapping,
+// - so a process crash loses nothing; flush() forces the pages to disk before updates are acknowledged.
+// - Replay stops at the first torn or corrupt record and the log carries on from there.
+// - Snapshots (snapshot-<seq>.bin) hold the same records for everything before segment <seq>, so
+// - once one is written the older segments go and recovery is the snapshot plus the tail after it.
+// - Scheduler loop only, except writeSnapshot() which runs on its own thread.
+//
+public class StateLog implements Closeable
+{
+	private static final Logger logger = Logger.get(StateLog.class);
+	
+	public static final int DEFAULT_SEGMENT_BYTES = 64 << 20;
+	
+	private static final String PREFIX = "wal-";
+	private static final String SUFFIX = ".log";
+	private static final String SNAPSHOT_PREFIX = "snapshot-";
+	private static final String SNAPSHOT_SUFFIX = ".bin";
+	private static final int HEADER_BYTES = 8;
+	
+	private static final byte FRAMEWORK_ID = 1;
+	private static final byte APP_REGISTERED = 2;
+	private static final byte APP_TERMINATED = 3;
+	private static final byte TASK_LAUNCHED = 4;
+	private static final byte TASK_RUNNING = 5;
+	private static final byte TASK_STOPPED = 6;
+	
+	private static final ObjectMapper mapper = new ObjectMapper();
+	
+	//
+	// - What replay hands back, in log order; a launched task's slave is null if it wasn't known
+	//
+	public interface Visitor
+	{
+		void frameworkId(String frameworkId);
+		void appRegistered(Application app);
+		void appTerminated(String app);
+		void taskLaunched(String app, String executor, TaskID task, SlaveID slave);
+		void taskRunning(String app, String executor, TaskID task);
+		void taskStopped(String app, String executor, TaskID task, TaskTable.State state);
+	}
+	
+	//
+	// - Decodes records without applying them, to check a snapshot before any of it is replayed
+	//
+	private static final Visitor IGNORE = new Visitor()
+	{
+		public void frameworkId(String frameworkId) {}
+		public void appRegistered(Application app) {}
+		public void appTerminated(String app) {}
+		public void taskLaunched(String app, String executor, TaskID task, SlaveID slave) {}
+		public void taskRunning(String app, String executor, TaskID task) {}
+		public void taskStopped(String app, String executor, TaskID task, TaskTable.State state) {}
+	};
+	
+	private final File dir;
+	private final int segmentBytes;
+	
+	//
+	// - Segment being appended to; null until replay() has found the end of the log
+	//
+	private long segment;
+	private RandomAccessFile file;
+	private MappedByteBuffer buffer;
+	private boolean dirty;
+	
+	//
+	// - Records seen by the last scan, and appended to the log since the last snapshot
+	//
+	private long replayed;
+	private long appended;
+	
+	private final ByteArrayOutputStream bytes;
+	private final DataOutputStream out;
+	private final CRC32 crc;
+	
+	public StateLog(File dir) throws IOException
+	{
+		this(dir, DEFAULT_SEGMENT_BYTES);
+	}
+	
+	public StateLog(File dir, int segmentBytes) throws IOException
+	{
+		if (!dir.isDirectory() && !dir.mkdirs())
+		{
+			throw new IOException("Cannot create state directory " + dir);
+		}
+		this.dir = dir;
+		this.segmentBytes = segmentBytes;
+		this.bytes = new ByteArrayOutputStream(256);
+		this.out = new DataOutputStream(this.bytes);
+		this.crc = new CRC32();
+	}
+	
+	//
+	// - Feed every intact record to the visitor and get ready to append after the last one
+	// - Returns the number of records replayed
+	//
+	public long replay(Visitor visitor) throws IOException
+	{
+		long records = 0;
+		long first = this.loadSnapshot(visitor);
+		if (first > 0)
+		{
+			records += this.replayed;
+			this.compact(first);
+		}
+		
+		List<Long> segments = this.files(PREFIX, SUFFIX);
+		if (!segments.isEmpty() && segments.get(0) > Math.max(first, 1))
+		{
+			logger.warn("State log starts at segment {} without a snapshot covering what came before", segments.get(0));
+		}
+		
+		long tail = records;
+		for (int i = 0; i < segments.size(); i++)
+		{
+			long seq = segments.get(i);
+			RandomAccessFile file = new RandomAccessFile(this.segmentFile(seq), "rw");
+			MappedByteBuffer buffer = file.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, file.length());
+			
+			int end = this.scan(buffer, visitor);
+			records += this.replayed;
+			
+			boolean last = i == segments.size() - 1;
+			if (last || end < 0)
+			{
+				//
+				// - Append here; anything after a bad record is unreadable, so drop it
+				//
+				if (end < 0)
+				{
+					end = -end - 1;
+					logger.warn("State log {} is damaged at {}; dropping the rest of the log", this.segmentFile(seq), end);
+					for (int k = end; k < buffer.limit(); k++) buffer.put(k, (byte) 0);
+					buffer.force();
+					for (int j = i + 1; j < segments.size(); j++) this.segmentFile(segments.get(j)).delete();
+				}
+				this.segment = seq;
+				this.file = file;
+				this.buffer = buffer;
+				this.buffer.position(end);
+				this.appended = records - tail;
+				return records;
+			}
+			file.close();
+		}
+		
+		this.open(Math.max(first, 1));
+		return records;
+	}
+	
+	//
+	// - Replays the newest intact snapshot; returns the first segment it doesn't cover, 0 if none
+	//
+	private long loadSnapshot(Visitor visitor) throws IOException
+	{
+		List<Long> snapshots = this.files(SNAPSHOT_PREFIX, SNAPSHOT_SUFFIX);
+		for (int i = snapshots.size() - 1; i >= 0; i--)
+		{
+			long seq = snapshots.get(i);
+			try (RandomAccessFile file = new RandomAccessFile(this.snapshotFile(seq), "r"))
+			{
+				MappedByteBuffer buffer = file.getChannel().map(FileChannel.MapMode.READ_ONLY, 0, file.length());
+				
+				//
+				// - Check it all before applying any of it
+				//
+				if (this.scan(buffer, null) == buffer.limit() && this.scan(buffer, visitor) == buffer.limit())
+				{
+					return seq;
+				}
+			}
+			logger.warn("State snapshot {} is damaged; trying an older one", this.snapshotFile(seq));
+		}
+		return 0;
+	}
+	
+	//
+	// - Records appended since the last snapshot (or since recovery)
+	//
+	public long getAppended()
+	{
+		return this.appended;
+	}
+	
+	//
+	// - Start a fresh segment and capture what a snapshot of the state up to here needs
+	// - The caller adds the state on the scheduler loop, then hands it to writeSnapshot()
+	//
+	public Checkpoint checkpoint() throws IOException
+	{
+		if (this.buffer == null)
+		{
+			throw new IllegalStateException("State log must be replayed before a snapshot");
+		}
+		this.roll();
+		this.appended = 0;
+		return new Checkpoint(this.segment);
+	}
+	
+	//
+	// - Everything in a snapshot, captured on the scheduler loop: the framework id and each
+	// - app's records, already encoded (see encodeApp()), so capturing only hands over references
+	//
+	public static final class Checkpoint
+	{
+		private final long segment;
+		private String frameworkId;
+		private final List<List<byte[]>> apps;
+		
+		private Checkpoint(long segment)
+		{
+			this.segment = segment;
+			this.apps = new ArrayList<List<byte[]>>();
+		}
+		
+		public void frameworkId(String frameworkId)
+		{
+			this.frameworkId = frameworkId;
+		}
+		
+		public void app(List<byte[]> records)
+		{
+			this.apps.add(records);
+		}
+		
+		public int getNumApps()
+		{
+			return this.apps.size();
+		}
+	}
+	
+	//
+	// - An app's snapshot records: its registration, its termination and its live tasks, with
+	// - the slave each runs on (null where that isn't known, and left out of the record)
+	//
+	public static List<byte[]> encodeApp(Application app, Function<TaskID, SlaveID> slaves) throws IOException
+	{
+		List<byte[]> records = new ArrayList<byte[]>();
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream(256);
+		DataOutputStream out = new DataOutputStream(bytes);
+		
+		out.writeByte(APP_REGISTERED);
+		writeApp(out, app);
+		records.add(bytes.toByteArray());
+		if (app.getAppTerminated())
+		{
+			bytes.reset();
+			out.writeByte(APP_TERMINATED);
+			out.writeUTF(app.name);
+			records.add(bytes.toByteArray());
+		}
+		
+		for (Map.Entry<String, ExecutorSpec> executor : app.getExecutors().entrySet())
+		{
+			for (TaskID task : executor.getValue().getLaunchedTasks())
+			{
+				bytes.reset();
+				writeTaskLaunched(out, app.name, executor.getKey(), task, slaves.apply(task));
+				records.add(bytes.toByteArray());
+			}
+			for (TaskID task : executor.getValue().getRunningTasks())
+			{
+				bytes.reset();
+				writeTaskLaunched(out, app.name, executor.getKey(), task, slaves.apply(task));
+				records.add(bytes.toByteArray());
+				bytes.reset();
+				writeTaskRunning(out, app.name, executor.getKey(), task);
+				records.add(bytes.toByteArray());
+			}
+		}
+		return records;
+	}
+	
+	//
+	// - Write the snapshot next to the log, then drop the segments and snapshots it replaces
+	// - Only touches files before the checkpoint's segment, so appends can carry on meanwhile
+	//
+	public void writeSnapshot(Checkpoint checkpoint) throws IOException
+	{
+		File target = this.snapshotFile(checkpoint.segment);
+		File tmp = new File(this.dir, target.getName() + ".tmp");
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream(256);
+		DataOutputStream record = new DataOutputStream(bytes);
+		CRC32 crc = new CRC32();
+		
+		try (FileOutputStream file = new FileOutputStream(tmp))
+		{
+			DataOutputStream sink = new DataOutputStream(new BufferedOutputStream(file, 1 << 16));
+			if (checkpoint.frameworkId != null)
+			{
+				bytes.reset();
+				record.writeByte(FRAMEWORK_ID);
+				record.writeUTF(checkpoint.frameworkId);
+				emit(sink, bytes.toByteArray(), crc);
+			}
+			for (List<byte[]> app : checkpoint.apps)
+			{
+				for (byte[] r : app)
+				{
+					emit(sink, r, crc);
+				}
+			}
+			sink.flush();
+			file.getFD().sync();
+		}
+		Files.move(tmp.toPath(), target.toPath(), StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+		this.compact(checkpoint.segment);
+	}
+	
+	private static void emit(DataOutputStream sink, byte[] record, CRC32 crc) throws IOException
+	{
+		crc.reset();
+		crc.update(record, 0, record.length);
+		sink.writeInt(record.length);
+		sink.writeInt((int) crc.getValue());
+		sink.write(record);
+	}
+	
+	//
+	// - Everything before segment seq is in the snapshot for seq
+	//
+	private void compact(long seq)
+	{
+		for (long old : this.files(PREFIX, SUFFIX))
+		{
+			if (old < seq) this.segmentFile(old).delete();
+		}
+		for (long old : this.files(SNAPSHOT_PREFIX, SNAPSHOT_SUFFIX))
+		{
+			if (old < seq) this.snapshotFile(old).delete();
+		}
+	}
+	
+	public void frameworkId(String frameworkId) throws IOException
+	{
+		this.begin(FRAMEWORK_ID);
+		this.out.writeUTF(frameworkId);
+		this.append();
+	}
+	
+	public void appRegistered(Application app) throws IOException
+	{
+		this.begin(APP_REGISTERED);
+		writeApp(this.out, app);
+		this.append();
+	}
+	
+	public void appTerminated(String app) throws IOException
+	{
+		this.begin(APP_TERMINATED);
+		this.out.writeUTF(app);
+		this.append();
+	}
+	
+	public void taskLaunched(String app, String executor, TaskID task, SlaveID slave) throws IOException
+	{
+		this.begin();
+		writeTaskLaunched(this.out, app, executor, task, slave);
+		this.append();
+	}
+	
+	public void taskRunning(String app, String executor, TaskID task) throws IOException
+	{
+		this.begin();
+		writeTaskRunning(this.out, app, executor, task);
+		this.append();
+	}
+	
+	public void taskStopped(String app, String executor, TaskID task, TaskTable.State state) throws IOException
+	{
+		this.begin(TASK_STOPPED);
+		this.out.writeUTF(app);
+		this.out.writeUTF(executor);
+		this.out.writeUTF(task.getValue());
+		this.out.writeByte(state.ordinal());
+		this.append();
+	}
+	
+	private static void writeTaskLaunched(DataOutput out, String app, String executor, TaskID task, SlaveID slave) throws IOException
+	{
+		out.writeByte(TASK_LAUNCHED);
+		writeTaskFields(out, app, executor, task);
+		out.writeUTF(slave == null ? "" : slave.getValue());
+	}
+	
+	private static void writeTaskRunning(DataOutput out, String app, String executor, TaskID task) throws IOException
+	{
+		out.writeByte(TASK_RUNNING);
+		writeTaskFields(out, app, executor, task);
+	}
+	
+	private static void writeTaskFields(DataOutput out, String app, String executor, TaskID task) throws IOException
+	{
+		out.writeUTF(app);
+		out.writeUTF(executor);
+		out.writeUTF(task.getValue());
+	}
+	
+	//
+	// - Make everything appended so far durable; cheap when nothing was
+	//
+	public void flush()
+	{
+		if (this.dirty)
+		{
+			this.buffer.force();
+			this.dirty = false;
+		}
+	}
+	
+	//
+	// - The framework is done for good; the next start shouldn't try to fail over to it
+	//
+	public void delete() throws IOException
+	{
+		this.close();
+		this.compact(Long.MAX_VALUE);
+	}
+	
+	@Override
+	public void close() throws IOException
+	{
+		if (this.file != null)
+		{
+			this.flush();
+			this.file.close();
+			this.file = null;
+			this.buffer = null;
+		}
+	}
+	
+	//
+	// - Apps are written whole: executors, demands, constraints and payloads
+	//
+	static void writeApp(DataOutput out, Application app) throws IOException
+	{
+		out.writeUTF(app.name);
+		out.writeInt(app.getWeight());
+		out.writeInt(app.getExecutors().size());
+		for (ExecutorSpec eSpec : app.getExecutors().values())
+		{
+			writeBytes(out, eSpec.executor.toByteArray());
+			eSpec.getRequired().writeTo(out);
+			out.writeInt(eSpec.getRequiredInstances());
+			out.writeInt(eSpec.getConstraints().size());
+			for (Constraint constraint : eSpec.getConstraints())
+			{
+				out.writeUTF(constraint.toString());
+			}
+			JsonNode verbatim = eSpec.getVerbatim();
+			writeBytes(out, verbatim == null ? new byte[0] : mapper.writeValueAsBytes(verbatim));
+		}
+	}
+	
+	static Application readApp(DataInput in) throws IOException
+	{
+		Application app = new Application(in.readUTF());
+		app.setWeight(in.readInt());
+		for (int n = in.readInt(); n > 0; n--)
+		{
+			ExecutorInfo executor = ExecutorInfo.parseFrom(readBytes(in));
+			ResourceVector required = ResourceVector.readFrom(in);
+			int instances = in.readInt();
+			List<Constraint> constraints = new ArrayList<Constraint>();
+			for (int c = in.readInt(); c > 0; c--)
+			{
+				constraints.add(Constraint.parse(in.readUTF()));
+			}
+			byte[] verbatim = readBytes(in);
+			
+			ExecutorSpec eSpec = new ExecutorSpec(executor, required, instances,
+					verbatim.length == 0 ? null : mapper.readTree(verbatim));
+			for (Constraint constraint : constraints)
+			{
+				eSpec.addConstraint(constraint);
+			}
+			app.putExecutorSpec(eSpec);
+		}
+		return app;
+	}
+	
+	private static void writeBytes(DataOutput out, byte[] data) throws IOException
+	{
+		out.writeInt(data.length);
+		out.write(data);
+	}
+	
+	private static byte[] readBytes(DataInput in) throws IOException
+	{
+		int length = in.readInt();
+		if (length < 0)
+		{
+			throw new IOException("Negative field length " + length);
+		}
+		byte[] data = new byte[length];
+		in.readFully(data);
+		return data;
+	}
+	
+	//
+	// - Replays one segment or snapshot (or only checks it, without a visitor); returns where the
+	// - records end, or -(offset + 1) of a bad record
+	//
+	private int scan(MappedByteBuffer buffer, Visitor visitor) throws IOException
+	{
+		this.replayed = 0;
+		int offset = 0;
+		while (offset + HEADER_BYTES <= buffer.limit())
+		{
+			int length = buffer.getInt(offset);
+			if (length == 0) return offset;
+			if (length < 0 || offset + HEADER_BYTES + length > buffer.limit()) return -offset - 1;
+			
+			byte[] record = new byte[length];
+			buffer.position(offset + HEADER_BYTES);
+			buffer.get(record);
+			this.crc.reset();
+			this.crc.update(record, 0, length);
+			if ((int) this.crc.getValue() != buffer.getInt(offset + 4)) return -offset - 1;
+			
+			//
+			// - A record that passes its crc but doesn't decode ends the log all the same
+			//
+			try
+			{
+				dispatch(new DataInputStream(new ByteArrayInputStream(record)), visitor != null ? visitor : IGNORE);
+			}
+			catch (IOException e)
+			{
+				logger.warn("Unreadable state log record at {}: {}", offset, e);
+				return -offset - 1;
+			}
+			this.replayed++;
+			offset += HEADER_BYTES + length;
+		}
+		return offset;
+	}
+	
+	private static void dispatch(DataInputStream in, Visitor visitor) throws IOException
+	{
+		byte type = in.readByte();
+		switch (type)
+		{
+		case FRAMEWORK_ID:
+			visitor.frameworkId(in.readUTF());
+			break;
+		case APP_REGISTERED:
+			visitor.appRegistered(decodeApp(in));
+			break;
+		case APP_TERMINATED:
+			visitor.appTerminated(in.readUTF());
+			break;
+		case TASK_LAUNCHED:
+			visitor.taskLaunched(in.readUTF(), in.readUTF(), taskId(in.readUTF()), slaveId(in.readUTF()));
+			break;
+		case TASK_RUNNING:
+			visitor.taskRunning(in.readUTF(), in.readUTF(), taskId(in.readUTF()));
+			break;
+		case TASK_STOPPED:
+			visitor.taskStopped(in.readUTF(), in.readUTF(), taskId(in.readUTF()), state(in.readByte()));
+			break;
+		default:
+			throw new IOException("Unknown state log record type " + type);
+		}
+	}
+	
+	//
+	// - Bad constraints and the like come out as runtime exceptions; only what the visitor
+	// - throws should get past scan()
+	//
+	private static Application decodeApp(DataInput in) throws IOException
+	{
+		try
+		{
+			return readApp(in);
+		}
+		catch (RuntimeException e)
+		{
+			throw new IOException("Unreadable app registration: " + e, e);
+		}
+	}
+	
+	private static TaskTable.State state(byte ordinal) throws IOException
+	{
+		TaskTable.State[] states = TaskTable.State.values();
+		if (ordinal < 0 || ordinal >= states.length)
+		{
+			throw new IOException("Unknown task state " + ordinal);
+		}
+		return states[ordinal];
+	}
+	
+	//
+	// - An empty slave id is one that wasn't known when the record was written
+	//
+	private static SlaveID slaveId(String value)
+	{
+		return value.isEmpty() ? null : SlaveID.newBuilder().setValue(value).build();
+	}
+	
+	private static TaskID taskId(String value)
+	{
+		return TaskID.newBuilder().setValue(value).build();
+	}
+	
+	private void begin() throws IOException
+	{
+		if (this.buffer == null)
+		{
+			throw new IllegalStateException("State log must be replayed before appending");
+		}
+		this.bytes.reset();
+	}
+	
+	private void begin(byte type) throws IOException
+	{
+		this.begin();
+		this.out.writeByte(type);
+	}
+	
+	//
+	// - Payload and checksum go in before the length, which is what makes the record visible
+	//
+	private void append() throws IOException
+	{
+		int length = this.bytes.size();
+		if (HEADER_BYTES + length > this.segmentBytes)
+		{
+			throw new IOException("State log record of " + length + " bytes doesn't fit a segment");
+		}
+		if (this.buffer.remaining() < HEADER_BYTES + length)
+		{
+			this.roll();
+		}
+		
+		byte[] record = this.bytes.toByteArray();
+		this.crc.reset();
+		this.crc.update(record, 0, length);
+		
+		int offset = this.buffer.position();
+		this.buffer.position(offset + 4);
+		this.buffer.putInt((int) this.crc.getValue());
+		this.buffer.put(record);
+		this.buffer.putInt(offset, length);
+		this.dirty = true;
+		this.appended++;
+	}
+	
+	private void roll() throws IOException
+	{
+		this.flush();
+		this.file.close();
+		this.open(this.segment + 1);
+	}
+	
+	private void open(long seq) throws IOException
+	{
+		this.segment = seq;
+		this.file = new RandomAccessFile(this.segmentFile(seq), "rw");
+		this.file.setLength(this.segmentBytes);
+		this.buffer = this.file.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, this.segmentBytes);
+	}
+	
+	private File segmentFile(long seq)
+	{
+		return new File(this.dir, String.format("%s%016d%s", PREFIX, seq, SUFFIX));
+	}
+	
+	private File snapshotFile(long seq)
+	{
+		return new File(this.dir, String.format("%s%016d%s", SNAPSHOT_PREFIX, seq, SNAPSHOT_SUFFIX));
+	}
+	
+	//
+	// - Sequence numbers of the segments or snapshots on disk, oldest first
+	//
+	private List<Long> files(String prefix, String suffix)
+	{
+		List<Long> segments = new ArrayList<Long>();
+		String[] names = this.dir.list();
+		if (names == null) return segments;
+		
+		for (String name : names)
+		{
+			if (!name.startsWith(prefix) || !name.endsWith(suffix)) continue;
+			try
+			{
+				segments.add(Long.parseLong(name.substring(prefix.length(), name.length() - suffix.length())));
+			}
+			catch (NumberFormatException e)
+			{
+				// Not one of ours
+			}
+		}
+		Collections.sort(segments);
+		return segments;
+	}
+}
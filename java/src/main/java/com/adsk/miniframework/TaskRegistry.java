@@ -0,0 +1,221 @@
+package com.adsk.miniframework;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+
+import org.apache.mesos.Protos.TaskID;
+
+//
+// - Hands out task ids and maps them back to their app
+// - Ids are "<epoch>-<app>-<n>" in base 36: the framework's start time in seconds, the app's
+// - index and a per-run counter, e.g. "ra2k1x-3-1z". Epoch and counter are packed into one long
+// - (epoch << 24 | n) which is the registry key, so lookups parse the id and probe an open
+// - addressed long -> int table instead of hashing strings, and nothing goes through SecureRandom.
+// - Scheduler loop only.
+//
+public class TaskRegistry
+{
+	private static final int COUNTER_BITS = 24;
+	private static final int RADIX = 36;
+	
+	//
+	// - Next key to hand out; a run that launches more than 2^24 tasks borrows from the
+	// - following epoch seconds, which is harmless unless the framework restarts right away
+	//
+	private long next;
+	
+	//
+	// - App index <-> app; an app re-registered under the same name keeps its index
+	//
+	private final ArrayList<Application> apps;
+	private final HashMap<String, Integer> appIndexes;
+	
+	//
+	// - Open addressed table of task key -> app index, 0 marks an empty slot
+	//
+	private long[] keys;
+	private int[] values;
+	private int size;
+	
+	public TaskRegistry()
+	{
+		this(System.currentTimeMillis() / 1000);
+	}
+	
+	public TaskRegistry(long epochSeconds)
+	{
+		this.next = Math.max(1, epochSeconds) << COUNTER_BITS;
+		this.apps = new ArrayList<Application>();
+		this.appIndexes = new HashMap<String, Integer>();
+		this.keys = new long[1024];
+		this.values = new int[1024];
+	}
+	
+	public int addApplication(Application app)
+	{
+		Integer index = this.appIndexes.get(app.name);
+		if (index == null)
+		{
+			index = this.apps.size();
+			this.apps.add(app);
+			this.appIndexes.put(app.name, index);
+		}
+		else
+		{
+			this.apps.set(index, app);
+		}
+		return index;
+	}
+	
+	//
+	// - New id for a task of the app, registered straight away
+	//
+	public TaskID newTaskId(Application app)
+	{
+		int index = this.addApplication(app);
+		long key = this.next++;
+		this.put(key, index);
+		return TaskID.newBuilder().setValue(format(key, index)).build();
+	}
+	
+	//
+	// - Register a task id handed out earlier (e.g. by a previous run); false if it isn't one of ours
+	//
+	public boolean register(TaskID task, Application app)
+	{
+		long key = parse(task.getValue());
+		if (key <= 0) return false;
+		
+		this.put(key, this.addApplication(app));
+		if (key >= this.next) this.next = key + 1;
+		return true;
+	}
+	
+	public Application getApplication(TaskID task)
+	{
+		long key = parse(task.getValue());
+		if (key <= 0) return null;
+		
+		int slot = this.find(key);
+		return slot < 0 ? null : this.apps.get(this.values[slot]);
+	}
+	
+	public boolean contains(TaskID task)
+	{
+		return this.getApplication(task) != null;
+	}
+	
+	public void remove(TaskID task)
+	{
+		long key = parse(task.getValue());
+		if (key <= 0) return;
+		
+		int slot = this.find(key);
+		if (slot < 0) return;
+		
+		//
+		// - Backward shift deletion, so probes never need tombstones
+		//
+		int mask = this.keys.length - 1;
+		int hole = slot;
+		int i = slot;
+		while (true)
+		{
+			i = (i + 1) & mask;
+			if (this.keys[i] == 0) break;
+			
+			int home = hash(this.keys[i]) & mask;
+			boolean movable = hole <= i ? (home <= hole || home > i) : (home <= hole && home > i);
+			if (movable)
+			{
+				this.keys[hole] = this.keys[i];
+				this.values[hole] = this.values[i];
+				hole = i;
+			}
+		}
+		this.keys[hole] = 0;
+		this.size--;
+	}
+	
+	public int size()
+	{
+		return this.size;
+	}
+	
+	private void put(long key, int value)
+	{
+		if ((this.size + 1) * 2 > this.keys.length)
+		{
+			this.grow();
+		}
+		
+		int mask = this.keys.length - 1;
+		int i = hash(key) & mask;
+		while (this.keys[i] != 0 && this.keys[i] != key)
+		{
+			i = (i + 1) & mask;
+		}
+		if (this.keys[i] == 0) this.size++;
+		this.keys[i] = key;
+		this.values[i] = value;
+	}
+	
+	private int find(long key)
+	{
+		int mask = this.keys.length - 1;
+		int i = hash(key) & mask;
+		while (this.keys[i] != 0)
+		{
+			if (this.keys[i] == key) return i;
+			i = (i + 1) & mask;
+		}
+		return -1;
+	}
+	
+	private void grow()
+	{
+		long[] oldKeys = this.keys;
+		int[] oldValues = this.values;
+		this.keys = new long[oldKeys.length * 2];
+		this.values = new int[oldValues.length * 2];
+		this.size = 0;
+		for (int i = 0; i < oldKeys.length; i++)
+		{
+			if (oldKeys[i] != 0) this.put(oldKeys[i], oldValues[i]);
+		}
+	}
+	
+	private static int hash(long key)
+	{
+		long h = key * 0x9E3779B97F4A7C15L;
+		return (int) (h ^ (h >>> 32));
+	}
+	
+	static String format(long key, int appIndex)
+	{
+		return Long.toString(key >>> COUNTER_BITS, RADIX) + "-" + Integer.toString(appIndex, RADIX)
+				+ "-" + Long.toString(key & ((1L << COUNTER_BITS) - 1), RADIX);
+	}
+	
+	//
+	// - Key packed in an id, or -1 if it isn't in our format
+	//
+	static long parse(String id)
+	{
+		int first = id.indexOf('-');
+		int last = id.lastIndexOf('-');
+		if (first <= 0 || last == first || last == id.length() - 1) return -1;
+		
+		try
+		{
+			long epoch = Long.parseLong(id.substring(0, first), RADIX);
+			long n = Long.parseLong(id.substring(last + 1), RADIX);
+			if (epoch <= 0 || n < 0 || n >= (1L << COUNTER_BITS)) return -1;
+			return (epoch << COUNTER_BITS) | n;
+		}
+		catch (NumberFormatException e)
+		{
+			return -1;
+		}
+	}
+}
@@ -0,0 +1,165 @@
+package com.adsk.miniframework;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+
+import org.apache.mesos.Protos.TaskID;
+
+//
+// - Tasks of one executor spec and the state each is in, with a counter per state
+// - Live tasks (staged or running) are found by id in a hash map and sit on an intrusive list
+// - per state, so a transition is a lookup plus an unlink/link, never a scan. Tasks reaching a
+// - terminal state are only counted; their entries are dropped.
+//
+public class TaskTable
+{
+	public enum State
+	{
+		STAGED,
+		RUNNING,
+		FINISHED,
+		FAILED,
+		LOST;
+		
+		public boolean isTerminal()
+		{
+			return this != STAGED && this != RUNNING;
+		}
+	}
+	
+	private static final class Entry
+	{
+		final TaskID task;
+		State state;
+		long since;
+		Entry prev;
+		Entry next;
+		
+		Entry(TaskID task)
+		{
+			this.task = task;
+		}
+	}
+	
+	private final HashMap<String, Entry> live;
+	
+	//
+	// - Sentinels of the circular lists of staged and running tasks
+	//
+	private final Entry staged;
+	private final Entry running;
+	private final int[] counts;
+	
+	public TaskTable()
+	{
+		this.live = new HashMap<String, Entry>();
+		this.staged = sentinel();
+		this.running = sentinel();
+		this.counts = new int[State.values().length];
+	}
+	
+	//
+	// - A newly launched task; false if we already know it
+	//
+	public boolean stage(TaskID task)
+	{
+		if (this.live.containsKey(task.getValue())) return false;
+		
+		Entry entry = new Entry(task);
+		this.live.put(task.getValue(), entry);
+		this.link(entry, State.STAGED);
+		return true;
+	}
+	
+	//
+	// - Move a task on; returns the state it was in, or null when the task isn't live or the move
+	// - isn't allowed (anything but staged -> running, and staged or running -> terminal)
+	//
+	public State transition(TaskID task, State to)
+	{
+		Entry entry = this.live.get(task.getValue());
+		if (entry == null || to == State.STAGED || entry.state == to) return null;
+		
+		State from = entry.state;
+		this.unlink(entry);
+		if (to.isTerminal())
+		{
+			this.live.remove(task.getValue());
+			this.counts[to.ordinal()]++;
+		}
+		else
+		{
+			this.link(entry, to);
+		}
+		return from;
+	}
+	
+	//
+	// - Current state of a live task, null otherwise
+	//
+	public State getState(TaskID task)
+	{
+		Entry entry = this.live.get(task.getValue());
+		return entry == null ? null : entry.state;
+	}
+	
+	//
+	// - When a live task entered its current state (System.nanoTime()), -1 if it isn't live
+	//
+	public long getSince(TaskID task)
+	{
+		Entry entry = this.live.get(task.getValue());
+		return entry == null ? -1 : entry.since;
+	}
+	
+	public int count(State state)
+	{
+		return this.counts[state.ordinal()];
+	}
+	
+	//
+	// - Live tasks in the state, oldest first; terminal states have none
+	//
+	public List<TaskID> tasks(State state)
+	{
+		List<TaskID> tasks = new ArrayList<TaskID>(this.count(state));
+		if (state.isTerminal()) return tasks;
+		
+		Entry head = state == State.STAGED ? this.staged : this.running;
+		for (Entry entry = head.next; entry != head; entry = entry.next)
+		{
+			tasks.add(entry.task);
+		}
+		return tasks;
+	}
+	
+	private void link(Entry entry, State state)
+	{
+		Entry head = state == State.STAGED ? this.staged : this.running;
+		entry.state = state;
+		entry.since = System.nanoTime();
+		entry.prev = head.prev;
+		entry.next = head;
+		head.prev.next = entry;
+		head.prev = entry;
+		this.counts[state.ordinal()]++;
+	}
+	
+	private void unlink(Entry entry)
+	{
+		entry.prev.next = entry.next;
+		entry.next.prev = entry.prev;
+		entry.prev = null;
+		entry.next = null;
+		this.counts[entry.state.ordinal()]--;
+	}
+	
+	private static Entry sentinel()
+	{
+		Entry head = new Entry(null);
+		head.prev = head;
+		head.next = head;
+		return head;
+	}
+}
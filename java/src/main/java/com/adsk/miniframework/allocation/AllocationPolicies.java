@@ -0,0 +1,33 @@
+package com.adsk.miniframework.allocation;
+
+//
+// - Policies by configuration name
+//
+public class AllocationPolicies
+{
+	private AllocationPolicies()
+	{
+	}
+	
+	public static AllocationPolicy forName(String name)
+	{
+		switch (name.toLowerCase())
+		{
+			case "naive":
+				return new NaivePolicy();
+			case "batch":
+			case "firstfit":
+				return new FirstFitPolicy();
+			case "drf":
+				return new DrfPolicy();
+			case "binpack":
+				return new BinPackPolicy();
+			case "spread":
+				return new SpreadPolicy();
+			case "optimal":
+				return new OptimalPackingPolicy();
+			default:
+				throw new IllegalArgumentException("Unknown allocation policy: " + name);
+		}
+	}
+}
@@ -0,0 +1,30 @@
+package com.adsk.miniframework.allocation;
+
+import com.adsk.miniframework.Application;
+
+import java.util.List;
+
+//
+// - Strategy for turning a batch of offers into launches
+// - Policies only read the view and return placements; the allocator validates and applies them
+// - (task building, book keeping, accepting offers), so a policy never touches the driver
+//
+public interface AllocationPolicy
+{
+	List<Placement> allocate(AllocationView view);
+	
+	//
+	// - Lifecycle hooks for policies that keep their own state (e.g. the DRF queue)
+	//
+	default void applicationAdded(Application app)
+	{
+	}
+	
+	default void applicationRemoved(Application app)
+	{
+	}
+	
+	default void slaveRemoved(String slaveId)
+	{
+	}
+}
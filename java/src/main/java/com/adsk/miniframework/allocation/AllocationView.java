@@ -0,0 +1,72 @@
+package com.adsk.miniframework.allocation;
+
+import com.adsk.miniframework.AgentIndex;
+import com.adsk.miniframework.Application;
+import com.adsk.miniframework.ExecutorSpec;
+import com.adsk.miniframework.ResourceVector;
+
+import java.util.Collection;
+
+import org.apache.mesos.Protos.Offer;
+
+//
+// - Read-only picture of one allocation round: the outstanding offers, combined per slave
+// - (so "offer" below means all of one slave's offers), and the demand of every registered app
+//
+public interface AllocationView
+{
+	int getNumOffers();
+	
+	//
+	// - One of the slave's offers, for its slave id, hostname and attributes
+	//
+	Offer getOffer(int offer);
+	
+	//
+	// - Resources in the offer; shared, so policies copy() before subtracting
+	//
+	ResourceVector getAvailable(int offer);
+	
+	Collection<Application> getApplications();
+	
+	//
+	// - Apps with pending demand in stride order, most due first; advanced by the allocator
+	// - as instances launch
+	//
+	StrideScheduler getOrder();
+	
+	boolean hasPending(Application app);
+	
+	//
+	// - Instances of the executor that may be launched now; 0 when the app is terminated,
+	// - at quota, or the executor is at the instance limit
+	//
+	int getPending(Application app, ExecutorSpec executor);
+	
+	//
+	// - Executors with pending instances, ordered by cpu then mem; fully launched ones never
+	// - show up, so policies can skip the scan over every app. Valid for the round only.
+	//
+	Iterable<PendingIndex.Entry> getPendingExecutors();
+	
+	//
+	// - Range query: pending executors whose cpu and mem fit in the given resources
+	//
+	Iterable<PendingIndex.Entry> getPendingFitting(ResourceVector available);
+	
+	//
+	// - The offer's value for an attribute (Constraint.HOSTNAME for its hostname), null if it has none
+	//
+	String getAttribute(int offer, String attribute);
+	
+	//
+	// - Whether the executor's constraints allow another instance on the offer, given the
+	// - launched instances plus the extra ones the policy has placed so far
+	//
+	boolean allows(ExecutorSpec executor, int offer, AgentIndex.Counts extra);
+	
+	//
+	// - Whether the offer's agent recently ran the executor's image, so launching there skips a pull
+	//
+	boolean hasImage(int offer, ExecutorSpec executor);
+}
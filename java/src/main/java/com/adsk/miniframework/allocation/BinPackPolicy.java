@@ -0,0 +1,51 @@
+package com.adsk.miniframework.allocation;
+
+import com.adsk.miniframework.ResourceVector;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+//
+// - Best-fit decreasing: biggest executors first, each onto the offer it leaves the least room in,
+// - so whole agents stay free for large executors
+//
+public class BinPackPolicy implements AllocationPolicy
+{
+	@Override
+	public List<Placement> allocate(AllocationView view)
+	{
+		List<Placement> placements = new ArrayList<Placement>();
+		RoundDemand demand = new RoundDemand(view);
+		ResourceVector[] remaining = Offers.copyAvailable(view);
+		final double[] maxima = Offers.maxima(remaining);
+		
+		//
+		// - Stride order first, so of equal sized executors the app most due goes first
+		//
+		List<Placement> candidates = new ArrayList<Placement>();
+		for (PendingIndex.Entry pending : view.getPendingExecutors())
+		{
+			candidates.add(new Placement(pending.app, pending.executor, -1));
+		}
+		final StrideScheduler order = view.getOrder();
+		Collections.sort(candidates, (a, b) -> Integer.compare(order.rank(a.app), order.rank(b.app)));
+		Collections.sort(candidates, (a, b) -> Double.compare(
+				Offers.size(b.executor.getRequired(), maxima[0], maxima[1]),
+				Offers.size(a.executor.getRequired(), maxima[0], maxima[1])));
+		
+		for (Placement candidate : candidates)
+		{
+			while (demand.remaining(candidate.app, candidate.executor) > 0)
+			{
+				int target = Offers.bestFit(remaining, candidate.executor, demand, maxima, true);
+				if (target < 0) break;
+				
+				remaining[target].subtract(candidate.executor.getRequired());
+				demand.place(candidate.executor, target);
+				placements.add(new Placement(candidate.app, candidate.executor, target));
+			}
+		}
+		return placements;
+	}
+}
@@ -0,0 +1,114 @@
+package com.adsk.miniframework.allocation;
+
+import com.adsk.miniframework.Application;
+import com.adsk.miniframework.ExecutorSpec;
+import com.adsk.miniframework.ResourceVector;
+
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+
+//
+// - Dominant Resource Fairness: repeatedly give one instance to the app with the lowest
+// - dominant share, first-fit across the round's offers. Apps that can't use any offer are
+// - set aside until the round is over. O(log apps) per placement via the DRF queue.
+//
+public class DrfPolicy implements AllocationPolicy
+{
+	private final DrfQueue queue;
+	
+	public DrfPolicy()
+	{
+		this.queue = new DrfQueue();
+	}
+	
+	@Override
+	public void applicationAdded(Application app)
+	{
+		this.queue.add(app);
+	}
+	
+	@Override
+	public void applicationRemoved(Application app)
+	{
+		this.queue.remove(app);
+	}
+	
+	@Override
+	public void slaveRemoved(String slaveId)
+	{
+		this.queue.forgetSlave(slaveId);
+	}
+	
+	public DrfQueue getQueue()
+	{
+		return this.queue;
+	}
+	
+	@Override
+	public List<Placement> allocate(AllocationView view)
+	{
+		List<Placement> placements = new ArrayList<Placement>();
+		RoundDemand demand = new RoundDemand(view);
+		ResourceVector[] remaining = Offers.copyAvailable(view);
+		
+		//
+		// - Shares are relative to everything the cluster has offered us so far
+		//
+		for (int i = 0; i < remaining.length; i++)
+		{
+			this.queue.observeSlave(view.getOffer(i).getSlaveId().getValue(), remaining[i].getCpu(), remaining[i].getMem());
+		}
+		
+		//
+		// - cpu/mem promised to each app this round, not yet booked on the app itself
+		//
+		IdentityHashMap<Application, double[]> promised = new IdentityHashMap<Application, double[]>();
+		List<Application> setAside = new ArrayList<Application>();
+		Application app;
+		
+		while ((app = this.queue.poll()) != null)
+		{
+			ExecutorSpec chosen = null;
+			int target = -1;
+			for (ExecutorSpec eSpec : app.getExecutors().values())
+			{
+				if (demand.remaining(app, eSpec) <= 0) continue;
+				target = Offers.firstFit(remaining, eSpec, demand);
+				if (target >= 0)
+				{
+					chosen = eSpec;
+					break;
+				}
+			}
+			
+			if (chosen == null)
+			{
+				setAside.add(app);
+				continue;
+			}
+			
+			remaining[target].subtract(chosen.getRequired());
+			demand.place(chosen, target);
+			placements.add(new Placement(app, chosen, target));
+			
+			double[] p = promised.get(app);
+			if (p == null)
+			{
+				p = new double[2];
+				promised.put(app, p);
+			}
+			p[0] += chosen.getRequiredCpu();
+			p[1] += chosen.getRequiredMem();
+			this.queue.push(app, p[0], p[1]);
+		}
+		
+		for (Application skipped : setAside)
+		{
+			double[] p = promised.get(skipped);
+			if (p == null) this.queue.push(skipped);
+			else this.queue.push(skipped, p[0], p[1]);
+		}
+		return placements;
+	}
+}
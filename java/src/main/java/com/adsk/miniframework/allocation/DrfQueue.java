@@ -0,0 +1,268 @@
+package com.adsk.miniframework.allocation;
+
+import com.adsk.miniframework.Application;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+
+//
+// - Priority queue of applications ordered by dominant share (Dominant Resource Fairness)
+// - Indexed binary min-heap so that re-ranking an app after its usage changes is O(log apps)
+// - Cluster totals are taken from the largest offer seen from each slave
+//
+public class DrfQueue implements Application.UsageListener
+{
+	//
+	// - Heap entry; index is -1 while the app is polled out of the heap
+	//
+	private static class Entry
+	{
+		final Application app;
+		final long seq;
+		double share;
+		int index;
+		
+		Entry(Application app, long seq)
+		{
+			this.app = app;
+			this.seq = seq;
+			this.index = -1;
+		}
+	}
+	
+	private final IdentityHashMap<Application, Entry> entries;
+	private final List<Entry> heap;
+	private long nextSeq;
+	
+	//
+	// - Largest cpu/mem offered per slave, and their sums
+	//
+	private final HashMap<String, double[]> slaveTotals;
+	private double totalCpu;
+	private double totalMem;
+	
+	public DrfQueue()
+	{
+		this.entries = new IdentityHashMap<Application, Entry>();
+		this.heap = new ArrayList<Entry>();
+		this.slaveTotals = new HashMap<String, double[]>();
+		this.nextSeq = 0;
+		this.totalCpu = 0;
+		this.totalMem = 0;
+	}
+	
+	//
+	// - Start tracking an app; it is re-ranked whenever its usage changes
+	//
+	public void add(Application app)
+	{
+		if (this.entries.containsKey(app)) return;
+		Entry entry = new Entry(app, this.nextSeq++);
+		entry.share = app.getDominantShare(this.totalCpu, this.totalMem);
+		this.entries.put(app, entry);
+		app.addUsageListener(this);
+		this.push(entry);
+	}
+	
+	public void remove(Application app)
+	{
+		Entry entry = this.entries.remove(app);
+		if (entry == null) return;
+		app.removeUsageListener(this);
+		if (entry.index >= 0) this.removeAt(entry.index);
+	}
+	
+	//
+	// - Takes the app with the lowest dominant share out of the heap; it stays tracked
+	// - and must be handed back with push() once the caller is done with it
+	//
+	public Application poll()
+	{
+		if (this.heap.isEmpty()) return null;
+		Entry entry = this.heap.get(0);
+		this.removeAt(0);
+		return entry.app;
+	}
+	
+	public void push(Application app)
+	{
+		Entry entry = this.entries.get(app);
+		if (entry == null || entry.index >= 0) return;
+		this.push(entry);
+	}
+	
+	//
+	// - Push back with resources the app has been promised but not yet booked; the share is
+	// - corrected from the app's own counters as soon as the launch is applied
+	//
+	public void push(Application app, double pendingCpu, double pendingMem)
+	{
+		Entry entry = this.entries.get(app);
+		if (entry == null || entry.index >= 0) return;
+		this.push(entry);
+		double cpuShare = this.totalCpu > 0 ? (app.getAllocCpu() + pendingCpu) / this.totalCpu : 0;
+		double memShare = this.totalMem > 0 ? (app.getAllocMem() + pendingMem) / this.totalMem : 0;
+		entry.share = Math.max(cpuShare, memShare);
+		this.siftDown(entry.index);
+	}
+	
+	public boolean contains(Application app)
+	{
+		return this.entries.containsKey(app);
+	}
+	
+	public int size()
+	{
+		return this.heap.size();
+	}
+	
+	public double getDominantShare(Application app)
+	{
+		Entry entry = this.entries.get(app);
+		return entry == null ? 0 : entry.share;
+	}
+	
+	public double getTotalCpu()
+	{
+		return this.totalCpu;
+	}
+	
+	public double getTotalMem()
+	{
+		return this.totalMem;
+	}
+	
+	//
+	// - Record the resources a slave has offered; totals only grow when a bigger offer is seen,
+	// - and the whole heap is re-ranked (O(apps)) only in that case
+	//
+	public void observeSlave(String slaveId, double cpu, double mem)
+	{
+		double[] seen = this.slaveTotals.get(slaveId);
+		if (seen == null)
+		{
+			seen = new double[2];
+			this.slaveTotals.put(slaveId, seen);
+		}
+		
+		if (cpu <= seen[0] && mem <= seen[1]) return;
+		
+		if (cpu > seen[0])
+		{
+			this.totalCpu += cpu - seen[0];
+			seen[0] = cpu;
+		}
+		if (mem > seen[1])
+		{
+			this.totalMem += mem - seen[1];
+			seen[1] = mem;
+		}
+		this.rerank();
+	}
+	
+	public void forgetSlave(String slaveId)
+	{
+		double[] seen = this.slaveTotals.remove(slaveId);
+		if (seen == null) return;
+		this.totalCpu -= seen[0];
+		this.totalMem -= seen[1];
+		this.rerank();
+	}
+	
+	@Override
+	public void usageChanged(Application app)
+	{
+		Entry entry = this.entries.get(app);
+		if (entry == null) return;
+		
+		double share = app.getDominantShare(this.totalCpu, this.totalMem);
+		double old = entry.share;
+		entry.share = share;
+		
+		//
+		// - Polled apps are re-ranked when they are pushed back
+		//
+		if (entry.index < 0) return;
+		if (share < old) this.siftUp(entry.index);
+		else if (share > old) this.siftDown(entry.index);
+	}
+	
+	private void rerank()
+	{
+		for (Entry entry : this.entries.values())
+		{
+			entry.share = entry.app.getDominantShare(this.totalCpu, this.totalMem);
+		}
+		for (int i = (this.heap.size() / 2) - 1; i >= 0; i--)
+		{
+			this.siftDown(i);
+		}
+	}
+	
+	//
+	// - Heap plumbing
+	//
+	private void push(Entry entry)
+	{
+		entry.share = entry.app.getDominantShare(this.totalCpu, this.totalMem);
+		entry.index = this.heap.size();
+		this.heap.add(entry);
+		this.siftUp(entry.index);
+	}
+	
+	private void removeAt(int i)
+	{
+		Entry removed = this.heap.get(i);
+		Entry last = this.heap.remove(this.heap.size() - 1);
+		removed.index = -1;
+		if (last == removed) return;
+		
+		this.set(i, last);
+		this.siftDown(i);
+		this.siftUp(last.index);
+	}
+	
+	private boolean less(Entry a, Entry b)
+	{
+		if (a.share != b.share) return a.share < b.share;
+		return a.seq < b.seq;
+	}
+	
+	private void set(int i, Entry entry)
+	{
+		this.heap.set(i, entry);
+		entry.index = i;
+	}
+	
+	private void siftUp(int i)
+	{
+		Entry entry = this.heap.get(i);
+		while (i > 0)
+		{
+			int parent = (i - 1) / 2;
+			Entry p = this.heap.get(parent);
+			if (!this.less(entry, p)) break;
+			this.set(i, p);
+			i = parent;
+		}
+		this.set(i, entry);
+	}
+	
+	private void siftDown(int i)
+	{
+		Entry entry = this.heap.get(i);
+		int n = this.heap.size();
+		while (true)
+		{
+			int child = 2 * i + 1;
+			if (child >= n) break;
+			if (child + 1 < n && this.less(this.heap.get(child + 1), this.heap.get(child))) child++;
+			if (!this.less(this.heap.get(child), entry)) break;
+			this.set(i, this.heap.get(child));
+			i = child;
+		}
+		this.set(i, entry);
+	}
+}
@@ -0,0 +1,42 @@
+package com.adsk.miniframework.allocation;
+
+import com.adsk.miniframework.Application;
+import com.adsk.miniframework.ExecutorSpec;
+import com.adsk.miniframework.ResourceVector;
+
+import java.util.ArrayList;
+import java.util.List;
+
+//
+// - Batch allocation: apps in stride order (only those with pending demand are in it), every
+// - pending instance goes on the first offer in the batch it fits into
+//
+public class FirstFitPolicy implements AllocationPolicy
+{
+	@Override
+	public List<Placement> allocate(AllocationView view)
+	{
+		List<Placement> placements = new ArrayList<Placement>();
+		RoundDemand demand = new RoundDemand(view);
+		ResourceVector[] remaining = Offers.copyAvailable(view);
+		StrideScheduler order = view.getOrder();
+		
+		for (int i = 0; i < order.size(); i++)
+		{
+			Application app = order.get(i);
+			for (ExecutorSpec eSpec : app.getExecutors().values())
+			{
+				while (demand.remaining(app, eSpec) > 0)
+				{
+					int target = Offers.firstFit(remaining, eSpec, demand);
+					if (target < 0) break;
+					
+					remaining[target].subtract(eSpec.getRequired());
+					demand.place(eSpec, target);
+					placements.add(new Placement(app, eSpec, target));
+				}
+			}
+		}
+		return placements;
+	}
+}
@@ -0,0 +1,142 @@
+package com.adsk.miniframework.allocation;
+
+import com.adsk.miniframework.Application;
+import com.adsk.miniframework.ExecutorSpec;
+import com.adsk.miniframework.ResourceVector;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+//
+// - The original scheme: per offer, go greedy over the apps, at most one instance of each
+// - executor per offer. Apps take turns in stride order (see StrideScheduler), with the
+// - instances they get during the round counted as well, so weights hold within a round too.
+// - Only apps with an executor fitting the offer (from the pending index) are considered.
+//
+public class NaivePolicy implements AllocationPolicy
+{
+	//
+	// - Per-app counters, indexed by stride slot and reused across rounds; an entry only
+	// - counts when its stamp matches the current round or offer, so nothing is cleared
+	//
+	private int[] given;
+	private int[] givenRound;
+	private int[] fitting;
+	private int[] tried;
+	private int[] triedOffer;
+	private int round;
+	private int offerStamp;
+	
+	public NaivePolicy()
+	{
+		this.given = new int[16];
+		this.givenRound = new int[16];
+		this.fitting = new int[16];
+		this.tried = new int[16];
+		this.triedOffer = new int[16];
+	}
+	
+	@Override
+	public List<Placement> allocate(AllocationView view)
+	{
+		List<Placement> placements = new ArrayList<Placement>();
+		RoundDemand demand = new RoundDemand(view);
+		StrideScheduler order = view.getOrder();
+		this.ensureSlots(order.getNumSlots());
+		this.round++;
+		
+		for (int offer = 0; offer < view.getNumOffers(); offer++)
+		{
+			ResourceVector remaining = view.getAvailable(offer).copy();
+			int stamp = ++this.offerStamp;
+			for (PendingIndex.Entry entry : view.getPendingFitting(remaining))
+			{
+				this.fitting[order.getSlot(entry.app)] = stamp;
+			}
+			
+			Application app;
+			while ((app = this.mostDue(order, stamp)) != null)
+			{
+				//
+				// - Executors passed over on this offer stay out of it: each goes at most once, and
+				// - less room and more placements never make one fit or allowed again
+				//
+				int slot = order.getSlot(app);
+				if (this.triedOffer[slot] != stamp)
+				{
+					this.triedOffer[slot] = stamp;
+					this.tried[slot] = 0;
+				}
+				
+				ExecutorSpec chosen = null;
+				int skip = this.tried[slot];
+				for (ExecutorSpec eSpec : app.getExecutors().values())
+				{
+					if (skip-- > 0) continue;
+					this.tried[slot]++;
+					if (demand.remaining(app, eSpec) > 0 && remaining.fits(eSpec.getRequired()) && demand.allows(eSpec, offer))
+					{
+						chosen = eSpec;
+						break;
+					}
+				}
+				if (chosen == null) continue;
+				
+				remaining.subtract(chosen.getRequired());
+				demand.place(chosen, offer);
+				if (this.givenRound[slot] != this.round)
+				{
+					this.givenRound[slot] = this.round;
+					this.given[slot] = 0;
+				}
+				this.given[slot]++;
+				placements.add(new Placement(app, chosen, offer));
+			}
+		}
+		return placements;
+	}
+	
+	//
+	// - App with the lowest pass once this round's instances are added; the order is sorted by
+	// - pass and only holds apps with pending demand, so the scan stops as soon as no later app
+	// - can beat the best so far
+	//
+	private Application mostDue(StrideScheduler order, int stamp)
+	{
+		Application best = null;
+		long bestPass = Long.MAX_VALUE;
+		for (int i = 0; i < order.size(); i++)
+		{
+			Application app = order.get(i);
+			long pass = order.getPass(app);
+			if (pass >= bestPass) break;
+			
+			int slot = order.getSlot(app);
+			if (this.fitting[slot] != stamp || (this.triedOffer[slot] == stamp && this.tried[slot] >= app.getExecutors().size()))
+			{
+				continue;
+			}
+			
+			if (this.givenRound[slot] == this.round) pass += this.given[slot] * order.getStride(app);
+			if (pass < bestPass)
+			{
+				best = app;
+				bestPass = pass;
+			}
+		}
+		return best;
+	}
+	
+	private void ensureSlots(int slots)
+	{
+		if (this.given.length >= slots) return;
+		
+		int size = Math.max(slots, this.given.length * 2);
+		this.given = Arrays.copyOf(this.given, size);
+		this.givenRound = Arrays.copyOf(this.givenRound, size);
+		this.fitting = Arrays.copyOf(this.fitting, size);
+		this.tried = Arrays.copyOf(this.tried, size);
+		this.triedOffer = Arrays.copyOf(this.triedOffer, size);
+	}
+}
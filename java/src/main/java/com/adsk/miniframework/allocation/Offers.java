@@ -0,0 +1,90 @@
+package com.adsk.miniframework.allocation;
+
+import com.adsk.miniframework.ExecutorSpec;
+import com.adsk.miniframework.ResourceVector;
+
+//
+// - Helpers shared by the policies for picking an offer out of the round
+//
+class Offers
+{
+	private Offers()
+	{
+	}
+	
+	static ResourceVector[] copyAvailable(AllocationView view)
+	{
+		ResourceVector[] remaining = new ResourceVector[view.getNumOffers()];
+		for (int i = 0; i < remaining.length; i++)
+		{
+			remaining[i] = view.getAvailable(i).copy();
+		}
+		return remaining;
+	}
+	
+	//
+	// - First offer the executor fits in and its constraints allow, preferring agents that
+	// - already have its image
+	//
+	static int firstFit(ResourceVector[] remaining, ExecutorSpec executor, RoundDemand demand)
+	{
+		int first = -1;
+		for (int i = 0; i < remaining.length; i++)
+		{
+			if (!remaining[i].fits(executor.getRequired()) || !demand.allows(executor, i)) continue;
+			if (demand.hasImage(executor, i)) return i;
+			if (first < 0) first = i;
+		}
+		return first;
+	}
+	
+	//
+	// - Size of what's left in an offer, as cpu and mem fractions of the round's biggest offer
+	//
+	static double size(ResourceVector remaining, double maxCpu, double maxMem)
+	{
+		double cpu = maxCpu > 0 ? remaining.getCpu() / maxCpu : 0;
+		double mem = maxMem > 0 ? remaining.getMem() / maxMem : 0;
+		return cpu + mem;
+	}
+	
+	//
+	// - Biggest cpu and mem among the offers: {cpu, mem}
+	//
+	static double[] maxima(ResourceVector[] remaining)
+	{
+		double[] max = new double[2];
+		for (ResourceVector r : remaining)
+		{
+			max[0] = Math.max(max[0], r.getCpu());
+			max[1] = Math.max(max[1], r.getMem());
+		}
+		return max;
+	}
+	
+	//
+	// - Allowed offer the executor fits in with the least (smallest = true) or the most room left
+	// - Agents that already have the executor's image win over any amount of room
+	//
+	static int bestFit(ResourceVector[] remaining, ExecutorSpec executor, RoundDemand demand, double[] maxima, boolean smallest)
+	{
+		int best = -1;
+		double bestSize = 0;
+		boolean bestCached = false;
+		for (int i = 0; i < remaining.length; i++)
+		{
+			if (!remaining[i].fits(executor.getRequired()) || !demand.allows(executor, i)) continue;
+			boolean cached = demand.hasImage(executor, i);
+			if (bestCached && !cached) continue;
+			
+			double size = size(remaining[i], maxima[0], maxima[1]);
+			if (best < 0 || (cached && !bestCached) || (smallest ? size < bestSize : size > bestSize))
+			{
+				best = i;
+				bestSize = size;
+				bestCached = cached;
+			}
+		}
+		return best;
+	}
+}
@@ -0,0 +1,136 @@
+package com.adsk.miniframework.allocation;
+
+import com.adsk.miniframework.ResourceVector;
+import com.adsk.miniframework.logging.Logger;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+//
+// - Packs each round's pending instances into its offers with a bounded-time branch and bound
+// - search (see PackingSolver) instead of a single greedy pass. When the budget runs out the best
+// - packing found so far is used, which is never worse than best-fit decreasing.
+// - Executors that need set resources or have placement constraints are left to a first-fit
+// - pass afterwards.
+//
+public class OptimalPackingPolicy implements AllocationPolicy
+{
+	private static final Logger logger = Logger.get(OptimalPackingPolicy.class);
+	
+	public static final long DEFAULT_BUDGET_MILLIS = 50;
+	
+	//
+	// - Past this many instances per round the search space is hopeless; the rest wait for
+	// - the next round
+	//
+	private static final int MAX_ITEMS = 2000;
+	
+	private final long budgetNanos;
+	
+	public OptimalPackingPolicy()
+	{
+		this(DEFAULT_BUDGET_MILLIS);
+	}
+	
+	public OptimalPackingPolicy(long budgetMillis)
+	{
+		this.budgetNanos = budgetMillis * 1000000L;
+	}
+	
+	@Override
+	public List<Placement> allocate(AllocationView view)
+	{
+		List<Placement> placements = new ArrayList<Placement>();
+		RoundDemand demand = new RoundDemand(view);
+		ResourceVector[] remaining = Offers.copyAvailable(view);
+		final double[] maxima = Offers.maxima(remaining);
+		
+		//
+		// - One item per pending instance; instances of one executor stay next to each other
+		// - so the solver can treat them as interchangeable
+		//
+		List<Placement> candidates = new ArrayList<Placement>();
+		List<Placement> leftovers = new ArrayList<Placement>();
+		for (PendingIndex.Entry pending : view.getPendingExecutors())
+		{
+			Placement candidate = new Placement(pending.app, pending.executor, -1);
+			if (pending.executor.getRequired().hasSets() || !pending.executor.getConstraints().isEmpty()) leftovers.add(candidate);
+			else candidates.add(candidate);
+		}
+		final StrideScheduler order = view.getOrder();
+		Collections.sort(candidates, (a, b) -> Integer.compare(order.rank(a.app), order.rank(b.app)));
+		Collections.sort(candidates, (a, b) -> Double.compare(
+				Offers.size(b.executor.getRequired(), maxima[0], maxima[1]),
+				Offers.size(a.executor.getRequired(), maxima[0], maxima[1])));
+		
+		List<Placement> items = new ArrayList<Placement>();
+		List<Integer> groups = new ArrayList<Integer>();
+		for (int c = 0; c < candidates.size() && items.size() < MAX_ITEMS; c++)
+		{
+			Placement candidate = candidates.get(c);
+			int pending = Math.min(demand.remaining(candidate.app, candidate.executor), MAX_ITEMS - items.size());
+			for (int k = 0; k < pending; k++)
+			{
+				items.add(candidate);
+				groups.add(c);
+			}
+		}
+		
+		double[][] demands = new double[items.size()][];
+		int[] group = new int[items.size()];
+		for (int i = 0; i < items.size(); i++)
+		{
+			demands[i] = dimensions(items.get(i).executor.getRequired());
+			group[i] = groups.get(i);
+		}
+		double[][] capacity = new double[remaining.length][];
+		for (int b = 0; b < remaining.length; b++)
+		{
+			capacity[b] = dimensions(remaining[b]);
+		}
+		
+		PackingSolver solver = new PackingSolver(demands, group, capacity);
+		long start = System.nanoTime();
+		int[] assignment = solver.solve(this.budgetNanos);
+		
+		int placed = 0;
+		for (int i = 0; i < items.size(); i++)
+		{
+			if (assignment[i] < 0) continue;
+			Placement item = items.get(i);
+			remaining[assignment[i]].subtract(item.executor.getRequired());
+			demand.place(item.executor, assignment[i]);
+			placements.add(new Placement(item.app, item.executor, assignment[i]));
+			placed++;
+		}
+		
+		if (!items.isEmpty() && logger.isDebugEnabled())
+		{
+			logger.debug("Packed {} instances into {} offers in {}ms ({})", placed + "/" + items.size(), remaining.length,
+						(System.nanoTime() - start) / 1000000,
+						solver.nodes() + " nodes" + (solver.timedOut() ? ", budget exhausted" : ", optimal"));
+		}
+		
+		for (Placement leftover : leftovers)
+		{
+			while (demand.remaining(leftover.app, leftover.executor) > 0)
+			{
+				int target = Offers.firstFit(remaining, leftover.executor, demand);
+				if (target < 0) break;
+				remaining[target].subtract(leftover.executor.getRequired());
+				demand.place(leftover.executor, target);
+				placements.add(new Placement(leftover.app, leftover.executor, target));
+			}
+		}
+		return placements;
+	}
+	
+	//
+	// - The dimensions the solver packs: cpus, mem, disk, port count
+	//
+	private static double[] dimensions(ResourceVector vector)
+	{
+		return new double[] { vector.getCpu(), vector.getMem(), vector.getDisk(), vector.getRangeCount(ResourceVector.PORTS) };
+	}
+}
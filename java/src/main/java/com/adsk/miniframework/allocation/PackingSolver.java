@@ -0,0 +1,235 @@
+package com.adsk.miniframework.allocation;
+
+import java.util.Arrays;
+
+//
+// - Multi-dimensional bin packing over one round of offers, solved by depth-first branch and bound
+// - Items are pending executor instances, bins are offers, dimensions are cpus/mem/disk/port count
+// - Objective: place as many items as possible, ties broken by resources used
+// - The search starts from a best-fit decreasing solution and stops when the time budget runs out,
+// - so the result is never worse than greedy and is optimal when the search completes
+//
+class PackingSolver
+{
+	private static final double EPSILON = 1e-6;
+
+	//
+	// - Check the clock every this many nodes
+	//
+	private static final int CLOCK_INTERVAL = 1024;
+
+	private final double[][] demand;
+	private final int[] group;
+	private final double[][] capacity;
+	private final int numItems;
+	private final int numBins;
+	private final int dims;
+
+	//
+	// - Search state; items are visited in order (callers sort them biggest first)
+	//
+	private final double[] value;
+	private final double[] suffixValue;
+	private final double[][] suffixMinDemand;
+	private final double maxValue;
+	private final int[] assign;
+	private int[] best;
+	private double bestValue;
+
+	private long deadline;
+	private long nodes;
+	private boolean timedOut;
+
+	//
+	// - demand[item][dim], capacity[bin][dim]; items with the same group are interchangeable
+	//
+	PackingSolver(double[][] demand, int[] group, double[][] capacity)
+	{
+		this.demand = demand;
+		this.group = group;
+		this.numItems = demand.length;
+		this.numBins = capacity.length;
+		this.dims = this.numItems > 0 ? demand[0].length : 0;
+		this.capacity = new double[this.numBins][];
+		for (int b = 0; b < this.numBins; b++)
+		{
+			this.capacity[b] = capacity[b].clone();
+		}
+
+		//
+		// - Value of an item: 1 per task plus a small bonus for the share of the biggest bin it uses
+		//
+		double[] maxCapacity = new double[this.dims];
+		for (double[] bin : capacity)
+		{
+			for (int d = 0; d < this.dims; d++) maxCapacity[d] = Math.max(maxCapacity[d], bin[d]);
+		}
+		this.value = new double[this.numItems];
+		double max = 0;
+		for (int i = 0; i < this.numItems; i++)
+		{
+			double size = 0;
+			for (int d = 0; d < this.dims; d++)
+			{
+				if (maxCapacity[d] > 0) size += demand[i][d] / maxCapacity[d];
+			}
+			this.value[i] = 1 + 1e-3 * size;
+			max = Math.max(max, this.value[i]);
+		}
+		this.maxValue = max;
+
+		this.suffixValue = new double[this.numItems + 1];
+		this.suffixMinDemand = new double[this.numItems + 1][this.dims];
+		Arrays.fill(this.suffixMinDemand[this.numItems], Double.MAX_VALUE);
+		for (int i = this.numItems - 1; i >= 0; i--)
+		{
+			this.suffixValue[i] = this.suffixValue[i + 1] + this.value[i];
+			for (int d = 0; d < this.dims; d++)
+			{
+				this.suffixMinDemand[i][d] = Math.min(this.suffixMinDemand[i + 1][d], demand[i][d]);
+			}
+		}
+
+		this.assign = new int[this.numItems];
+		Arrays.fill(this.assign, -1);
+	}
+
+	//
+	// - Returns the bin for each item, -1 for items left out
+	//
+	int[] solve(long budgetNanos)
+	{
+		this.deadline = System.nanoTime() + budgetNanos;
+		this.greedy();
+
+		if (this.numItems > 0 && this.numBins > 0)
+		{
+			this.search(0, 0);
+		}
+		return this.best;
+	}
+
+	boolean timedOut()
+	{
+		return this.timedOut;
+	}
+
+	long nodes()
+	{
+		return this.nodes;
+	}
+
+	//
+	// - Best-fit decreasing incumbent
+	//
+	private void greedy()
+	{
+		double[][] free = new double[this.numBins][];
+		for (int b = 0; b < this.numBins; b++) free[b] = this.capacity[b].clone();
+
+		int[] assignment = new int[this.numItems];
+		double total = 0;
+		for (int i = 0; i < this.numItems; i++)
+		{
+			int target = -1;
+			double slack = 0;
+			for (int b = 0; b < this.numBins; b++)
+			{
+				if (!this.fits(free[b], i)) continue;
+				double s = 0;
+				for (int d = 0; d < this.dims; d++) s += free[b][d] - this.demand[i][d];
+				if (target < 0 || s < slack)
+				{
+					target = b;
+					slack = s;
+				}
+			}
+			assignment[i] = target;
+			if (target >= 0)
+			{
+				this.take(free[target], i);
+				total += this.value[i];
+			}
+		}
+		this.best = assignment;
+		this.bestValue = total;
+	}
+
+	private void search(int i, double placed)
+	{
+		if (this.timedOut) return;
+		if ((++this.nodes % CLOCK_INTERVAL) == 0 && System.nanoTime() > this.deadline)
+		{
+			this.timedOut = true;
+			return;
+		}
+
+		if (placed > this.bestValue + EPSILON)
+		{
+			this.bestValue = placed;
+			this.best = this.assign.clone();
+		}
+		if (i == this.numItems || placed + this.bound(i) <= this.bestValue + EPSILON) return;
+
+		//
+		// - Interchangeable items go into bins in non-decreasing order, and once one of them
+		// - is left out the rest are too; this removes permutations of identical items
+		//
+		boolean sameAsPrevious = i > 0 && this.group[i] == this.group[i - 1];
+		int firstBin = sameAsPrevious ? this.assign[i - 1] : 0;
+
+		if (firstBin >= 0)
+		{
+			for (int b = firstBin; b < this.numBins; b++)
+			{
+				if (!this.fits(this.capacity[b], i)) continue;
+
+				this.take(this.capacity[b], i);
+				this.assign[i] = b;
+				this.search(i + 1, placed + this.value[i]);
+				this.assign[i] = -1;
+				this.give(this.capacity[b], i);
+
+				if (this.timedOut) return;
+			}
+		}
+
+		this.search(i + 1, placed);
+	}
+
+	//
+	// - Upper bound on the value still obtainable from items i.. given the free capacity left
+	//
+	private double bound(int i)
+	{
+		double maxItems = Double.MAX_VALUE;
+		for (int d = 0; d < this.dims; d++)
+		{
+			double smallest = this.suffixMinDemand[i][d];
+			if (smallest <= 0) continue;
+			double free = 0;
+			for (int b = 0; b < this.numBins; b++) free += this.capacity[b][d];
+			maxItems = Math.min(maxItems, Math.floor(free / smallest + EPSILON));
+		}
+		return Math.min(this.suffixValue[i], maxItems * this.maxValue);
+	}
+
+	private boolean fits(double[] bin, int i)
+	{
+		for (int d = 0; d < this.dims; d++)
+		{
+			if (this.demand[i][d] > bin[d] + EPSILON) return false;
+		}
+		return true;
+	}
+
+	private void take(double[] bin, int i)
+	{
+		for (int d = 0; d < this.dims; d++) bin[d] -= this.demand[i][d];
+	}
+
+	private void give(double[] bin, int i)
+	{
+		for (int d = 0; d < this.dims; d++) bin[d] += this.demand[i][d];
+	}
+}
@@ -0,0 +1,204 @@
+package com.adsk.miniframework.allocation;
+
+import com.adsk.miniframework.Application;
+import com.adsk.miniframework.ExecutorSpec;
+import com.adsk.miniframework.ResourceVector;
+
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.NavigableSet;
+import java.util.NoSuchElementException;
+import java.util.TreeSet;
+
+//
+// - Executor specs that still have instances to launch, ordered by required cpu then mem
+// - Fully launched specs aren't in here at all, so a round only looks at outstanding demand,
+// - and the specs fitting an offer are a head set on cpu filtered on mem
+// - Kept up to date by the allocator as usage changes; not thread safe
+//
+public class PendingIndex
+{
+	private static final double EPSILON = 1e-6;
+	
+	public static class Entry
+	{
+		public final Application app;
+		public final ExecutorSpec executor;
+		private final double cpu;
+		private final double mem;
+		private final long seq;
+		private int pending;
+		
+		private Entry(Application app, ExecutorSpec executor, long seq)
+		{
+			this.app = app;
+			this.executor = executor;
+			this.cpu = executor.getRequiredCpu();
+			this.mem = executor.getRequiredMem();
+			this.seq = seq;
+		}
+		
+		private Entry(double cpu, double mem, long seq)
+		{
+			this.app = null;
+			this.executor = null;
+			this.cpu = cpu;
+			this.mem = mem;
+			this.seq = seq;
+		}
+		
+		public int getPending()
+		{
+			return this.pending;
+		}
+	}
+	
+	private final TreeSet<Entry> entries;
+	private final IdentityHashMap<ExecutorSpec, Entry> byExecutor;
+	private final IdentityHashMap<Application, int[]> perApp;
+	private long seq;
+	
+	//
+	// - Sum of the pending counts
+	//
+	private long total;
+	
+	public PendingIndex()
+	{
+		this.entries = new TreeSet<Entry>((a, b) -> {
+			int c = Double.compare(a.cpu, b.cpu);
+			if (c == 0) c = Double.compare(a.mem, b.mem);
+			if (c == 0) c = Long.compare(a.seq, b.seq);
+			return c;
+		});
+		this.byExecutor = new IdentityHashMap<ExecutorSpec, Entry>();
+		this.perApp = new IdentityHashMap<Application, int[]>();
+	}
+	
+	//
+	// - Record the executor's pending count; 0 takes it out of the index
+	//
+	public void update(Application app, ExecutorSpec executor, int pending)
+	{
+		Entry entry = this.byExecutor.get(executor);
+		if (pending <= 0)
+		{
+			if (entry != null)
+			{
+				this.total -= entry.pending;
+				this.entries.remove(entry);
+				this.byExecutor.remove(executor);
+				
+				int[] count = this.perApp.get(app);
+				if (--count[0] == 0) this.perApp.remove(app);
+			}
+			return;
+		}
+		
+		if (entry == null)
+		{
+			entry = new Entry(app, executor, this.seq++);
+			this.entries.add(entry);
+			this.byExecutor.put(executor, entry);
+			
+			int[] count = this.perApp.get(app);
+			if (count == null)
+			{
+				count = new int[1];
+				this.perApp.put(app, count);
+			}
+			count[0]++;
+		}
+		this.total += pending - entry.pending;
+		entry.pending = pending;
+	}
+	
+	public void remove(Application app)
+	{
+		for (ExecutorSpec executor : app.getExecutors().values())
+		{
+			this.update(app, executor, 0);
+		}
+	}
+	
+	public int getPending(ExecutorSpec executor)
+	{
+		Entry entry = this.byExecutor.get(executor);
+		return entry == null ? 0 : entry.pending;
+	}
+	
+	//
+	// - Whether any of the app's executors has pending instances
+	//
+	public boolean hasPending(Application app)
+	{
+		return this.perApp.containsKey(app);
+	}
+	
+	public boolean isEmpty()
+	{
+		return this.entries.isEmpty();
+	}
+	
+	public int size()
+	{
+		return this.entries.size();
+	}
+	
+	//
+	// - Instances pending over every executor
+	//
+	public long getTotalPending()
+	{
+		return this.total;
+	}
+	
+	//
+	// - Every spec with pending instances, smallest first
+	//
+	public Iterable<Entry> all()
+	{
+		return Collections.unmodifiableSet(this.entries);
+	}
+	
+	//
+	// - Specs whose cpu and mem fit in what's available; other resources are still up to fits()
+	//
+	public Iterable<Entry> fitting(ResourceVector available)
+	{
+		final double mem = available.getMem() + EPSILON;
+		final NavigableSet<Entry> head = this.entries.headSet(new Entry(available.getCpu() + EPSILON, Double.MAX_VALUE, Long.MAX_VALUE), true);
+		
+		return () -> new Iterator<Entry>()
+		{
+			private final Iterator<Entry> it = head.iterator();
+			private Entry next = this.advance();
+			
+			private Entry advance()
+			{
+				while (this.it.hasNext())
+				{
+					Entry entry = this.it.next();
+					if (entry.mem <= mem) return entry;
+				}
+				return null;
+			}
+			
+			@Override
+			public boolean hasNext()
+			{
+				return this.next != null;
+			}
+			
+			@Override
+			public Entry next()
+			{
+				if (this.next == null) throw new NoSuchElementException();
+				Entry entry = this.next;
+				this.next = this.advance();
+				return entry;
+			}
+		};
+	}
+}
@@ -0,0 +1,21 @@
+package com.adsk.miniframework.allocation;
+
+import com.adsk.miniframework.Application;
+import com.adsk.miniframework.ExecutorSpec;
+
+//
+// - Launch decision: one instance of an app's executor on one of the round's offers
+//
+public class Placement
+{
+	public final Application app;
+	public final ExecutorSpec executor;
+	public final int offer;
+	
+	public Placement(Application app, ExecutorSpec executor, int offer)
+	{
+		this.app = app;
+		this.executor = executor;
+		this.offer = offer;
+	}
+}
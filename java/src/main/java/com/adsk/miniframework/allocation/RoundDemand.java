@@ -0,0 +1,95 @@
+package com.adsk.miniframework.allocation;
+
+import com.adsk.miniframework.AgentIndex;
+import com.adsk.miniframework.Application;
+import com.adsk.miniframework.Constraint;
+import com.adsk.miniframework.ExecutorSpec;
+
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+
+//
+// - Demand left in a round once the placements made so far are taken into account;
+// - the view only knows about launches that have actually been applied
+// - Also counts the round's placements per attribute value, so constraints see them
+//
+class RoundDemand implements AgentIndex.Counts
+{
+	private final AllocationView view;
+	private final IdentityHashMap<ExecutorSpec, int[]> placed;
+	private final IdentityHashMap<ExecutorSpec, HashMap<String, HashMap<String, int[]>>> placedPerValue;
+	
+	RoundDemand(AllocationView view)
+	{
+		this.view = view;
+		this.placed = new IdentityHashMap<ExecutorSpec, int[]>();
+		this.placedPerValue = new IdentityHashMap<ExecutorSpec, HashMap<String, HashMap<String, int[]>>>();
+	}
+	
+	int remaining(Application app, ExecutorSpec executor)
+	{
+		int[] count = this.placed.get(executor);
+		return this.view.getPending(app, executor) - (count == null ? 0 : count[0]);
+	}
+	
+	//
+	// - Unconstrained executors go anywhere without asking the view
+	//
+	boolean allows(ExecutorSpec executor, int offer)
+	{
+		return executor.getConstraints().isEmpty() || this.view.allows(executor, offer, this);
+	}
+	
+	boolean hasImage(ExecutorSpec executor, int offer)
+	{
+		return this.view.hasImage(offer, executor);
+	}
+	
+	void place(ExecutorSpec executor, int offer)
+	{
+		int[] count = this.placed.get(executor);
+		if (count == null)
+		{
+			count = new int[1];
+			this.placed.put(executor, count);
+		}
+		count[0]++;
+		
+		for (Constraint constraint : executor.getConstraints())
+		{
+			String value = this.view.getAttribute(offer, constraint.attribute);
+			if (!constraint.isCounting() || value == null) continue;
+			
+			HashMap<String, HashMap<String, int[]>> byAttribute = this.placedPerValue.get(executor);
+			if (byAttribute == null)
+			{
+				byAttribute = new HashMap<String, HashMap<String, int[]>>();
+				this.placedPerValue.put(executor, byAttribute);
+			}
+			HashMap<String, int[]> byValue = byAttribute.get(constraint.attribute);
+			if (byValue == null)
+			{
+				byValue = new HashMap<String, int[]>();
+				byAttribute.put(constraint.attribute, byValue);
+			}
+			int[] n = byValue.get(value);
+			if (n == null)
+			{
+				n = new int[1];
+				byValue.put(value, n);
+			}
+			n[0]++;
+		}
+	}
+	
+	@Override
+	public int get(ExecutorSpec executor, String attribute, String value)
+	{
+		HashMap<String, HashMap<String, int[]>> byAttribute = this.placedPerValue.get(executor);
+		if (byAttribute == null) return 0;
+		HashMap<String, int[]> byValue = byAttribute.get(attribute);
+		if (byValue == null) return 0;
+		int[] n = byValue.get(value);
+		return n == null ? 0 : n[0];
+	}
+}
@@ -0,0 +1,53 @@
+package com.adsk.miniframework.allocation;
+
+import com.adsk.miniframework.ResourceVector;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+
+//
+// - Worst-fit round robin: one instance per executor per pass, each onto the offer with the
+// - most room left, so load spreads across agents and no app waits for another to finish
+//
+public class SpreadPolicy implements AllocationPolicy
+{
+	@Override
+	public List<Placement> allocate(AllocationView view)
+	{
+		List<Placement> placements = new ArrayList<Placement>();
+		RoundDemand demand = new RoundDemand(view);
+		ResourceVector[] remaining = Offers.copyAvailable(view);
+		double[] maxima = Offers.maxima(remaining);
+		
+		List<Placement> candidates = new ArrayList<Placement>();
+		for (PendingIndex.Entry pending : view.getPendingExecutors())
+		{
+			candidates.add(new Placement(pending.app, pending.executor, -1));
+		}
+		final StrideScheduler order = view.getOrder();
+		Collections.sort(candidates, (a, b) -> Integer.compare(order.rank(a.app), order.rank(b.app)));
+		
+		while (!candidates.isEmpty())
+		{
+			Iterator<Placement> it = candidates.iterator();
+			while (it.hasNext())
+			{
+				Placement candidate = it.next();
+				int target = demand.remaining(candidate.app, candidate.executor) > 0
+						? Offers.bestFit(remaining, candidate.executor, demand, maxima, false) : -1;
+				if (target < 0)
+				{
+					it.remove();
+					continue;
+				}
+				
+				remaining[target].subtract(candidate.executor.getRequired());
+				demand.place(candidate.executor, target);
+				placements.add(new Placement(candidate.app, candidate.executor, target));
+			}
+		}
+		return placements;
+	}
+}
@@ -0,0 +1,233 @@
+package com.adsk.miniframework.allocation;
+
+import com.adsk.miniframework.Application;
+
+import java.util.IdentityHashMap;
+
+//
+// - Stride scheduling over the registered apps: each app has a pass that advances by
+// - STRIDE / weight every time it gets an instance, and apps are kept ordered by pass
+// - (ties by registration order). Walking the order front to back gives the next app due,
+// - deterministically and without copying anything; over time each app gets instances in
+// - proportion to its weight.
+// - Only apps with pending demand are in the order. Idle ones keep their pass, and it's
+// - raised to the front's when they want instances again, so credit built up while idle
+// - doesn't let them starve the others.
+// - Every app also has a slot, a small index that stays put while it's registered, for
+// - policies keeping per-app counters in arrays.
+//
+public class StrideScheduler
+{
+	public static final long STRIDE = 1L << 20;
+	
+	private static class Entry
+	{
+		final Application app;
+		final long seq;
+		final int slot;
+		long pass;
+		int index;
+		boolean pending;
+		
+		Entry(Application app, long seq, int slot)
+		{
+			this.app = app;
+			this.seq = seq;
+			this.slot = slot;
+		}
+	}
+	
+	private Entry[] order;
+	private int size;
+	private long seq;
+	private final IdentityHashMap<Application, Entry> entries;
+	
+	//
+	// - Slots given back by removed apps, reused before new ones are handed out
+	//
+	private int[] freeSlots;
+	private int numFree;
+	private int numSlots;
+	
+	//
+	// - Pass of the last app to leave an empty order, for apps joining while none is pending
+	//
+	private long floor;
+	
+	public StrideScheduler()
+	{
+		this.order = new Entry[16];
+		this.entries = new IdentityHashMap<Application, Entry>();
+		this.freeSlots = new int[16];
+	}
+	
+	//
+	// - New apps start level with the app furthest behind, so they don't get a burst of catching up;
+	// - they count as pending until told otherwise
+	//
+	public void add(Application app)
+	{
+		if (this.entries.containsKey(app)) return;
+		
+		int slot = this.numFree > 0 ? this.freeSlots[--this.numFree] : this.numSlots++;
+		Entry entry = new Entry(app, this.seq++, slot);
+		this.entries.put(app, entry);
+		this.enter(entry);
+	}
+	
+	public void remove(Application app)
+	{
+		Entry entry = this.entries.remove(app);
+		if (entry == null) return;
+		
+		if (entry.pending) this.leave(entry);
+		if (this.numFree == this.freeSlots.length)
+		{
+			int[] grown = new int[this.numFree * 2];
+			System.arraycopy(this.freeSlots, 0, grown, 0, this.numFree);
+			this.freeSlots = grown;
+		}
+		this.freeSlots[this.numFree++] = entry.slot;
+	}
+	
+	//
+	// - Whether the app has instances to launch; called as its demand comes and goes
+	//
+	public void setPending(Application app, boolean pending)
+	{
+		Entry entry = this.entries.get(app);
+		if (entry == null || entry.pending == pending) return;
+		
+		if (pending)
+		{
+			this.enter(entry);
+		}
+		else
+		{
+			this.leave(entry);
+		}
+	}
+	
+	//
+	// - The app got an instance; move it back by its stride
+	//
+	public void charge(Application app)
+	{
+		Entry entry = this.entries.get(app);
+		if (entry == null) return;
+		
+		entry.pass += this.getStride(app);
+		if (entry.pending) this.siftRight(entry.index);
+	}
+	
+	//
+	// - Number of apps with pending demand
+	//
+	public int size()
+	{
+		return this.size;
+	}
+	
+	//
+	// - i-th app in order, 0 being the one most due
+	//
+	public Application get(int i)
+	{
+		return this.order[i].app;
+	}
+	
+	//
+	// - Position in the order; MAX_VALUE for apps not in it
+	//
+	public int rank(Application app)
+	{
+		Entry entry = this.entries.get(app);
+		return entry == null || !entry.pending ? Integer.MAX_VALUE : entry.index;
+	}
+	
+	//
+	// - The app's slot, below getNumSlots(); -1 if it isn't registered
+	//
+	public int getSlot(Application app)
+	{
+		Entry entry = this.entries.get(app);
+		return entry == null ? -1 : entry.slot;
+	}
+	
+	public int getNumSlots()
+	{
+		return this.numSlots;
+	}
+	
+	public long getPass(Application app)
+	{
+		Entry entry = this.entries.get(app);
+		return entry == null ? Long.MAX_VALUE : entry.pass;
+	}
+	
+	public long getStride(Application app)
+	{
+		return STRIDE / app.getWeight();
+	}
+	
+	//
+	// - Into the order, no further ahead than the app at the front
+	//
+	private void enter(Entry entry)
+	{
+		if (this.size == this.order.length)
+		{
+			Entry[] grown = new Entry[this.size * 2];
+			System.arraycopy(this.order, 0, grown, 0, this.size);
+			this.order = grown;
+		}
+		entry.pass = Math.max(entry.pass, this.size > 0 ? this.order[0].pass : this.floor);
+		entry.pending = true;
+		entry.index = this.size;
+		this.order[this.size++] = entry;
+		this.siftLeft(entry.index);
+	}
+	
+	private void leave(Entry entry)
+	{
+		for (int i = entry.index; i < this.size - 1; i++)
+		{
+			this.order[i] = this.order[i + 1];
+			this.order[i].index = i;
+		}
+		this.order[--this.size] = null;
+		entry.pending = false;
+		if (this.size == 0) this.floor = entry.pass;
+	}
+	
+	private boolean before(Entry a, Entry b)
+	{
+		return a.pass < b.pass || (a.pass == b.pass && a.seq < b.seq);
+	}
+	
+	private void siftLeft(int i)
+	{
+		Entry entry = this.order[i];
+		while (i > 0 && this.before(entry, this.order[i - 1]))
+		{
+			this.order[i] = this.order[i - 1];
+			this.order[i].index = i;
+			i--;
+		}
+		this.order[i] = entry;
+		entry.index = i;
+	}
+	
+	private void siftRight(int i)
+	{
+		Entry entry = this.order[i];
+		while (i < this.size - 1 && this.before(this.order[i + 1], entry))
+		{
+			this.order[i] = this.order[i + 1];
+			this.order[i].index = i;
+			i++;
+		}
+		this.order[i] = entry;
+		entry.index = i;
+	}
+}
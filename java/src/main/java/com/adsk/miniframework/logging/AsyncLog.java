@@ -0,0 +1,338 @@
+package com.adsk.miniframework.logging;
+
+import java.io.PrintStream;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.TimeZone;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.LockSupport;
+
+//
+// - Where Loggers put their records: a bounded lock-free ring of preallocated records and one
+// - background thread that formats and writes them, so callers on the scheduler loop or the
+// - driver's thread never format, never take a lock and never wait on stdout.
+// - Producers claim a slot with a CAS on the tail and publish it through the slot's sequence
+// - number (the usual bounded MPMC queue, with a single consumer). When the ring is full the
+// - record is dropped and counted rather than blocking the caller; the writer reports drops.
+// - An idle writer parks until a producer publishes into the empty ring and unparks it.
+// - Arguments are only turned into text on the writer thread, so they must not change after
+// - they were logged (strings, protos, boxed numbers...).
+//
+public final class AsyncLog
+{
+	public static final int DEFAULT_CAPACITY = 8192;
+	
+	//
+	// - How often flush() checks how far the writer got
+	//
+	private static final long FLUSH_POLL_NANOS = TimeUnit.MILLISECONDS.toNanos(1);
+	
+	private static final class Record
+	{
+		Level level;
+		String logger;
+		String thread;
+		long time;
+		String format;
+		int argc;
+		Object a;
+		Object b;
+		Object c;
+		Object d;
+	}
+	
+	private static final AsyncLog instance = new AsyncLog(DEFAULT_CAPACITY, System.out, System.err);
+	
+	private final Record[] records;
+	private final AtomicLongArray sequences;
+	private final int mask;
+	private final AtomicLong tail;
+	private final AtomicLong dropped;
+	private final PrintStream out;
+	private final PrintStream err;
+	private volatile Level level;
+	private volatile boolean closing;
+	private final Thread writer;
+	
+	//
+	// - Set by the writer just before it parks; producers only unpark it then
+	//
+	private volatile boolean sleeping;
+	
+	//
+	// - Records written out so far
+	//
+	private volatile long written;
+	
+	//
+	// - Writer side only
+	//
+	private long head;
+	private long reportedDrops;
+	private final StringBuilder outLines;
+	private final StringBuilder errLines;
+	private final SimpleDateFormat dates;
+	
+	//
+	// - Normally there's just the shared one (see get()); warnings and errors go to err
+	//
+	public AsyncLog(int capacity, PrintStream out, PrintStream err)
+	{
+		int size = Integer.highestOneBit(Math.max(2, capacity - 1)) << 1;
+		this.records = new Record[size];
+		this.sequences = new AtomicLongArray(size);
+		for (int i = 0; i < size; i++)
+		{
+			this.records[i] = new Record();
+			this.sequences.set(i, i);
+		}
+		this.mask = size - 1;
+		this.tail = new AtomicLong();
+		this.dropped = new AtomicLong();
+		this.out = out;
+		this.err = err;
+		this.level = Level.INFO;
+		
+		this.outLines = new StringBuilder();
+		this.errLines = new StringBuilder();
+		this.dates = new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ss.SSS'Z'");
+		this.dates.setTimeZone(TimeZone.getTimeZone("UTC"));
+		
+		this.writer = new Thread(this::run, "log-writer");
+		this.writer.setDaemon(true);
+		this.writer.start();
+		Runtime.getRuntime().addShutdownHook(new Thread(this::close, "log-flush"));
+	}
+	
+	//
+	// - The one writing to stdout and stderr, used by Logger.get(Class)
+	//
+	public static AsyncLog get()
+	{
+		return instance;
+	}
+	
+	//
+	// - Records below this level are discarded before anything is captured
+	//
+	public void setLevel(Level level)
+	{
+		this.level = level;
+	}
+	
+	public Level getLevel()
+	{
+		return this.level;
+	}
+	
+	//
+	// - Wait until everything logged so far has been written
+	//
+	public void flush()
+	{
+		this.awaitWritten(this.tail.get());
+	}
+	
+	public long getDropped()
+	{
+		return this.dropped.get();
+	}
+	
+	boolean isEnabled(Level level)
+	{
+		return this.level.includes(level);
+	}
+	
+	//
+	// - Any thread; false if the ring was full and the record was dropped
+	//
+	boolean append(Level level, String logger, String format, int argc, Object a, Object b, Object c, Object d)
+	{
+		long pos = this.tail.get();
+		while (true)
+		{
+			long seq = this.sequences.get((int) (pos & this.mask));
+			if (seq == pos)
+			{
+				if (this.tail.compareAndSet(pos, pos + 1)) break;
+				pos = this.tail.get();
+			}
+			else if (seq < pos)
+			{
+				this.dropped.incrementAndGet();
+				return false;
+			}
+			else
+			{
+				pos = this.tail.get();
+			}
+		}
+		
+		int slot = (int) (pos & this.mask);
+		Record record = this.records[slot];
+		record.level = level;
+		record.logger = logger;
+		record.thread = Thread.currentThread().getName();
+		record.time = System.currentTimeMillis();
+		record.format = format;
+		record.argc = argc;
+		record.a = a;
+		record.b = b;
+		record.c = c;
+		record.d = d;
+		this.sequences.set(slot, pos + 1);
+		
+		//
+		// - Both volatile: either the writer's check before parking sees this record, or we see it asleep
+		//
+		if (this.sleeping)
+		{
+			LockSupport.unpark(this.writer);
+		}
+		return true;
+	}
+	
+	private void run()
+	{
+		while (true)
+		{
+			boolean closing = this.closing;
+			if (this.drain() > 0) continue;
+			if (closing) return;
+			
+			this.sleeping = true;
+			if (!this.isPublished(this.head) && !this.closing)
+			{
+				LockSupport.park(this);
+			}
+			this.sleeping = false;
+		}
+	}
+	
+	private boolean isPublished(long position)
+	{
+		return this.sequences.get((int) (position & this.mask)) == position + 1;
+	}
+	
+	//
+	// - Format everything published so far and write it out in one go per stream
+	//
+	private int drain()
+	{
+		int n = 0;
+		while (this.isPublished(this.head))
+		{
+			int slot = (int) (this.head & this.mask);
+			Record record = this.records[slot];
+			StringBuilder lines = Level.WARN.includes(record.level) ? this.errLines : this.outLines;
+			this.format(lines, record);
+			
+			record.logger = null;
+			record.thread = null;
+			record.format = null;
+			record.a = record.b = record.c = record.d = null;
+			this.sequences.set(slot, this.head + this.records.length);
+			this.head++;
+			n++;
+		}
+		
+		long drops = this.dropped.get();
+		if (drops != this.reportedDrops)
+		{
+			this.errLines.append(this.dates.format(new Date())).append(" WARN  [log-writer] AsyncLog - dropped ")
+						.append(drops - this.reportedDrops).append(" log records; the writer fell behind\n");
+			this.reportedDrops = drops;
+		}
+		
+		this.write(this.outLines, this.out);
+		this.write(this.errLines, this.err);
+		this.written = this.head;
+		return n;
+	}
+	
+	private void write(StringBuilder lines, PrintStream stream)
+	{
+		if (lines.length() == 0) return;
+		
+		stream.print(lines);
+		stream.flush();
+		lines.setLength(0);
+	}
+	
+	//
+	// - 2026-01-01T00:00:00.000Z INFO  [thread] Logger - message, with {} replaced by the arguments
+	// - in order; a Throwable as the last argument is printed with its stack trace, whether or not
+	// - a placeholder took it as well
+	//
+	private void format(StringBuilder line, Record record)
+	{
+		line.append(this.dates.format(new Date(record.time))).append(' ');
+		line.append(record.level);
+		for (int i = record.level.name().length(); i < 6; i++) line.append(' ');
+		line.append('[').append(record.thread).append("] ").append(record.logger).append(" - ");
+		
+		int used = 0;
+		String format = record.format;
+		int from = 0;
+		while (true)
+		{
+			int at = format.indexOf("{}", from);
+			if (at < 0 || used == record.argc) break;
+			
+			line.append(format, from, at).append(arg(record, used++));
+			from = at + 2;
+		}
+		line.append(format, from, format.length()).append('\n');
+		
+		if (record.argc > 0 && arg(record, record.argc - 1) instanceof Throwable)
+		{
+			StringWriter trace = new StringWriter();
+			((Throwable) arg(record, record.argc - 1)).printStackTrace(new PrintWriter(trace));
+			line.append(trace);
+		}
+	}
+	
+	private static Object arg(Record record, int i)
+	{
+		switch (i)
+		{
+		case 0:
+			return record.a;
+		case 1:
+			return record.b;
+		case 2:
+			return record.c;
+		default:
+			return record.d;
+		}
+	}
+	
+	private void awaitWritten(long position)
+	{
+		while (this.writer.isAlive() && this.written < position)
+		{
+			LockSupport.parkNanos(FLUSH_POLL_NANOS);
+		}
+	}
+	
+	//
+	// - Write out what's left and stop the writer; the shared log is closed on exit
+	//
+	public void close()
+	{
+		this.closing = true;
+		LockSupport.unpark(this.writer);
+		try
+		{
+			this.writer.join(TimeUnit.SECONDS.toMillis(5));
+		}
+		catch (InterruptedException e)
+		{
+			Thread.currentThread().interrupt();
+		}
+	}
+}
@@ -0,0 +1,18 @@
+package com.adsk.miniframework.logging;
+
+public enum Level
+{
+	DEBUG,
+	INFO,
+	WARN,
+	ERROR,
+	OFF;
+	
+	//
+	// - Whether a record at the level passes this threshold
+	//
+	public boolean includes(Level level)
+	{
+		return level.ordinal() >= this.ordinal();
+	}
+}
@@ -0,0 +1,153 @@
+package com.adsk.miniframework.logging;
+
+//
+// - Leveled logging through AsyncLog, slf4j style: "Launching task {} on slave {}", task, slave
+// - The level is checked before anything is captured, and the message is only put together on
+// - the writer thread, so a disabled level costs a volatile read. The fixed arities avoid a
+// - varargs array; primitive arguments are boxed by the caller though, so guard calls with
+// - isDebugEnabled() where that matters. A trailing Throwable is printed with its stack trace.
+//
+public final class Logger
+{
+	private final String name;
+	private final AsyncLog log;
+	
+	private Logger(String name, AsyncLog log)
+	{
+		this.name = name;
+		this.log = log;
+	}
+	
+	public static Logger get(Class<?> type)
+	{
+		return new Logger(type.getSimpleName(), AsyncLog.get());
+	}
+	
+	public static Logger get(String name, AsyncLog log)
+	{
+		return new Logger(name, log);
+	}
+	
+	public String getName()
+	{
+		return this.name;
+	}
+	
+	public boolean isEnabled(Level level)
+	{
+		return this.log.isEnabled(level);
+	}
+	
+	public boolean isDebugEnabled()
+	{
+		return this.log.isEnabled(Level.DEBUG);
+	}
+	
+	public void debug(String format)
+	{
+		this.log(Level.DEBUG, format, 0, null, null, null, null);
+	}
+	
+	public void debug(String format, Object a)
+	{
+		this.log(Level.DEBUG, format, 1, a, null, null, null);
+	}
+	
+	public void debug(String format, Object a, Object b)
+	{
+		this.log(Level.DEBUG, format, 2, a, b, null, null);
+	}
+	
+	public void debug(String format, Object a, Object b, Object c)
+	{
+		this.log(Level.DEBUG, format, 3, a, b, c, null);
+	}
+	
+	public void debug(String format, Object a, Object b, Object c, Object d)
+	{
+		this.log(Level.DEBUG, format, 4, a, b, c, d);
+	}
+	
+	public void info(String format)
+	{
+		this.log(Level.INFO, format, 0, null, null, null, null);
+	}
+	
+	public void info(String format, Object a)
+	{
+		this.log(Level.INFO, format, 1, a, null, null, null);
+	}
+	
+	public void info(String format, Object a, Object b)
+	{
+		this.log(Level.INFO, format, 2, a, b, null, null);
+	}
+	
+	public void info(String format, Object a, Object b, Object c)
+	{
+		this.log(Level.INFO, format, 3, a, b, c, null);
+	}
+	
+	public void info(String format, Object a, Object b, Object c, Object d)
+	{
+		this.log(Level.INFO, format, 4, a, b, c, d);
+	}
+	
+	public void warn(String format)
+	{
+		this.log(Level.WARN, format, 0, null, null, null, null);
+	}
+	
+	public void warn(String format, Object a)
+	{
+		this.log(Level.WARN, format, 1, a, null, null, null);
+	}
+	
+	public void warn(String format, Object a, Object b)
+	{
+		this.log(Level.WARN, format, 2, a, b, null, null);
+	}
+	
+	public void warn(String format, Object a, Object b, Object c)
+	{
+		this.log(Level.WARN, format, 3, a, b, c, null);
+	}
+	
+	public void warn(String format, Object a, Object b, Object c, Object d)
+	{
+		this.log(Level.WARN, format, 4, a, b, c, d);
+	}
+	
+	public void error(String format)
+	{
+		this.log(Level.ERROR, format, 0, null, null, null, null);
+	}
+	
+	public void error(String format, Object a)
+	{
+		this.log(Level.ERROR, format, 1, a, null, null, null);
+	}
+	
+	public void error(String format, Object a, Object b)
+	{
+		this.log(Level.ERROR, format, 2, a, b, null, null);
+	}
+	
+	public void error(String format, Object a, Object b, Object c)
+	{
+		this.log(Level.ERROR, format, 3, a, b, c, null);
+	}
+	
+	public void error(String format, Object a, Object b, Object c, Object d)
+	{
+		this.log(Level.ERROR, format, 4, a, b, c, d);
+	}
+	
+	private void log(Level level, String format, int argc, Object a, Object b, Object c, Object d)
+	{
+		if (this.log.isEnabled(level))
+		{
+			this.log.append(level, this.name, format, argc, a, b, c, d);
+		}
+	}
+}
@@ -0,0 +1,38 @@
+package com.adsk.miniframework.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+//
+// - Monotonic count; safe to bump from any thread
+//
+public final class Counter implements Metric
+{
+	private final AtomicLong value = new AtomicLong();
+	
+	public void inc()
+	{
+		this.value.incrementAndGet();
+	}
+	
+	public void add(long n)
+	{
+		this.value.addAndGet(n);
+	}
+	
+	public long get()
+	{
+		return this.value.get();
+	}
+	
+	@Override
+	public String type()
+	{
+		return "counter";
+	}
+	
+	@Override
+	public void write(StringBuilder out, String name, String labels)
+	{
+		MetricsRegistry.sample(out, name, labels, this.value.get());
+	}
+}
@@ -0,0 +1,31 @@
+package com.adsk.miniframework.metrics;
+
+//
+// - Last value set; the scheduler loop sets it, scrapes read it
+//
+public final class Gauge implements Metric
+{
+	private volatile double value;
+	
+	public void set(double value)
+	{
+		this.value = value;
+	}
+	
+	public double get()
+	{
+		return this.value;
+	}
+	
+	@Override
+	public String type()
+	{
+		return "gauge";
+	}
+	
+	@Override
+	public void write(StringBuilder out, String name, String labels)
+	{
+		MetricsRegistry.sample(out, name, labels, this.value);
+	}
+}
@@ -0,0 +1,130 @@
+package com.adsk.miniframework.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+//
+// - Log-linear histogram in the style of HdrHistogram: every power of two is split into
+// - 32 linear sub-buckets, so any value up to Long.MAX_VALUE is kept to within about 3% in
+// - a fixed array. Recording is a few shifts and an atomic add, no allocation.
+// - Exported as a prometheus summary: quantiles, sum and count. Values are recorded in
+// - whatever unit is convenient (nanoseconds for latencies) and multiplied by the scale on
+// - export, so latencies come out in seconds.
+//
+public final class Histogram implements Metric
+{
+	private static final int SUB_BUCKET_BITS = 5;
+	private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+	private static final int BUCKETS = (64 - SUB_BUCKET_BITS + 1) * SUB_BUCKETS;
+	
+	private static final double[] QUANTILES = {0.5, 0.9, 0.99, 0.999};
+	
+	private final double scale;
+	private final AtomicLongArray counts;
+	private final AtomicLong count;
+	private final AtomicLong sum;
+	private final AtomicLong max;
+	
+	public Histogram(double scale)
+	{
+		this.scale = scale;
+		this.counts = new AtomicLongArray(BUCKETS);
+		this.count = new AtomicLong();
+		this.sum = new AtomicLong();
+		this.max = new AtomicLong();
+	}
+	
+	//
+	// - Recorded in nanoseconds, exported in seconds
+	//
+	public static Histogram latency()
+	{
+		return new Histogram(1e-9);
+	}
+	
+	//
+	// - Negative values (a clock going backwards) count as 0
+	//
+	public void record(long value)
+	{
+		if (value < 0) value = 0;
+		
+		this.counts.incrementAndGet(index(value));
+		this.count.incrementAndGet();
+		this.sum.addAndGet(value);
+		
+		long seen = this.max.get();
+		while (value > seen && !this.max.compareAndSet(seen, value))
+		{
+			seen = this.max.get();
+		}
+	}
+	
+	public long getCount()
+	{
+		return this.count.get();
+	}
+	
+	public long getMax()
+	{
+		return this.max.get();
+	}
+	
+	//
+	// - Highest value equivalent to the one at the quantile, in recorded units; 0 when empty
+	//
+	public long getValueAtQuantile(double quantile)
+	{
+		long total = this.count.get();
+		if (total == 0) return 0;
+		
+		long rank = Math.max(1, (long) Math.ceil(quantile * total));
+		long seen = 0;
+		for (int i = 0; i < BUCKETS; i++)
+		{
+			seen += this.counts.get(i);
+			if (seen >= rank)
+			{
+				return Math.min(highest(i), this.max.get());
+			}
+		}
+		return this.max.get();
+	}
+	
+	@Override
+	public String type()
+	{
+		return "summary";
+	}
+	
+	@Override
+	public void write(StringBuilder out, String name, String labels)
+	{
+		for (double quantile : QUANTILES)
+		{
+			String withQuantile = (labels.isEmpty() ? "" : labels + ",") + "quantile=\"" + quantile + "\"";
+			MetricsRegistry.sample(out, name, withQuantile, this.getValueAtQuantile(quantile) * this.scale);
+		}
+		MetricsRegistry.sample(out, name + "_sum", labels, this.sum.get() * this.scale);
+		MetricsRegistry.sample(out, name + "_count", labels, this.count.get());
+	}
+	
+	//
+	// - Values below 64 get a bucket each; above, the top 6 bits pick the bucket
+	//
+	static int index(long value)
+	{
+		int shift = Math.max(0, 63 - Long.numberOfLeadingZeros(value) - SUB_BUCKET_BITS);
+		return shift * SUB_BUCKETS + (int) (value >>> shift);
+	}
+	
+	static long highest(int index)
+	{
+		if (index < 2 * SUB_BUCKETS) return index;
+		
+		int shift = index / SUB_BUCKETS - 1;
+		long mantissa = index - shift * SUB_BUCKETS;
+		long next = (mantissa + 1) << shift;
+		return next <= 0 ? Long.MAX_VALUE : next - 1;
+	}
+}
@@ -0,0 +1,17 @@
+package com.adsk.miniframework.metrics;
+
+//
+// - One time series (or, for histograms, a group of them) in a MetricsRegistry
+//
+public interface Metric
+{
+	//
+	// - Prometheus type of the family: counter, gauge or summary
+	//
+	String type();
+	
+	//
+	// - Append the sample lines; labels are already rendered (a="b",c="d") and may be empty
+	//
+	void write(StringBuilder out, String name, String labels);
+}
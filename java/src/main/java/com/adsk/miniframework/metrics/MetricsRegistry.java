@@ -0,0 +1,165 @@
+package com.adsk.miniframework.metrics;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+
+//
+// - Named metrics, rendered in the prometheus text format
+// - Registering takes a lock and allocates; updating a metric touches only the metric, so
+// - hot paths register once and keep the instance. Series of one family differ by labels,
+// - given as name, value pairs.
+//
+public class MetricsRegistry
+{
+	public static final String CONTENT_TYPE = "text/plain; version=0.0.4";
+	
+	private static final class Family
+	{
+		final String help;
+		final String type;
+		final LinkedHashMap<String, Metric> series;
+		
+		Family(String help, String type)
+		{
+			this.help = help;
+			this.type = type;
+			this.series = new LinkedHashMap<String, Metric>();
+		}
+	}
+	
+	private final TreeMap<String, Family> families;
+	
+	public MetricsRegistry()
+	{
+		this.families = new TreeMap<String, Family>();
+	}
+	
+	//
+	// - Adds the metric, replacing any with the same name and labels
+	//
+	public synchronized <M extends Metric> M register(String name, String help, M metric, String... labels)
+	{
+		Family family = this.families.get(name);
+		if (family == null)
+		{
+			family = new Family(help, metric.type());
+			this.families.put(name, family);
+		}
+		else if (!family.type.equals(metric.type()))
+		{
+			throw new IllegalArgumentException("Metric " + name + " is a " + family.type + ", not a " + metric.type());
+		}
+		family.series.put(labels(labels), metric);
+		return metric;
+	}
+	
+	public Counter counter(String name, String help, String... labels)
+	{
+		return this.register(name, help, new Counter(), labels);
+	}
+	
+	public Gauge gauge(String name, String help, String... labels)
+	{
+		return this.register(name, help, new Gauge(), labels);
+	}
+	
+	public Histogram latency(String name, String help, String... labels)
+	{
+		return this.register(name, help, Histogram.latency(), labels);
+	}
+	
+	public synchronized void remove(String name, String... labels)
+	{
+		Family family = this.families.get(name);
+		if (family == null) return;
+		
+		family.series.remove(labels(labels));
+		if (family.series.isEmpty())
+		{
+			this.families.remove(name);
+		}
+	}
+	
+	public synchronized String scrape()
+	{
+		StringBuilder out = new StringBuilder();
+		for (Map.Entry<String, Family> entry : this.families.entrySet())
+		{
+			Family family = entry.getValue();
+			out.append("# HELP ").append(entry.getKey()).append(' ').append(escape(family.help, false)).append('\n');
+			out.append("# TYPE ").append(entry.getKey()).append(' ').append(family.type).append('\n');
+			for (Map.Entry<String, Metric> series : family.series.entrySet())
+			{
+				series.getValue().write(out, entry.getKey(), series.getKey());
+			}
+		}
+		return out.toString();
+	}
+	
+	static void sample(StringBuilder out, String name, String labels, long value)
+	{
+		sampleName(out, name, labels).append(value).append('\n');
+	}
+	
+	static void sample(StringBuilder out, String name, String labels, double value)
+	{
+		sampleName(out, name, labels);
+		if (Double.isNaN(value))
+		{
+			out.append("NaN");
+		}
+		else if (Double.isInfinite(value))
+		{
+			out.append(value > 0 ? "+Inf" : "-Inf");
+		}
+		else
+		{
+			out.append(value);
+		}
+		out.append('\n');
+	}
+	
+	private static StringBuilder sampleName(StringBuilder out, String name, String labels)
+	{
+		out.append(name);
+		if (!labels.isEmpty())
+		{
+			out.append('{').append(labels).append('}');
+		}
+		return out.append(' ');
+	}
+	
+	private static String labels(String... labels)
+	{
+		if (labels.length % 2 != 0)
+		{
+			throw new IllegalArgumentException("Labels come in name, value pairs");
+		}
+		
+		StringBuilder out = new StringBuilder();
+		for (int i = 0; i < labels.length; i += 2)
+		{
+			if (i > 0) out.append(',');
+			out.append(labels[i]).append("=\"").append(escape(labels[i + 1], true)).append('"');
+		}
+		return out.toString();
+	}
+	
+	//
+	// - Backslashes and newlines in help text; quotes too in label values
+	//
+	private static String escape(String text, boolean quotes)
+	{
+		StringBuilder out = new StringBuilder(text.length());
+		for (int i = 0; i < text.length(); i++)
+		{
+			char c = text.charAt(i);
+			if (c == '\\') out.append("\\\\");
+			else if (c == '\n') out.append("\\n");
+			else if (c == '"' && quotes) out.append("\\\"");
+			else out.append(c);
+		}
+		return out.toString();
+	}
+}
@@ -0,0 +1,274 @@
+package com.adsk.miniframework.sim;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+
+import org.apache.mesos.*;
+import org.apache.mesos.Protos.*;
+
+//
+// - SchedulerDriver that talks to a Simulation instead of a master
+// - Calls come in on the scheduler loop and are only recorded; the simulation takes them once
+// - the loop is idle and plays the master's side, so nothing here depends on thread timing.
+//
+public class SimulatedDriver implements SchedulerDriver
+{
+	//
+	// - Offers accepted together, with the tasks launched on them
+	//
+	public static class Accept
+	{
+		public final List<OfferID> offerIds;
+		public final List<TaskInfo> tasks;
+		public final double refuseSeconds;
+		
+		Accept(Collection<OfferID> offerIds, List<TaskInfo> tasks, Filters filters)
+		{
+			this.offerIds = new ArrayList<OfferID>(offerIds);
+			this.tasks = tasks;
+			this.refuseSeconds = refuseSeconds(filters);
+		}
+	}
+	
+	public static class Decline
+	{
+		public final OfferID offerId;
+		public final double refuseSeconds;
+		
+		Decline(OfferID offerId, Filters filters)
+		{
+			this.offerId = offerId;
+			this.refuseSeconds = refuseSeconds(filters);
+		}
+	}
+	
+	//
+	// - What mesos assumes when the framework doesn't say
+	//
+	public static final double DEFAULT_REFUSE_SECONDS = 5;
+	
+	private final List<Accept> accepts;
+	private final List<Decline> declines;
+	private final List<TaskID> kills;
+	private boolean suppressed;
+	private boolean revived;
+	private long acknowledged;
+	private long reconciled;
+	private Status status;
+	
+	public SimulatedDriver()
+	{
+		this.accepts = new ArrayList<Accept>();
+		this.declines = new ArrayList<Decline>();
+		this.kills = new ArrayList<TaskID>();
+		this.status = Status.DRIVER_NOT_STARTED;
+	}
+	
+	//
+	// - Taken by the simulation; each returns what was recorded since the last call
+	//
+	public synchronized List<Accept> takeAccepts()
+	{
+		return take(this.accepts);
+	}
+	
+	public synchronized List<Decline> takeDeclines()
+	{
+		return take(this.declines);
+	}
+	
+	public synchronized List<TaskID> takeKills()
+	{
+		return take(this.kills);
+	}
+	
+	//
+	// - True once if offers were revived since the last call; a revive also clears refusals
+	//
+	public synchronized boolean takeRevived()
+	{
+		boolean revived = this.revived;
+		this.revived = false;
+		return revived;
+	}
+	
+	public synchronized boolean isSuppressed()
+	{
+		return this.suppressed;
+	}
+	
+	public synchronized long getAcknowledged()
+	{
+		return this.acknowledged;
+	}
+	
+	public synchronized long getReconciled()
+	{
+		return this.reconciled;
+	}
+	
+	@Override
+	public synchronized Status start()
+	{
+		this.status = Status.DRIVER_RUNNING;
+		return this.status;
+	}
+	
+	@Override
+	public synchronized Status stop(boolean failover)
+	{
+		this.status = Status.DRIVER_STOPPED;
+		return this.status;
+	}
+	
+	@Override
+	public Status stop()
+	{
+		return this.stop(false);
+	}
+	
+	@Override
+	public synchronized Status abort()
+	{
+		this.status = Status.DRIVER_ABORTED;
+		return this.status;
+	}
+	
+	@Override
+	public synchronized Status join()
+	{
+		return this.status;
+	}
+	
+	@Override
+	public Status run()
+	{
+		this.start();
+		return this.join();
+	}
+	
+	@Override
+	public synchronized Status requestResources(Collection<Request> requests)
+	{
+		return this.status;
+	}
+	
+	@Override
+	public Status launchTasks(Collection<OfferID> offerIds, Collection<TaskInfo> tasks, Filters filters)
+	{
+		return this.launch(offerIds, new ArrayList<TaskInfo>(tasks), filters);
+	}
+	
+	@Override
+	public Status launchTasks(Collection<OfferID> offerIds, Collection<TaskInfo> tasks)
+	{
+		return this.launch(offerIds, new ArrayList<TaskInfo>(tasks), null);
+	}
+	
+	@Override
+	public Status launchTasks(OfferID offerId, Collection<TaskInfo> tasks, Filters filters)
+	{
+		return this.launch(Collections.singletonList(offerId), new ArrayList<TaskInfo>(tasks), filters);
+	}
+	
+	@Override
+	public Status launchTasks(OfferID offerId, Collection<TaskInfo> tasks)
+	{
+		return this.launch(Collections.singletonList(offerId), new ArrayList<TaskInfo>(tasks), null);
+	}
+	
+	@Override
+	public synchronized Status killTask(TaskID taskId)
+	{
+		this.kills.add(taskId);
+		return this.status;
+	}
+	
+	//
+	// - Only launches are simulated; other operations just use up the offers
+	//
+	@Override
+	public Status acceptOffers(Collection<OfferID> offerIds, Collection<Offer.Operation> operations, Filters filters)
+	{
+		List<TaskInfo> tasks = new ArrayList<TaskInfo>();
+		for (Offer.Operation operation : operations)
+		{
+			if (operation.getType() == Offer.Operation.Type.LAUNCH)
+			{
+				tasks.addAll(operation.getLaunch().getTaskInfosList());
+			}
+		}
+		return this.launch(offerIds, tasks, filters);
+	}
+	
+	@Override
+	public synchronized Status declineOffer(OfferID offerId, Filters filters)
+	{
+		this.declines.add(new Decline(offerId, filters));
+		return this.status;
+	}
+	
+	@Override
+	public Status declineOffer(OfferID offerId)
+	{
+		return this.declineOffer(offerId, null);
+	}
+	
+	@Override
+	public synchronized Status reviveOffers()
+	{
+		this.suppressed = false;
+		this.revived = true;
+		return this.status;
+	}
+	
+	@Override
+	public synchronized Status suppressOffers()
+	{
+		this.suppressed = true;
+		return this.status;
+	}
+	
+	@Override
+	public synchronized Status acknowledgeStatusUpdate(TaskStatus status)
+	{
+		this.acknowledged++;
+		return this.status;
+	}
+	
+	@Override
+	public synchronized Status sendFrameworkMessage(ExecutorID executorId, SlaveID slaveId, byte[] data)
+	{
+		return this.status;
+	}
+	
+	//
+	// - The simulation never loses updates, so there's nothing to answer
+	//
+	@Override
+	public synchronized Status reconcileTasks(Collection<TaskStatus> statuses)
+	{
+		this.reconciled += statuses.size();
+		return this.status;
+	}
+	
+	private synchronized Status launch(Collection<OfferID> offerIds, List<TaskInfo> tasks, Filters filters)
+	{
+		this.accepts.add(new Accept(offerIds, tasks, filters));
+		return this.status;
+	}
+	
+	private static <T> List<T> take(List<T> list)
+	{
+		List<T> taken = new ArrayList<T>(list);
+		list.clear();
+		return taken;
+	}
+	
+	private static double refuseSeconds(Filters filters)
+	{
+		return filters != null && filters.hasRefuseSeconds() ? filters.getRefuseSeconds() : DEFAULT_REFUSE_SECONDS;
+	}
+}
@@ -0,0 +1,633 @@
+package com.adsk.miniframework.sim;
+
+import com.adsk.miniframework.Application;
+import com.adsk.miniframework.ExecutorSpec;
+import com.adsk.miniframework.MiniScheduler;
+import com.adsk.miniframework.ResourceVector;
+import com.adsk.miniframework.allocation.AllocationPolicies;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.Random;
+
+import org.apache.mesos.Protos.*;
+
+//
+// - Deterministic simulation of a mesos cluster around a real MiniScheduler
+// - Time is virtual: offers go out in rounds, launched tasks report RUNNING after a start delay
+// - and may later be LOST or FINISHED, everything drawn from one seeded Random. After each
+// - callback the simulation waits for the scheduler loop to go idle before it reads what the
+// - scheduler did, so the same seed replays the same run.
+// - Allocation latency is the one real-time measurement: how long the scheduler takes to act
+// - on a round of offers.
+//
+public class Simulation
+{
+	public static class Config
+	{
+		public long seed = 1;
+		
+		//
+		// - Synthetic cluster; agents are spread over racks by index
+		//
+		public int agents = 100;
+		public double agentCpu = 8;
+		public double agentMem = 32768;
+		public int racks = 10;
+		
+		//
+		// - Demand: every app has the same executors
+		//
+		public int apps = 10;
+		public int executorsPerApp = 2;
+		public int instances = 20;
+		public double taskCpu = 1;
+		public double taskMem = 1024;
+		public String policy = "naive";
+		
+		//
+		// - Master and agent behaviour, virtual milliseconds
+		//
+		public long offerIntervalMillis = 1000;
+		public long minStartDelayMillis = 500;
+		public long maxStartDelayMillis = 3000;
+		public long killDelayMillis = 500;
+		public double lossProbability = 0;
+		public long taskDurationMillis = 0;
+		
+		//
+		// - Stop once everything runs, or at the horizon either way
+		//
+		public boolean stopWhenLaunched = true;
+		public long horizonMillis = 10 * 60 * 1000;
+		
+		public int getTarget()
+		{
+			return this.apps * this.executorsPerApp * this.instances;
+		}
+	}
+	
+	public static class Report
+	{
+		public long virtualMillis;
+		public long wallMillis;
+		
+		//
+		// - -1 when not every instance was running at once before the end
+		//
+		public long timeToFullLaunchMillis = -1;
+		public int running;
+		public int target;
+		
+		public long offerRounds;
+		public long offers;
+		public long offersAccepted;
+		public long offersDeclined;
+		public long launched;
+		public long lost;
+		public long finished;
+		public long killed;
+		
+		//
+		// - Allocated over offered capacity, averaged over virtual time and at the end
+		//
+		public double averageCpuUtilisation;
+		public double averageMemUtilisation;
+		public double finalCpuUtilisation;
+		public double finalMemUtilisation;
+		
+		//
+		// - Per offer round, microseconds
+		//
+		public long allocationP50Micros;
+		public long allocationP99Micros;
+		public long allocationMaxMicros;
+		
+		//
+		// - Everything that doesn't depend on how fast this machine is
+		//
+		public String outcome()
+		{
+			return "fullLaunch=" + this.timeToFullLaunchMillis + "ms running=" + this.running + "/" + this.target
+					+ " rounds=" + this.offerRounds + " offers=" + this.offers + " accepted=" + this.offersAccepted
+					+ " declined=" + this.offersDeclined + " launched=" + this.launched + " lost=" + this.lost
+					+ " finished=" + this.finished + " killed=" + this.killed
+					+ String.format(" cpu=%.4f/%.4f mem=%.4f/%.4f", this.averageCpuUtilisation, this.finalCpuUtilisation,
+									this.averageMemUtilisation, this.finalMemUtilisation);
+		}
+		
+		@Override
+		public String toString()
+		{
+			return "virtual " + this.virtualMillis + "ms, wall " + this.wallMillis + "ms\n"
+					+ "time to full launch: " + (this.timeToFullLaunchMillis < 0 ? "not reached" : this.timeToFullLaunchMillis + "ms")
+					+ " (" + this.running + "/" + this.target + " running)\n"
+					+ "offers: " + this.offers + " in " + this.offerRounds + " rounds, " + this.offersAccepted + " accepted, "
+					+ this.offersDeclined + " declined\n"
+					+ "tasks: " + this.launched + " launched, " + this.lost + " lost, " + this.finished + " finished, "
+					+ this.killed + " killed\n"
+					+ String.format("utilisation: cpu %.1f%% avg, %.1f%% final; mem %.1f%% avg, %.1f%% final\n",
+									100 * this.averageCpuUtilisation, 100 * this.finalCpuUtilisation,
+									100 * this.averageMemUtilisation, 100 * this.finalMemUtilisation)
+					+ "allocation latency per round: p50 " + this.allocationP50Micros + "us, p99 " + this.allocationP99Micros
+					+ "us, max " + this.allocationMaxMicros + "us";
+		}
+	}
+	
+	private static class Agent
+	{
+		final SlaveID id;
+		final String hostname;
+		final String rack;
+		double freeCpu;
+		double freeMem;
+		
+		//
+		// - Offer of this agent the scheduler still holds, and when it may get the next one
+		//
+		OfferID offered;
+		long refusedUntil;
+		
+		Agent(int index, String rack, double cpu, double mem)
+		{
+			this.id = SlaveID.newBuilder().setValue("agent-" + index).build();
+			this.hostname = "host-" + index;
+			this.rack = rack;
+			this.freeCpu = cpu;
+			this.freeMem = mem;
+		}
+	}
+	
+	private static class Task
+	{
+		final TaskInfo info;
+		final Agent agent;
+		final double cpu;
+		final double mem;
+		boolean running;
+		boolean stopped;
+		
+		Task(TaskInfo info, Agent agent)
+		{
+			ResourceVector resources = ResourceVector.fromResources(info.getResourcesList());
+			this.info = info;
+			this.agent = agent;
+			this.cpu = resources.getCpu();
+			this.mem = resources.getMem();
+		}
+	}
+	
+	//
+	// - A status update due at some virtual time; ties go in the order they were scheduled
+	//
+	private static class Update implements Comparable<Update>
+	{
+		final long time;
+		final long seq;
+		final Task task;
+		final TaskState state;
+		
+		Update(long time, long seq, Task task, TaskState state)
+		{
+			this.time = time;
+			this.seq = seq;
+			this.task = task;
+			this.state = state;
+		}
+		
+		@Override
+		public int compareTo(Update other)
+		{
+			if (this.time != other.time) return Long.compare(this.time, other.time);
+			return Long.compare(this.seq, other.seq);
+		}
+	}
+	
+	private final Config config;
+	private final Random random;
+	private final SimulatedDriver driver;
+	private final MiniScheduler scheduler;
+	private final List<Agent> agents;
+	private final HashMap<String, Agent> bySlave;
+	private final LinkedHashMap<String, Agent> byOffer;
+	private final HashMap<String, Task> tasks;
+	private final PriorityQueue<Update> updates;
+	private final Report report;
+	private final List<Long> latencies;
+	private long seq;
+	private long offerSeq;
+	private long now;
+	private double totalCpu;
+	private double totalMem;
+	private double usedCpu;
+	private double usedMem;
+	private double cpuTime;
+	private double memTime;
+	
+	public Simulation(Config config) throws Exception
+	{
+		this.config = config;
+		this.random = new Random(config.seed);
+		this.driver = new SimulatedDriver();
+		this.agents = new ArrayList<Agent>();
+		this.bySlave = new HashMap<String, Agent>();
+		this.byOffer = new LinkedHashMap<String, Agent>();
+		this.tasks = new HashMap<String, Task>();
+		this.updates = new PriorityQueue<Update>();
+		this.report = new Report();
+		this.latencies = new ArrayList<Long>();
+		
+		for (int i = 0; i < config.agents; i++)
+		{
+			Agent agent = new Agent(i, "rack-" + (i % Math.max(1, config.racks)), config.agentCpu, config.agentMem);
+			this.agents.add(agent);
+			this.bySlave.put(agent.id.getValue(), agent);
+			this.totalCpu += config.agentCpu;
+			this.totalMem += config.agentMem;
+		}
+		
+		//
+		// - Quota out of the way; the instance limit is what caps each executor
+		//
+		HashMap<String, Application> apps = new HashMap<String, Application>();
+		for (int a = 0; a < config.apps; a++)
+		{
+			Application app = new Application("app-" + a);
+			for (int e = 0; e < config.executorsPerApp; e++)
+			{
+				app.putExecutorSpec(new ExecutorSpec("app-" + a + "-executor-" + e, "simulated", "true", false,
+													config.taskCpu, config.taskMem, config.instances, null));
+			}
+			apps.put(app.name, app);
+		}
+		this.scheduler = new MiniScheduler(false, apps, config.instances, Double.MAX_VALUE, Double.MAX_VALUE);
+		this.scheduler.setAllocationPolicy(AllocationPolicies.forName(config.policy));
+		
+		//
+		// - Apps run until the simulation ends
+		//
+		this.scheduler.setTerminationCondition(app -> false);
+		this.report.target = config.getTarget();
+	}
+	
+	public Report run() throws InterruptedException
+	{
+		long start = System.currentTimeMillis();
+		this.driver.start();
+		this.scheduler.registered(this.driver, FrameworkID.newBuilder().setValue("simulation").build(),
+								MasterInfo.newBuilder().setId("simulation").setIp(0).setPort(5050).build());
+		this.scheduler.awaitIdle();
+		this.takeActions();
+		
+		long nextRound = 0;
+		while (true)
+		{
+			Update due = this.updates.peek();
+			long next = due != null ? Math.min(nextRound, due.time) : nextRound;
+			if (next > this.config.horizonMillis)
+			{
+				this.advance(this.config.horizonMillis);
+				break;
+			}
+			this.advance(next);
+			
+			if (due != null && due.time == this.now)
+			{
+				this.deliverUpdates();
+			}
+			if (nextRound == this.now)
+			{
+				this.offerRound();
+				nextRound += this.config.offerIntervalMillis;
+			}
+			
+			if (this.report.running == this.report.target && this.report.timeToFullLaunchMillis < 0)
+			{
+				this.report.timeToFullLaunchMillis = this.now;
+				if (this.config.stopWhenLaunched)
+				{
+					break;
+				}
+			}
+		}
+		
+		this.driver.stop();
+		this.report.virtualMillis = this.now;
+		this.report.wallMillis = System.currentTimeMillis() - start;
+		this.report.averageCpuUtilisation = this.now > 0 ? this.cpuTime / this.now : this.usedCpu / this.totalCpu;
+		this.report.averageMemUtilisation = this.now > 0 ? this.memTime / this.now : this.usedMem / this.totalMem;
+		this.report.finalCpuUtilisation = this.usedCpu / this.totalCpu;
+		this.report.finalMemUtilisation = this.usedMem / this.totalMem;
+		
+		Long[] sorted = this.latencies.toArray(new Long[0]);
+		Arrays.sort(sorted);
+		if (sorted.length > 0)
+		{
+			this.report.allocationP50Micros = sorted[(sorted.length - 1) / 2] / 1000;
+			this.report.allocationP99Micros = sorted[(int) Math.ceil(0.99 * sorted.length) - 1] / 1000;
+			this.report.allocationMaxMicros = sorted[sorted.length - 1] / 1000;
+		}
+		return this.report;
+	}
+	
+	public MiniScheduler getScheduler()
+	{
+		return this.scheduler;
+	}
+	
+	public SimulatedDriver getDriver()
+	{
+		return this.driver;
+	}
+	
+	//
+	// - Move the clock, integrating utilisation over the time that passed
+	//
+	private void advance(long time)
+	{
+		long elapsed = time - this.now;
+		if (elapsed > 0)
+		{
+			this.cpuTime += elapsed * this.usedCpu / this.totalCpu;
+			this.memTime += elapsed * this.usedMem / this.totalMem;
+			this.now = time;
+		}
+	}
+	
+	//
+	// - Every agent with something free and no refusal in force gets one offer
+	//
+	private void offerRound()
+	{
+		if (this.driver.takeRevived())
+		{
+			for (Agent agent : this.agents)
+			{
+				agent.refusedUntil = 0;
+			}
+		}
+		if (this.driver.isSuppressed())
+		{
+			return;
+		}
+		
+		List<Offer> offers = new ArrayList<Offer>();
+		for (Agent agent : this.agents)
+		{
+			if (agent.offered != null || agent.refusedUntil > this.now || agent.freeCpu <= 0 || agent.freeMem <= 0)
+			{
+				continue;
+			}
+			
+			agent.offered = OfferID.newBuilder().setValue("offer-" + this.offerSeq++).build();
+			this.byOffer.put(agent.offered.getValue(), agent);
+			offers.add(Offer.newBuilder()
+						.setId(agent.offered)
+						.setFrameworkId(FrameworkID.newBuilder().setValue("simulation"))
+						.setSlaveId(agent.id)
+						.setHostname(agent.hostname)
+						.addAllResources(ResourceVector.of(agent.freeCpu, agent.freeMem).toResources())
+						.addAttributes(Attribute.newBuilder()
+										.setName("rack")
+										.setType(Value.Type.TEXT)
+										.setText(Value.Text.newBuilder().setValue(agent.rack)))
+						.build());
+		}
+		if (offers.isEmpty())
+		{
+			return;
+		}
+		
+		long start = System.nanoTime();
+		this.scheduler.resourceOffers(this.driver, offers);
+		this.awaitScheduler();
+		this.latencies.add(System.nanoTime() - start);
+		
+		this.report.offerRounds++;
+		this.report.offers += offers.size();
+		this.takeActions();
+	}
+	
+	//
+	// - Everything due now goes to the scheduler back to back, like a burst from the driver
+	//
+	private void deliverUpdates()
+	{
+		boolean delivered = false;
+		while (!this.updates.isEmpty() && this.updates.peek().time == this.now)
+		{
+			Update update = this.updates.poll();
+			Task task = update.task;
+			if (task.stopped || (update.state == TaskState.TASK_RUNNING && task.running))
+			{
+				continue;
+			}
+			
+			if (update.state == TaskState.TASK_RUNNING)
+			{
+				task.running = true;
+				this.report.running++;
+				this.scheduleEnd(task);
+			}
+			else
+			{
+				this.stop(task, update.state);
+			}
+			
+			this.scheduler.statusUpdate(this.driver, TaskStatus.newBuilder()
+											.setTaskId(task.info.getTaskId())
+											.setExecutorId(task.info.getExecutor().getExecutorId())
+											.setSlaveId(task.agent.id)
+											.setState(update.state)
+											.build());
+			delivered = true;
+		}
+		
+		if (delivered)
+		{
+			this.awaitScheduler();
+			this.takeActions();
+		}
+	}
+	
+	//
+	// - Play the master's side of whatever the scheduler just did
+	//
+	private void takeActions()
+	{
+		for (SimulatedDriver.Accept accept : this.driver.takeAccepts())
+		{
+			for (OfferID offerId : accept.offerIds)
+			{
+				if (this.release(offerId, accept.refuseSeconds) != null)
+				{
+					this.report.offersAccepted++;
+				}
+			}
+			
+			for (TaskInfo info : accept.tasks)
+			{
+				Agent target = this.bySlave.get(info.getSlaveId().getValue());
+				if (target == null)
+				{
+					continue;
+				}
+				
+				Task task = new Task(info, target);
+				target.freeCpu -= task.cpu;
+				target.freeMem -= task.mem;
+				this.usedCpu += task.cpu;
+				this.usedMem += task.mem;
+				this.tasks.put(info.getTaskId().getValue(), task);
+				this.report.launched++;
+				
+				long delay = this.config.minStartDelayMillis;
+				if (this.config.maxStartDelayMillis > delay)
+				{
+					delay += (long) (this.random.nextDouble() * (this.config.maxStartDelayMillis - delay));
+				}
+				this.schedule(this.now + delay, task, TaskState.TASK_RUNNING);
+			}
+		}
+		
+		for (SimulatedDriver.Decline decline : this.driver.takeDeclines())
+		{
+			if (this.release(decline.offerId, decline.refuseSeconds) != null)
+			{
+				this.report.offersDeclined++;
+			}
+		}
+		
+		for (TaskID taskId : this.driver.takeKills())
+		{
+			Task task = this.tasks.get(taskId.getValue());
+			if (task != null && !task.stopped)
+			{
+				this.schedule(this.now + this.config.killDelayMillis, task, TaskState.TASK_KILLED);
+			}
+		}
+	}
+	
+	//
+	// - The offer is used up; its agent can't be offered again until the refusal runs out
+	//
+	private Agent release(OfferID offerId, double refuseSeconds)
+	{
+		Agent agent = this.byOffer.remove(offerId.getValue());
+		if (agent != null)
+		{
+			agent.offered = null;
+			agent.refusedUntil = this.now + (long) (refuseSeconds * 1000);
+		}
+		return agent;
+	}
+	
+	//
+	// - A running task is either lost somewhere in its lifetime or finishes at the end of it
+	//
+	private void scheduleEnd(Task task)
+	{
+		long duration = this.config.taskDurationMillis > 0 ? this.config.taskDurationMillis : this.config.horizonMillis;
+		if (this.random.nextDouble() < this.config.lossProbability)
+		{
+			this.schedule(this.now + 1 + (long) (this.random.nextDouble() * duration), task, TaskState.TASK_LOST);
+		}
+		else if (this.config.taskDurationMillis > 0)
+		{
+			this.schedule(this.now + duration, task, TaskState.TASK_FINISHED);
+		}
+	}
+	
+	private void stop(Task task, TaskState state)
+	{
+		task.stopped = true;
+		if (task.running)
+		{
+			this.report.running--;
+		}
+		task.agent.freeCpu += task.cpu;
+		task.agent.freeMem += task.mem;
+		this.usedCpu -= task.cpu;
+		this.usedMem -= task.mem;
+		this.tasks.remove(task.info.getTaskId().getValue());
+		
+		switch (state)
+		{
+		case TASK_LOST:
+			this.report.lost++;
+			break;
+		case TASK_FINISHED:
+			this.report.finished++;
+			break;
+		default:
+			this.report.killed++;
+			break;
+		}
+	}
+	
+	private void schedule(long time, Task task, TaskState state)
+	{
+		this.updates.add(new Update(time, this.seq++, task, state));
+	}
+	
+	private void awaitScheduler()
+	{
+		try
+		{
+			this.scheduler.awaitIdle();
+		}
+		catch (InterruptedException e)
+		{
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException("Interrupted waiting for the scheduler", e);
+		}
+	}
+	
+	//
+	// - java -cp ... com.adsk.miniframework.sim.Simulation agents=500 apps=20 policy=drf seed=7
+	//
+	public static void main(String[] args) throws Exception
+	{
+		Config config = new Config();
+		for (String arg : args)
+		{
+			int eq = arg.indexOf('=');
+			if (eq < 0)
+			{
+				throw new IllegalArgumentException("Expected key=value, got " + arg);
+			}
+			String key = arg.substring(0, eq);
+			String value = arg.substring(eq + 1);
+			switch (key)
+			{
+			case "seed": config.seed = Long.parseLong(value); break;
+			case "agents": config.agents = Integer.parseInt(value); break;
+			case "agentCpu": config.agentCpu = Double.parseDouble(value); break;
+			case "agentMem": config.agentMem = Double.parseDouble(value); break;
+			case "racks": config.racks = Integer.parseInt(value); break;
+			case "apps": config.apps = Integer.parseInt(value); break;
+			case "executors": config.executorsPerApp = Integer.parseInt(value); break;
+			case "instances": config.instances = Integer.parseInt(value); break;
+			case "taskCpu": config.taskCpu = Double.parseDouble(value); break;
+			case "taskMem": config.taskMem = Double.parseDouble(value); break;
+			case "policy": config.policy = value; break;
+			case "offerInterval": config.offerIntervalMillis = Long.parseLong(value); break;
+			case "minStartDelay": config.minStartDelayMillis = Long.parseLong(value); break;
+			case "maxStartDelay": config.maxStartDelayMillis = Long.parseLong(value); break;
+			case "killDelay": config.killDelayMillis = Long.parseLong(value); break;
+			case "lossProbability": config.lossProbability = Double.parseDouble(value); break;
+			case "taskDuration": config.taskDurationMillis = Long.parseLong(value); break;
+			case "stopWhenLaunched": config.stopWhenLaunched = Boolean.parseBoolean(value); break;
+			case "horizon": config.horizonMillis = Long.parseLong(value); break;
+			default:
+				throw new IllegalArgumentException("Unknown simulation setting " + key);
+			}
+		}
+		
+		System.out.println(new Simulation(config).run());
+	}
+}
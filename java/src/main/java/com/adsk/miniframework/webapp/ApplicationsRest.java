@@ -1,21 +1,25 @@
 package com.adsk.miniframework.webapp;
 
 import com.adsk.miniframework.MiniScheduler;
-
-import java.util.List;
+import com.adsk.miniframework.SchedulerState;
 
 import javax.ws.rs.GET;
 import javax.ws.rs.Path;
 import javax.ws.rs.PathParam;
-import javax.ws.rs.Produces;
 import javax.ws.rs.core.Context;
 import javax.ws.rs.core.Response;
 
 import com.fasterxml.jackson.databind.JsonNode;
 
+//
+// - Served from the scheduler's latest published snapshot; no locks and no reads of live state.
+// - Each response says which snapshot version it came from.
+//
 @Path("/apps")
 public class ApplicationsRest
 {
+	public static final String VERSION_HEADER = "X-State-Version";
+	
 	private final MiniScheduler scheduler;
 	
 	public ApplicationsRest(@Context MiniScheduler scheduler)
@@ -27,14 +31,20 @@ public class ApplicationsRest
 	@Path("/")
 	public Response getApps()
 	{
-		return Response.status(200).entity(this.scheduler.getRegisteredAppNames()).build();
+		SchedulerState.Snapshot snapshot = this.scheduler.getSnapshot();
+		return Response.status(200).entity(snapshot.getAppNames()).header(VERSION_HEADER, snapshot.getVersion()).build();
 	}
 	
 	@GET
 	@Path("/{id}")
 	public Response getApp(@PathParam("id") String appName)
 	{
-		JsonNode json = this.scheduler.getRegisteredApp(appName);
-		return Response.status(200).entity(json).build();
+		SchedulerState.Snapshot snapshot = this.scheduler.getSnapshot();
+		JsonNode json = snapshot.getApp(appName);
+		if (json == null)
+		{
+			return Response.status(404).header(VERSION_HEADER, snapshot.getVersion()).build();
+		}
+		return Response.status(200).entity(json).header(VERSION_HEADER, snapshot.getVersion()).build();
 	}
 }
@@ -0,0 +1,30 @@
+package com.adsk.miniframework.webapp;
+
+import com.adsk.miniframework.MiniScheduler;
+import com.adsk.miniframework.metrics.MetricsRegistry;
+
+import javax.ws.rs.GET;
+import javax.ws.rs.Path;
+import javax.ws.rs.core.Context;
+import javax.ws.rs.core.Response;
+
+//
+// - Scheduler metrics in the prometheus text format, for scraping
+//
+@Path("/metrics")
+public class MetricsRest
+{
+	private final MiniScheduler scheduler;
+	
+	public MetricsRest(@Context MiniScheduler scheduler)
+	{
+		this.scheduler = scheduler;
+	}
+	
+	@GET
+	public Response getMetrics()
+	{
+		String body = this.scheduler.getMetrics().getRegistry().scrape();
+		return Response.status(200).entity(body).type(MetricsRegistry.CONTENT_TYPE).build();
+	}
+}
@@ -33,8 +33,17 @@ public class Serializers
 	        
 	        jgen.writeNumberField("reqCpu", e.getRequiredCpu());
 	        jgen.writeNumberField("reqMem", e.getRequiredMem());
+	        jgen.writeNumberField("reqDisk", e.getRequired().getDisk());
+	        jgen.writeNumberField("reqPorts", e.getRequired().getRangeCount(ResourceVector.PORTS));
 	        jgen.writeNumberField("instances", e.getRequiredInstances());
 	        
+	        List<String> constraints = new ArrayList<String>();
+	        for (Constraint constraint : e.getConstraints())
+	        {
+	        	constraints.add(constraint.toString());
+	        }
+	        jgen.writeObjectField("constraints", constraints);
+	        
 	        //
 	        // - These are here because TaskID will cause a self-referencing cycle (thanks mesos protos)
 	        //
@@ -51,6 +60,10 @@ public class Serializers
 	        	tasks.add(task.getValue());
 	        }
 	        jgen.writeObjectField("tasksRunning", tasks);
+	        
+	        jgen.writeNumberField("tasksFinished", e.getTaskCount(TaskTable.State.FINISHED));
+	        jgen.writeNumberField("tasksFailed", e.getTaskCount(TaskTable.State.FAILED));
+	        jgen.writeNumberField("tasksLost", e.getTaskCount(TaskTable.State.LOST));
 
 	        jgen.writeEndObject();
 	    }
@@ -70,6 +83,7 @@ public class Serializers
 	    	jgen.writeNumberField("allocCpu", a.getCpuUsed());
 	    	jgen.writeNumberField("allocMem", a.getMemUsed());
 	    	jgen.writeBooleanField("appTerminated", a.getAppTerminated());
+	    	jgen.writeNumberField("weight", a.getWeight());
 	    	jgen.writeObjectField("executors", a.getExecutors());
 	        jgen.writeEndObject();
 	    }
@@ -1,6 +1,6 @@
 package com.adsk.miniframework.webapp;
 
-import java.util.Collections;
+import java.util.Arrays;
 import java.util.HashMap;
 
 import com.adsk.miniframework.MiniScheduler;
@@ -30,7 +30,7 @@ public class WebServer
 		//
 		// - Manually register handlers as singletons
 		//
-		deployment.setResourceClasses(Collections.singletonList(ApplicationsRest.class.getName()));
+		deployment.setResourceClasses(Arrays.asList(ApplicationsRest.class.getName(), MetricsRest.class.getName()));
 		
 		//
 		// - Register the running scheduler with the server
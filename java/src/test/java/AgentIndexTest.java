@@ -0,0 +1,132 @@
+import com.adsk.miniframework.AgentIndex;
+import com.adsk.miniframework.Constraint;
+import com.adsk.miniframework.ExecutorSpec;
+import com.adsk.miniframework.MiniScheduler;
+
+import static org.junit.Assert.*;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import org.apache.mesos.Protos.*;
+
+public class AgentIndexTest
+{
+	private AgentIndex index;
+	private ExecutorSpec executor;
+	
+	private Offer makeOffer(String slave, String hostname, String rack)
+	{
+		return Offer.newBuilder()
+				.setId(OfferID.newBuilder().setValue(slave + "-offer"))
+				.setFrameworkId(FrameworkID.newBuilder().setValue("framework"))
+				.setSlaveId(SlaveID.newBuilder().setValue(slave))
+				.setHostname(hostname)
+				.addAttributes(Attribute.newBuilder()
+						.setName("rack")
+						.setType(Value.Type.TEXT)
+						.setText(Value.Text.newBuilder().setValue(rack)))
+				.build();
+	}
+	
+	private TaskID task(String name)
+	{
+		return TaskID.newBuilder().setValue(name).build();
+	}
+	
+	@Before
+	public void setUp()
+	{
+		ExecutorInfo executorInfo = ExecutorInfo.newBuilder()
+                .setExecutorId(ExecutorID.newBuilder().setValue("executor"))
+                .setCommand(CommandInfo.newBuilder().setValue("echo"))
+                .setName("executor")
+                .setSource("java")
+                .build();
+		this.executor = new ExecutorSpec(executorInfo, 1, 32, 4, MiniScheduler.getObjectMapper().createObjectNode());
+		
+		this.index = new AgentIndex();
+		this.index.observe(makeOffer("s1", "host1", "rack1"));
+		this.index.observe(makeOffer("s2", "host2", "rack1"));
+		this.index.observe(makeOffer("s3", "host3", "rack2"));
+	}
+	
+	@Test
+	public void testParse()
+	{
+		assertEquals("rack:MAX_PER:2", Constraint.parse("rack:max_per:2").toString());
+		assertEquals("hostname:UNIQUE", Constraint.parse("hostname:UNIQUE").toString());
+		assertTrue(Constraint.parse("rack:LIKE:rack[12]").matches("rack2"));
+		assertFalse(Constraint.parse("rack:EQUALS:rack1").matches("rack2"));
+	}
+	
+	@Test(expected = IllegalArgumentException.class)
+	public void testParseMissingValue()
+	{
+		Constraint.parse("rack:MAX_PER");
+	}
+	
+	@Test
+	public void testAttributes()
+	{
+		assertEquals("host2", this.index.getValue("s2", Constraint.HOSTNAME));
+		assertEquals("rack2", this.index.getValue("s3", "rack"));
+		assertEquals(2, this.index.getValues("rack").size());
+		
+		this.index.forgetSlave("s3");
+		assertNull(this.index.getValue("s3", "rack"));
+		assertEquals(1, this.index.getValues("rack").size());
+	}
+	
+	@Test
+	public void testUniqueHostname()
+	{
+		this.executor.addConstraint(Constraint.unique(Constraint.HOSTNAME));
+		assertTrue(this.index.allows(this.executor, "s1", AgentIndex.NONE));
+		
+		this.index.taskLaunched(this.executor, task("t1"), "s1");
+		assertFalse(this.index.allows(this.executor, "s1", AgentIndex.NONE));
+		assertTrue(this.index.allows(this.executor, "s2", AgentIndex.NONE));
+		
+		this.index.taskStopped(task("t1"));
+		assertTrue(this.index.allows(this.executor, "s1", AgentIndex.NONE));
+	}
+	
+	@Test
+	public void testMaxPerRack()
+	{
+		this.executor.addConstraint(Constraint.maxPer("rack", 2));
+		this.index.taskLaunched(this.executor, task("t1"), "s1");
+		assertTrue(this.index.allows(this.executor, "s2", AgentIndex.NONE));
+		
+		this.index.taskLaunched(this.executor, task("t2"), "s2");
+		assertFalse(this.index.allows(this.executor, "s1", AgentIndex.NONE));
+		assertTrue(this.index.allows(this.executor, "s3", AgentIndex.NONE));
+		
+		//
+		// - Extra placements from the current round count too
+		//
+		AgentIndex.Counts extra = (executor, attribute, value) -> "rack2".equals(value) ? 2 : 0;
+		assertFalse(this.index.allows(this.executor, "s3", extra));
+	}
+	
+	@Test
+	public void testGroupBySpreads()
+	{
+		this.executor.addConstraint(Constraint.groupBy("rack"));
+		this.index.taskLaunched(this.executor, task("t1"), "s1");
+		assertFalse(this.index.allows(this.executor, "s2", AgentIndex.NONE));
+		assertTrue(this.index.allows(this.executor, "s3", AgentIndex.NONE));
+		
+		this.index.taskLaunched(this.executor, task("t2"), "s3");
+		assertTrue(this.index.allows(this.executor, "s2", AgentIndex.NONE));
+	}
+	
+	@Test
+	public void testMissingAttributeNeverMatches()
+	{
+		this.executor.addConstraint(Constraint.equalTo("zone", "a"));
+		assertFalse(this.index.allows(this.executor, "s1", AgentIndex.NONE));
+		assertFalse(this.index.allows(this.executor, "unknown", AgentIndex.NONE));
+	}
+}
@@ -192,4 +192,32 @@ public class ApplicationTest
 		
 		assertTrue(this.spec.getAppTerminated());
 	}
+	
+	@Test
+	public void testUsageCounters() throws Exception
+	{
+		//
+		// - Counters follow the launched -> running -> stopped transitions
+		//
+		String executor = this.executorInfo.getExecutorId().getValue();
+		this.spec.putLaunchedTask(executor, this.task.getTaskId());
+		assertEquals(1, this.spec.getAllocInstances());
+		assertEquals(0.0, this.spec.getCpuUsed(), this.doubleDelta);
+		
+		this.spec.putRunningTask(executor, this.task.getTaskId());
+		assertEquals(this.cpu, this.spec.getCpuUsed(), this.doubleDelta);
+		assertEquals(this.mem, this.spec.getMemUsed(), this.doubleDelta);
+		
+		this.spec.putStoppedTask(executor, this.task.getTaskId());
+		assertEquals(0, this.spec.getAllocInstances());
+		assertEquals(0.0, this.spec.getCpuUsed(), this.doubleDelta);
+		assertEquals(0.0, this.spec.getMemUsed(), this.doubleDelta);
+		
+		//
+		// - Stopping an unknown task leaves the counters alone
+		//
+		this.spec.putStoppedTask(executor, this.task.getTaskId());
+		assertEquals(0, this.spec.getAllocInstances());
+		assertEquals(0, this.spec.getNumRunning());
+	}
 }
@@ -0,0 +1,163 @@
+import com.adsk.miniframework.logging.AsyncLog;
+import com.adsk.miniframework.logging.Level;
+import com.adsk.miniframework.logging.Logger;
+
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class AsyncLogTest
+{
+	private ByteArrayOutputStream out;
+	private ByteArrayOutputStream err;
+	private AsyncLog log;
+	
+	@Before
+	public void setUp()
+	{
+		this.out = new ByteArrayOutputStream();
+		this.err = new ByteArrayOutputStream();
+		this.log = new AsyncLog(16, new PrintStream(this.out, true), new PrintStream(this.err, true));
+	}
+	
+	@After
+	public void tearDown()
+	{
+		this.log.close();
+	}
+	
+	@Test
+	public void testFormatsOnTheWriter() throws Exception
+	{
+		Logger logger = Logger.get("Test", this.log);
+		logger.info("Launching task {} on slave {}", "t1", "s1");
+		logger.info("Only {} placeholder", "one", "extra");
+		logger.info("No {} args");
+		this.log.flush();
+		
+		String[] lines = this.out.toString("UTF-8").split("\n");
+		assertEquals(3, lines.length);
+		assertTrue(lines[0], lines[0].endsWith(" INFO  [main] Test - Launching task t1 on slave s1"));
+		assertTrue(lines[1], lines[1].endsWith("Test - Only one placeholder"));
+		assertTrue(lines[2], lines[2].endsWith("Test - No {} args"));
+	}
+	
+	@Test
+	public void testLevels() throws Exception
+	{
+		Logger logger = Logger.get("Test", this.log);
+		logger.debug("hidden {}", "debug");
+		assertFalse(logger.isDebugEnabled());
+		
+		this.log.setLevel(Level.DEBUG);
+		logger.debug("shown {}", "debug");
+		logger.warn("warned");
+		logger.error("failed", new IllegalStateException("boom"));
+		this.log.flush();
+		
+		String out = this.out.toString("UTF-8");
+		String err = this.err.toString("UTF-8");
+		assertFalse(out.contains("hidden"));
+		assertTrue(out.contains("DEBUG [main] Test - shown debug"));
+		assertTrue(err.contains("WARN  [main] Test - warned"));
+		assertTrue(err.contains("ERROR [main] Test - failed\njava.lang.IllegalStateException: boom"));
+	}
+	
+	@Test
+	public void testManyThreadsNothingLostOrDuplicated() throws Exception
+	{
+		final AsyncLog big = new AsyncLog(1 << 16, new PrintStream(this.out, true), new PrintStream(this.err, true));
+		List<Thread> threads = new ArrayList<Thread>();
+		for (int t = 0; t < 4; t++)
+		{
+			final String name = "t" + t;
+			threads.add(new Thread(() -> {
+				Logger logger = Logger.get(name, big);
+				for (int i = 0; i < 10000; i++)
+				{
+					logger.info("{}", i);
+				}
+			}));
+		}
+		for (Thread thread : threads) thread.start();
+		for (Thread thread : threads) thread.join();
+		big.flush();
+		big.close();
+		
+		String[] lines = this.out.toString("UTF-8").split("\n");
+		assertEquals(40000 - big.getDropped(), lines.length);
+		
+		HashSet<String> distinct = new HashSet<String>();
+		for (String line : lines)
+		{
+			distinct.add(line.substring(line.indexOf("] ") + 2));
+		}
+		assertEquals(lines.length, distinct.size());
+		assertEquals("", this.err.toString("UTF-8").replaceAll(".*dropped.*\n", ""));
+	}
+	
+	@Test
+	public void testFullRingDrops() throws Exception
+	{
+		Logger logger = Logger.get("Test", this.log);
+		for (int i = 0; i < 100000; i++)
+		{
+			logger.info("{}", "x");
+		}
+		this.log.flush();
+		
+		String[] lines = this.out.toString("UTF-8").split("\n");
+		assertEquals(100000 - this.log.getDropped(), lines.length);
+	}
+	
+	@Test
+	public void testThrowableInAPlaceholderKeepsItsTrace() throws Exception
+	{
+		Logger logger = Logger.get("Test", this.log);
+		logger.error("Could not write state snapshot: {}", new IllegalStateException("boom"));
+		this.log.flush();
+		
+		String err = this.err.toString("UTF-8");
+		assertTrue(err, err.contains("Test - Could not write state snapshot: java.lang.IllegalStateException: boom\n"
+									+ "java.lang.IllegalStateException: boom\n\tat "));
+	}
+	
+	@Test
+	public void testIdleWriterParksUntilWoken() throws Exception
+	{
+		Logger logger = Logger.get("Test", this.log);
+		logger.info("first");
+		this.log.flush();
+		
+		//
+		// - Nothing to write: writers wait without a timeout rather than polling
+		//
+		long deadline = System.currentTimeMillis() + 5000;
+		while (!writersWaiting() && System.currentTimeMillis() < deadline)
+		{
+			Thread.sleep(10);
+		}
+		assertTrue(writersWaiting());
+		
+		logger.info("second");
+		this.log.flush();
+		assertTrue(this.out.toString("UTF-8").contains("Test - second\n"));
+	}
+	
+	private static boolean writersWaiting()
+	{
+		for (Thread thread : Thread.getAllStackTraces().keySet())
+		{
+			if (thread.getName().equals("log-writer") && thread.getState() != Thread.State.WAITING) return false;
+		}
+		return true;
+	}
+}
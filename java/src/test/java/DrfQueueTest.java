@@ -0,0 +1,93 @@
+import com.adsk.miniframework.Application;
+import com.adsk.miniframework.MiniScheduler;
+import com.adsk.miniframework.allocation.DrfQueue;
+
+import static org.junit.Assert.*;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import org.apache.mesos.Protos.*;
+
+public class DrfQueueTest
+{
+	private DrfQueue queue;
+	private Application small;
+	private Application big;
+	
+	private Application makeApp(String name, double cpu, double mem)
+	{
+		ExecutorInfo executorInfo = ExecutorInfo.newBuilder()
+                .setExecutorId(ExecutorID.newBuilder().setValue(name + "-executor"))
+                .setCommand(CommandInfo.newBuilder().setValue("echo"))
+                .setName(name + "-executor")
+                .setSource("java")
+                .build();
+		
+		Application app = new Application(name);
+		app.putExecutor(executorInfo, "ubuntu:14.04", cpu, mem, 10, MiniScheduler.getObjectMapper().createObjectNode());
+		return app;
+	}
+	
+	private void launch(Application app, int n)
+	{
+		for (int i = 0; i < n; i++)
+		{
+			app.putLaunchedTask(app.name + "-executor", TaskID.newBuilder().setValue(app.name + "-" + i).build());
+		}
+	}
+	
+	@Before
+	public void setup()
+	{
+		//
+		// - 10 cpus, 1000 mem in the cluster; small app is mem-light, big app is cpu-heavy
+		//
+		this.queue = new DrfQueue();
+		this.queue.observeSlave("slave-1", 10, 1000);
+		this.small = this.makeApp("small", 1, 10);
+		this.big = this.makeApp("big", 4, 10);
+		this.queue.add(this.small);
+		this.queue.add(this.big);
+	}
+	
+	@Test
+	public void testLowestShareFirst()
+	{
+		this.launch(this.big, 1);
+		
+		assertEquals(0.4, this.queue.getDominantShare(this.big), 1e-9);
+		assertSame(this.small, this.queue.poll());
+		assertSame(this.big, this.queue.poll());
+		assertNull(this.queue.poll());
+	}
+	
+	@Test
+	public void testRerankOnUsageChange()
+	{
+		//
+		// - small overtakes big once it holds more cpu, then falls back once its tasks stop
+		//
+		this.launch(this.big, 1);
+		this.launch(this.small, 5);
+		assertSame(this.big, this.queue.poll());
+		this.queue.push(this.big);
+		
+		for (int i = 0; i < 5; i++)
+		{
+			this.small.putStoppedTask("small-executor", TaskID.newBuilder().setValue("small-" + i).build());
+		}
+		assertEquals(0.0, this.queue.getDominantShare(this.small), 1e-9);
+		assertSame(this.small, this.queue.poll());
+	}
+	
+	@Test
+	public void testTotalsGrowWithNewSlaves()
+	{
+		this.launch(this.big, 1);
+		this.queue.observeSlave("slave-2", 10, 1000);
+		
+		assertEquals(20.0, this.queue.getTotalCpu(), 1e-9);
+		assertEquals(0.2, this.queue.getDominantShare(this.big), 1e-9);
+	}
+}
@@ -0,0 +1,147 @@
+import com.adsk.miniframework.EventLoop;
+import com.adsk.miniframework.SchedulerEvent;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+public class EventLoopTest
+{
+	private static class Recorder implements EventLoop.Handler
+	{
+		final List<SchedulerEvent> handled = new ArrayList<SchedulerEvent>();
+		final List<Integer> batches = new ArrayList<Integer>();
+		final CountDownLatch done;
+		int inBatch;
+		
+		Recorder(int expected)
+		{
+			this.done = new CountDownLatch(expected);
+		}
+		
+		@Override
+		public void handle(SchedulerEvent event)
+		{
+			synchronized (this)
+			{
+				this.handled.add(event);
+				this.inBatch++;
+			}
+			this.done.countDown();
+		}
+		
+		@Override
+		public synchronized void afterBatch()
+		{
+			this.batches.add(this.inBatch);
+			this.inBatch = 0;
+		}
+	}
+	
+	@Test
+	public void testEventsHandledInOrder() throws Exception
+	{
+		Recorder recorder = new Recorder(1000);
+		EventLoop loop = new EventLoop(recorder, 16);
+		
+		List<SchedulerEvent> posted = new ArrayList<SchedulerEvent>();
+		loop.start();
+		for (int i = 0; i < 1000; i++)
+		{
+			SchedulerEvent event = SchedulerEvent.registrations();
+			posted.add(event);
+			loop.post(event);
+		}
+		
+		assertTrue(recorder.done.await(5, TimeUnit.SECONDS));
+		loop.stop();
+		synchronized (recorder)
+		{
+			assertEquals(posted, recorder.handled);
+		}
+	}
+	
+	@Test
+	public void testBurstsAreBatched() throws Exception
+	{
+		Recorder recorder = new Recorder(100);
+		EventLoop loop = new EventLoop(recorder, 128);
+		
+		//
+		// - Everything is queued before the loop runs, so it comes out as one batch
+		//
+		for (int i = 0; i < 100; i++)
+		{
+			loop.post(SchedulerEvent.registrations());
+		}
+		assertEquals(100, loop.size());
+		
+		loop.start();
+		assertTrue(recorder.done.await(5, TimeUnit.SECONDS));
+		Thread.sleep(50);
+		loop.stop();
+		synchronized (recorder)
+		{
+			assertEquals(1, recorder.batches.size());
+			assertEquals(100, (int) recorder.batches.get(0));
+		}
+	}
+	
+	@Test
+	public void testHandlerFailureDoesntStopTheLoop() throws Exception
+	{
+		final CountDownLatch second = new CountDownLatch(1);
+		EventLoop loop = new EventLoop(new EventLoop.Handler()
+		{
+			private boolean failed;
+			
+			@Override
+			public void handle(SchedulerEvent event)
+			{
+				if (!this.failed)
+				{
+					this.failed = true;
+					throw new IllegalStateException("boom");
+				}
+				second.countDown();
+			}
+			
+			@Override
+			public void afterBatch()
+			{
+			}
+		}, 4);
+		
+		loop.start();
+		loop.post(SchedulerEvent.registrations());
+		loop.post(SchedulerEvent.registrations());
+		assertTrue(second.await(5, TimeUnit.SECONDS));
+		loop.stop();
+	}
+	
+	@Test
+	public void testAwaitIdleWaitsForAfterBatch() throws Exception
+	{
+		Recorder recorder = new Recorder(50);
+		EventLoop loop = new EventLoop(recorder, 16);
+		
+		loop.start();
+		for (int i = 0; i < 50; i++)
+		{
+			loop.post(SchedulerEvent.registrations());
+		}
+		loop.awaitIdle();
+		synchronized (recorder)
+		{
+			assertEquals(50, recorder.handled.size());
+			assertEquals(0, recorder.inBatch);
+		}
+		assertEquals(0, loop.size());
+		loop.stop();
+	}
+}
@@ -0,0 +1,40 @@
+import com.adsk.miniframework.ImageCache;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+public class ImageCacheTest
+{
+	@Test
+	public void testRecordAndExpire()
+	{
+		ImageCache cache = new ImageCache(1000);
+		cache.record("s1", "lmok/mini-executor", 0);
+		
+		assertTrue(cache.has("s1", "lmok/mini-executor", 500));
+		assertFalse(cache.has("s2", "lmok/mini-executor", 500));
+		assertFalse(cache.has("s1", "ubuntu:14.04", 500));
+		assertFalse(cache.has("s1", "lmok/mini-executor", 1500));
+	}
+	
+	@Test
+	public void testRefreshAndForget()
+	{
+		ImageCache cache = new ImageCache(1000);
+		cache.record("s1", "lmok/mini-executor", 0);
+		cache.record("s1", "lmok/mini-executor", 900);
+		assertTrue(cache.has("s1", "lmok/mini-executor", 1500));
+		
+		cache.forgetSlave("s1");
+		assertFalse(cache.has("s1", "lmok/mini-executor", 1500));
+	}
+	
+	@Test
+	public void testNoImage()
+	{
+		ImageCache cache = new ImageCache(1000);
+		cache.record("s1", null, 0);
+		assertFalse(cache.has("s1", null, 0));
+	}
+}
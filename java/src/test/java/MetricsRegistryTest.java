@@ -0,0 +1,91 @@
+import com.adsk.miniframework.metrics.Counter;
+import com.adsk.miniframework.metrics.Gauge;
+import com.adsk.miniframework.metrics.Histogram;
+import com.adsk.miniframework.metrics.MetricsRegistry;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+public class MetricsRegistryTest
+{
+	@Test
+	public void testHistogramQuantilesWithinPrecision()
+	{
+		Histogram histogram = new Histogram(1);
+		for (long v = 1; v <= 100000; v++)
+		{
+			histogram.record(v);
+		}
+		
+		assertEquals(100000, histogram.getCount());
+		assertEquals(100000, histogram.getMax());
+		assertEquals(50000, histogram.getValueAtQuantile(0.5), 50000 / 32.0);
+		assertEquals(99000, histogram.getValueAtQuantile(0.99), 99000 / 32.0);
+		assertEquals(100000, histogram.getValueAtQuantile(1.0));
+	}
+	
+	@Test
+	public void testHistogramSmallValuesExact()
+	{
+		Histogram histogram = new Histogram(1);
+		histogram.record(3);
+		histogram.record(7);
+		histogram.record(-5);
+		
+		assertEquals(0, histogram.getValueAtQuantile(0.1));
+		assertEquals(3, histogram.getValueAtQuantile(0.5));
+		assertEquals(7, histogram.getValueAtQuantile(0.99));
+	}
+	
+	@Test
+	public void testHistogramHugeValues()
+	{
+		Histogram histogram = new Histogram(1);
+		histogram.record(Long.MAX_VALUE);
+		assertEquals(Long.MAX_VALUE, histogram.getValueAtQuantile(0.5));
+	}
+	
+	@Test
+	public void testPrometheusText()
+	{
+		MetricsRegistry registry = new MetricsRegistry();
+		Counter counter = registry.counter("b_total", "Things counted");
+		Gauge gauge = registry.gauge("a_used", "Used by app", "app", "x\"y");
+		Histogram latency = registry.latency("c_seconds", "Latency");
+		counter.add(3);
+		gauge.set(1.5);
+		latency.record(2000000000L);
+		
+		String text = registry.scrape();
+		assertTrue(text.startsWith("# HELP a_used Used by app\n# TYPE a_used gauge\na_used{app=\"x\\\"y\"} 1.5\n"));
+		assertTrue(text.contains("# TYPE b_total counter\nb_total 3\n"));
+		assertTrue(text.contains("# TYPE c_seconds summary\n"));
+		assertTrue(text.contains("c_seconds{quantile=\"0.5\"} 2.0"));
+		assertTrue(text.contains("c_seconds_sum 2.0\n"));
+		assertTrue(text.contains("c_seconds_count 1\n"));
+	}
+	
+	@Test
+	public void testRemoveSeries()
+	{
+		MetricsRegistry registry = new MetricsRegistry();
+		registry.gauge("used", "Used", "app", "a");
+		registry.gauge("used", "Used", "app", "b");
+		
+		registry.remove("used", "app", "a");
+		assertFalse(registry.scrape().contains("app=\"a\""));
+		assertTrue(registry.scrape().contains("app=\"b\""));
+		
+		registry.remove("used", "app", "b");
+		assertEquals("", registry.scrape());
+	}
+	
+	@Test(expected = IllegalArgumentException.class)
+	public void testTypeMismatch()
+	{
+		MetricsRegistry registry = new MetricsRegistry();
+		registry.counter("x", "X");
+		registry.gauge("x", "X");
+	}
+}
@@ -0,0 +1,107 @@
+import com.adsk.miniframework.Application;
+import com.adsk.miniframework.ExecutorSpec;
+import com.adsk.miniframework.MiniAllocator;
+import com.adsk.miniframework.OfferPool;
+import com.adsk.miniframework.ResourceVector;
+import com.adsk.miniframework.TaskRegistry;
+import com.adsk.miniframework.allocation.NaivePolicy;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.runners.MockitoJUnitRunner;
+
+import org.apache.mesos.Protos.*;
+import org.apache.mesos.SchedulerDriver;
+
+@RunWith(MockitoJUnitRunner.class)
+public class MiniAllocatorTest
+{
+	private HashMap<String, Application> apps;
+	private MiniAllocator allocator;
+	private OfferPool pool;
+	
+	@Mock
+	private SchedulerDriver driver;
+	
+	private static Offer makeOffer(String id, String slave, double cpu, double mem)
+	{
+		return Offer.newBuilder()
+				.setId(OfferID.newBuilder().setValue(id))
+				.setFrameworkId(FrameworkID.newBuilder().setValue("test"))
+				.setSlaveId(SlaveID.newBuilder().setValue(slave))
+				.setHostname(slave)
+				.addAllResources(ResourceVector.of(cpu, mem).toResources())
+				.build();
+	}
+	
+	@Before
+	public void setUp()
+	{
+		this.apps = new HashMap<String, Application>();
+		this.allocator = new MiniAllocator(this.apps, new TaskRegistry(), 5, ResourceVector.of(16, 16384), new NaivePolicy());
+		this.pool = new OfferPool(0);
+	}
+	
+	@Test
+	public void testRunningTaskUpdatesPending() throws Exception
+	{
+		//
+		// - Like the toy app: one instance at a time, launched again once it runs
+		//
+		Application app = new Application("app");
+		app.putExecutorSpec(new ExecutorSpec("app-executor", "ubuntu:14.04", "true", false, 1, 128, 1, null));
+		ExecutorSpec executor = app.getExecutors().values().iterator().next();
+		this.apps.put(app.name, app);
+		this.allocator.applicationAdded(app);
+		assertEquals(1, this.allocator.getPendingIndex().getPending(executor));
+		
+		this.pool.add(Collections.singletonList(makeOffer("offer-0", "agent-0", 4, 1024)), 0);
+		List<TaskInfo> launched = this.allocator.allocate(this.driver, this.pool, 0);
+		assertEquals(1, launched.size());
+		assertEquals(0, this.allocator.getPendingIndex().getPending(executor));
+		assertFalse(this.allocator.refreshDemand());
+		
+		app.putRunningTask(executor.executor.getExecutorId().getValue(), launched.get(0).getTaskId());
+		assertEquals(1, this.allocator.getPendingIndex().getPending(executor));
+		assertTrue(this.allocator.refreshDemand());
+	}
+	
+	@Test
+	public void testInstanceLimitReachedByRunningTasks() throws Exception
+	{
+		Application app = new Application("app");
+		app.putExecutorSpec(new ExecutorSpec("app-executor", "ubuntu:14.04", "true", false, 1, 128, 5, null));
+		ExecutorSpec executor = app.getExecutors().values().iterator().next();
+		this.apps.put(app.name, app);
+		this.allocator.applicationAdded(app);
+		
+		List<Offer> offers = new ArrayList<Offer>();
+		for (int i = 0; i < 5; i++)
+		{
+			offers.add(makeOffer("offer-" + i, "agent-" + i, 4, 1024));
+		}
+		this.pool.add(offers, 0);
+		List<TaskInfo> launched = this.allocator.allocate(this.driver, this.pool, 0);
+		assertEquals(5, launched.size());
+		assertEquals(0, this.allocator.getPendingIndex().getPending(executor));
+		
+		//
+		// - All five running is the instance limit; nothing may come back into the index
+		//
+		for (TaskInfo task : launched)
+		{
+			app.putRunningTask(executor.executor.getExecutorId().getValue(), task.getTaskId());
+		}
+		assertEquals(0, this.allocator.getPendingIndex().getPending(executor));
+		assertTrue(this.allocator.getPendingIndex().isEmpty());
+	}
+}
@@ -0,0 +1,214 @@
+import com.adsk.miniframework.Application;
+import com.adsk.miniframework.ExecutorSpec;
+import com.adsk.miniframework.MiniScheduler;
+import com.adsk.miniframework.OfferFilters;
+import com.adsk.miniframework.ResourceVector;
+import com.adsk.miniframework.sim.SimulatedDriver;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.junit.After;
+import org.junit.Test;
+
+import org.apache.mesos.Protos.*;
+
+public class MiniSchedulerTest
+{
+	private SimulatedDriver driver;
+	private MiniScheduler scheduler;
+	private int offers;
+	
+	private static Application makeApp(String name, double cpu, double mem, int instances) throws Exception
+	{
+		Application app = new Application(name);
+		app.putExecutorSpec(new ExecutorSpec(name + "-executor", "ubuntu:14.04", "true", false, cpu, mem, instances, null));
+		return app;
+	}
+	
+	//
+	// - Registered against a simulated driver; apps never terminate on their own
+	//
+	private void start(Application... apps) throws Exception
+	{
+		HashMap<String, Application> teams = new HashMap<String, Application>();
+		for (Application app : apps)
+		{
+			teams.put(app.name, app);
+		}
+		this.scheduler = new MiniScheduler(false, teams, 5, 16, 16384);
+		this.scheduler.setTerminationCondition(app -> false);
+		this.driver = new SimulatedDriver();
+		this.driver.start();
+		this.scheduler.registered(this.driver, FrameworkID.newBuilder().setValue("test").build(),
+								MasterInfo.newBuilder().setId("test").setIp(0).setPort(5050).build());
+		this.scheduler.awaitIdle();
+	}
+	
+	private void offer(String slave, double cpu, double mem) throws Exception
+	{
+		this.scheduler.resourceOffers(this.driver, Collections.singletonList(Offer.newBuilder()
+				.setId(OfferID.newBuilder().setValue("offer-" + this.offers++))
+				.setFrameworkId(FrameworkID.newBuilder().setValue("test"))
+				.setSlaveId(SlaveID.newBuilder().setValue(slave))
+				.setHostname(slave)
+				.addAllResources(ResourceVector.of(cpu, mem).toResources())
+				.build()));
+		this.scheduler.awaitIdle();
+	}
+	
+	private void offers(String... slaves) throws Exception
+	{
+		List<Offer> offers = new ArrayList<Offer>();
+		for (String slave : slaves)
+		{
+			offers.add(Offer.newBuilder()
+					.setId(OfferID.newBuilder().setValue("offer-" + this.offers++))
+					.setFrameworkId(FrameworkID.newBuilder().setValue("test"))
+					.setSlaveId(SlaveID.newBuilder().setValue(slave))
+					.setHostname(slave)
+					.addAllResources(ResourceVector.of(4, 1024).toResources())
+					.build());
+		}
+		this.scheduler.resourceOffers(this.driver, offers);
+		this.scheduler.awaitIdle();
+	}
+	
+	private List<TaskInfo> launched()
+	{
+		List<TaskInfo> tasks = new ArrayList<TaskInfo>();
+		for (SimulatedDriver.Accept accept : this.driver.takeAccepts())
+		{
+			tasks.addAll(accept.tasks);
+		}
+		return tasks;
+	}
+	
+	private void running(TaskID task, ExecutorID executor)
+	{
+		this.scheduler.statusUpdate(this.driver, TaskStatus.newBuilder()
+				.setTaskId(task)
+				.setExecutorId(executor)
+				.setState(TaskState.TASK_RUNNING)
+				.build());
+	}
+	
+	@After
+	public void tearDown()
+	{
+		if (this.driver != null)
+		{
+			this.driver.stop();
+		}
+	}
+	
+	@Test
+	public void testNewWorkRevivesWhileOffersAreUnsuppressed() throws Exception
+	{
+		this.start(makeApp("big", 4, 1024, 1));
+		this.driver.takeRevived();
+		
+		//
+		// - Nothing fits what's pending: declined with a growing refuse time, but never suppressed
+		//
+		this.offer("agent-0", 1, 512);
+		this.offer("agent-0", 1, 512);
+		List<SimulatedDriver.Decline> declines = this.driver.takeDeclines();
+		assertEquals(2, declines.size());
+		assertTrue(declines.get(1).refuseSeconds > OfferFilters.BASE_SECONDS);
+		assertFalse(this.driver.isSuppressed());
+		assertFalse(this.driver.takeRevived());
+		
+		this.scheduler.registerApp(makeApp("small", 2, 128, 1));
+		this.scheduler.awaitIdle();
+		assertTrue(this.driver.takeRevived());
+		
+		//
+		// - And the refuse times start over
+		//
+		this.offer("agent-0", 1, 512);
+		declines = this.driver.takeDeclines();
+		assertEquals(1, declines.size());
+		assertEquals(OfferFilters.BASE_SECONDS, declines.get(0).refuseSeconds, 1e-9);
+	}
+	
+	@Test
+	public void testRegistrationInABatchOfStatusUpdates() throws Exception
+	{
+		this.start(makeApp("app", 1, 128, 2));
+		this.offers("agent-0", "agent-1");
+		List<TaskInfo> tasks = this.launched();
+		assertEquals(2, tasks.size());
+		
+		//
+		// - Hold the loop in the first batch so the rest queue up into a single one
+		//
+		final CountDownLatch entered = new CountDownLatch(1);
+		final CountDownLatch release = new CountDownLatch(1);
+		final AtomicBoolean first = new AtomicBoolean(true);
+		this.scheduler.setTerminationCondition(app ->
+		{
+			if (first.getAndSet(false))
+			{
+				entered.countDown();
+				try
+				{
+					release.await();
+				}
+				catch (InterruptedException e)
+				{
+					Thread.currentThread().interrupt();
+				}
+			}
+			return app.getNumRunning() >= 2;
+		});
+		
+		ExecutorID executor = tasks.get(0).getExecutor().getExecutorId();
+		this.running(tasks.get(0).getTaskId(), executor);
+		entered.await();
+		
+		TaskID unknown = TaskID.newBuilder().setValue("unknown").build();
+		this.running(tasks.get(1).getTaskId(), executor);
+		this.running(unknown, executor);
+		this.scheduler.registerApp(makeApp("late", 1, 128, 1));
+		release.countDown();
+		this.scheduler.awaitIdle();
+		
+		//
+		// - The app reached its condition and was killed, the unknown task too, and the late app is in
+		//
+		List<TaskID> kills = this.driver.takeKills();
+		assertTrue(kills.containsAll(Arrays.asList(tasks.get(0).getTaskId(), tasks.get(1).getTaskId(), unknown)));
+		assertTrue(this.scheduler.getSpecs("app").getAppTerminated());
+		assertTrue(this.scheduler.getRegisteredAppNames().contains("late"));
+		assertEquals(3, this.driver.getAcknowledged());
+	}
+	
+	@Test
+	public void testAppGaugesFollowRunningTasks() throws Exception
+	{
+		this.start(makeApp("app", 1, 128, 1));
+		this.offers("agent-0");
+		List<TaskInfo> tasks = this.launched();
+		assertEquals(1, tasks.size());
+		
+		String metrics = this.scheduler.getMetrics().getRegistry().scrape();
+		assertTrue(metrics.contains("miniframework_app_tasks_staged{app=\"app\"} 1.0\n"));
+		assertTrue(metrics.contains("miniframework_app_tasks_running{app=\"app\"} 0.0\n"));
+		
+		this.running(tasks.get(0).getTaskId(), tasks.get(0).getExecutor().getExecutorId());
+		this.scheduler.awaitIdle();
+		metrics = this.scheduler.getMetrics().getRegistry().scrape();
+		assertTrue(metrics.contains("miniframework_app_tasks_staged{app=\"app\"} 0.0\n"));
+		assertTrue(metrics.contains("miniframework_app_tasks_running{app=\"app\"} 1.0\n"));
+		assertTrue(metrics.contains("miniframework_app_cpus_used{app=\"app\"} 1.0\n"));
+		assertTrue(metrics.contains("miniframework_app_mem_used_megabytes{app=\"app\"} 128.0\n"));
+	}
+}
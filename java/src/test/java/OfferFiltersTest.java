@@ -0,0 +1,66 @@
+import com.adsk.miniframework.OfferFilters;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+public class OfferFiltersTest
+{
+	@Test
+	public void testBackoffDoubles()
+	{
+		OfferFilters filters = new OfferFilters();
+		assertEquals(OfferFilters.BASE_SECONDS, filters.refuseSeconds("s1"), 1e-9);
+		
+		filters.missed("s1");
+		assertEquals(2 * OfferFilters.BASE_SECONDS, filters.refuseSeconds("s1"), 1e-9);
+		filters.missed("s1");
+		assertEquals(4 * OfferFilters.BASE_SECONDS, filters.refuseSeconds("s1"), 1e-9);
+		
+		//
+		// - Per slave
+		//
+		assertEquals(OfferFilters.BASE_SECONDS, filters.refuseSeconds("s2"), 1e-9);
+	}
+	
+	@Test
+	public void testBackoffCapped()
+	{
+		OfferFilters filters = new OfferFilters();
+		for (int i = 0; i < 100; i++)
+		{
+			filters.missed("s1");
+			assertTrue(filters.refuseSeconds("s1") <= OfferFilters.MAX_SECONDS);
+		}
+		assertEquals(OfferFilters.MAX_SECONDS, filters.refuseSeconds("s1"), 1e-9);
+	}
+	
+	@Test
+	public void testUseResets()
+	{
+		OfferFilters filters = new OfferFilters();
+		filters.missed("s1");
+		filters.missed("s1");
+		filters.missed("s2");
+		
+		filters.used("s1");
+		assertEquals(OfferFilters.BASE_SECONDS, filters.refuseSeconds("s1"), 1e-9);
+		assertEquals(2 * OfferFilters.BASE_SECONDS, filters.refuseSeconds("s2"), 1e-9);
+		
+		filters.forget("s2");
+		assertEquals(OfferFilters.BASE_SECONDS, filters.refuseSeconds("s2"), 1e-9);
+	}
+	
+	@Test
+	public void testResetClearsEverySlave()
+	{
+		OfferFilters filters = new OfferFilters();
+		filters.missed("s1");
+		filters.missed("s2");
+		filters.missed("s2");
+		
+		filters.reset();
+		assertEquals(OfferFilters.BASE_SECONDS, filters.refuseSeconds("s1"), 1e-9);
+		assertEquals(OfferFilters.BASE_SECONDS, filters.refuseSeconds("s2"), 1e-9);
+	}
+}
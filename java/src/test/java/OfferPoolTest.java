@@ -0,0 +1,129 @@
+import com.adsk.miniframework.OfferPool;
+import com.adsk.miniframework.ResourceVector;
+
+import static org.junit.Assert.*;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.Test;
+
+import org.apache.mesos.Protos.*;
+
+public class OfferPoolTest
+{
+	private static Offer makeOffer(String id, String slave, double cpu, double mem)
+	{
+		return Offer.newBuilder()
+				.setId(OfferID.newBuilder().setValue(id))
+				.setFrameworkId(FrameworkID.newBuilder().setValue("test"))
+				.setSlaveId(SlaveID.newBuilder().setValue(slave))
+				.setHostname(slave)
+				.addAllResources(ResourceVector.of(cpu, mem).toResources())
+				.build();
+	}
+	
+	private static OfferID id(String id)
+	{
+		return OfferID.newBuilder().setValue(id).build();
+	}
+	
+	@Test
+	public void testOffersGroupedPerSlave()
+	{
+		OfferPool pool = new OfferPool(1000);
+		pool.add(Arrays.asList(makeOffer("o1", "s1", 1, 256), makeOffer("o2", "s2", 2, 512), makeOffer("o3", "s1", 1, 256)), 0);
+		
+		List<OfferPool.Group> groups = pool.groups();
+		assertEquals(2, groups.size());
+		assertEquals("s1", groups.get(0).slaveId);
+		assertEquals(2, groups.get(0).getOffers().size());
+		assertEquals(2, groups.get(0).getAvailable().getCpu(), 1e-9);
+		assertEquals(512, groups.get(0).getAvailable().getMem(), 1e-9);
+		assertEquals(3, pool.size());
+	}
+	
+	@Test
+	public void testExpiryAtTheHoldBoundary()
+	{
+		OfferPool pool = new OfferPool(100);
+		pool.add(Collections.singletonList(makeOffer("o1", "s1", 1, 256)), 1000);
+		OfferPool.Group group = pool.groups().get(0);
+		
+		assertFalse(pool.isExpired(group, 1099));
+		assertTrue(pool.expire(1099).isEmpty());
+		assertEquals(1, pool.size());
+		
+		assertTrue(pool.isExpired(group, 1100));
+		List<OfferPool.Group> expired = pool.expire(1100);
+		assertEquals(1, expired.size());
+		assertSame(group, expired.get(0));
+		assertEquals(0, pool.size());
+		assertTrue(pool.groups().isEmpty());
+	}
+	
+	@Test
+	public void testGroupHeldFromItsOldestOffer()
+	{
+		OfferPool pool = new OfferPool(100);
+		pool.add(Collections.singletonList(makeOffer("o1", "s1", 1, 256)), 1000);
+		pool.add(Collections.singletonList(makeOffer("o2", "s1", 1, 256)), 1080);
+		
+		List<OfferPool.Group> expired = pool.expire(1100);
+		assertEquals(1, expired.size());
+		assertEquals(2, expired.get(0).getOffers().size());
+	}
+	
+	@Test
+	public void testNoHoldExpiresRightAway()
+	{
+		OfferPool pool = new OfferPool(0);
+		pool.add(Collections.singletonList(makeOffer("o1", "s1", 1, 256)), 1000);
+		assertTrue(pool.isExpired(pool.groups().get(0), 1000));
+	}
+	
+	@Test
+	public void testRescindFromAGroup()
+	{
+		OfferPool pool = new OfferPool(1000);
+		pool.add(Arrays.asList(makeOffer("o1", "s1", 1, 256), makeOffer("o2", "s1", 2, 512)), 0);
+		
+		//
+		// - The rest of the slave's offers stay held
+		//
+		assertTrue(pool.rescind(id("o1")));
+		assertEquals(1, pool.size());
+		OfferPool.Group group = pool.groups().get(0);
+		assertEquals(1, group.getOffers().size());
+		assertEquals("o2", group.getOffers().get(0).getId().getValue());
+		assertEquals(2, group.getAvailable().getCpu(), 1e-9);
+		
+		assertFalse(pool.rescind(id("o1")));
+		assertTrue(pool.rescind(id("o2")));
+		assertEquals(0, pool.size());
+		assertTrue(pool.groups().isEmpty());
+	}
+	
+	@Test
+	public void testRescindUnknownOffer()
+	{
+		OfferPool pool = new OfferPool(1000);
+		pool.add(Collections.singletonList(makeOffer("o1", "s1", 1, 256)), 0);
+		assertFalse(pool.rescind(id("o2")));
+		assertEquals(1, pool.size());
+	}
+	
+	@Test
+	public void testRemoveSlave()
+	{
+		OfferPool pool = new OfferPool(1000);
+		pool.add(Arrays.asList(makeOffer("o1", "s1", 1, 256), makeOffer("o2", "s1", 1, 256), makeOffer("o3", "s2", 1, 256)), 0);
+		
+		assertEquals(2, pool.removeSlave("s1"));
+		assertEquals(0, pool.removeSlave("s1"));
+		assertEquals(1, pool.size());
+		assertFalse(pool.rescind(id("o1")));
+		assertEquals("s2", pool.groups().get(0).slaveId);
+	}
+}
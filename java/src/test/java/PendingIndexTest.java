@@ -0,0 +1,113 @@
+import com.adsk.miniframework.Application;
+import com.adsk.miniframework.ExecutorSpec;
+import com.adsk.miniframework.MiniScheduler;
+import com.adsk.miniframework.ResourceVector;
+import com.adsk.miniframework.allocation.PendingIndex;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import org.apache.mesos.Protos.*;
+
+public class PendingIndexTest
+{
+	private PendingIndex index;
+	
+	private Application makeApp(String name, double cpu, double mem)
+	{
+		ExecutorInfo executorInfo = ExecutorInfo.newBuilder()
+                .setExecutorId(ExecutorID.newBuilder().setValue(name + "-executor"))
+                .setCommand(CommandInfo.newBuilder().setValue("echo"))
+                .setName(name + "-executor")
+                .setSource("java")
+                .build();
+		
+		Application app = new Application(name);
+		app.putExecutor(executorInfo, "ubuntu:14.04", cpu, mem, 2, MiniScheduler.getObjectMapper().createObjectNode());
+		return app;
+	}
+	
+	private ExecutorSpec executorOf(Application app)
+	{
+		return app.getExecutors().get(app.name + "-executor");
+	}
+	
+	private List<String> names(Iterable<PendingIndex.Entry> entries)
+	{
+		List<String> names = new ArrayList<String>();
+		for (PendingIndex.Entry entry : entries)
+		{
+			names.add(entry.app.name);
+		}
+		return names;
+	}
+	
+	@Before
+	public void setUp()
+	{
+		this.index = new PendingIndex();
+	}
+	
+	@Test
+	public void testOrderedByCpuThenMem()
+	{
+		Application big = makeApp("big", 4, 1024);
+		Application small = makeApp("small", 1, 128);
+		Application wide = makeApp("wide", 1, 512);
+		for (Application app : new Application[] { big, small, wide })
+		{
+			this.index.update(app, executorOf(app), 2);
+		}
+		
+		List<String> expected = new ArrayList<String>();
+		expected.add("small");
+		expected.add("wide");
+		expected.add("big");
+		assertEquals(expected, names(this.index.all()));
+	}
+	
+	@Test
+	public void testFittingIsARangeQuery()
+	{
+		Application big = makeApp("big", 4, 1024);
+		Application small = makeApp("small", 1, 128);
+		Application wide = makeApp("wide", 1, 512);
+		for (Application app : new Application[] { big, small, wide })
+		{
+			this.index.update(app, executorOf(app), 2);
+		}
+		
+		List<String> fitting = names(this.index.fitting(ResourceVector.of(2, 256)));
+		assertEquals(1, fitting.size());
+		assertEquals("small", fitting.get(0));
+		
+		assertEquals(3, names(this.index.fitting(ResourceVector.of(4, 1024))).size());
+		assertTrue(names(this.index.fitting(ResourceVector.of(0.5, 4096))).isEmpty());
+	}
+	
+	@Test
+	public void testSatisfiedExecutorsLeave()
+	{
+		Application app = makeApp("app", 1, 128);
+		ExecutorSpec executor = executorOf(app);
+		
+		this.index.update(app, executor, 2);
+		assertEquals(2, this.index.getPending(executor));
+		this.index.update(app, executor, 1);
+		assertEquals(1, this.index.size());
+		assertEquals(1, this.index.getPending(executor));
+		
+		this.index.update(app, executor, 0);
+		assertTrue(this.index.isEmpty());
+		assertEquals(0, this.index.getPending(executor));
+		
+		this.index.update(app, executor, 2);
+		this.index.remove(app);
+		assertTrue(this.index.isEmpty());
+	}
+}
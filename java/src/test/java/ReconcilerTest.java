@@ -0,0 +1,106 @@
+import com.adsk.miniframework.Reconciler;
+
+import java.util.Collections;
+import java.util.List;
+
+import static org.mockito.Mockito.*;
+import static org.junit.Assert.*;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.runners.MockitoJUnitRunner;
+
+import org.apache.mesos.Protos.*;
+import org.apache.mesos.SchedulerDriver;
+
+@RunWith(MockitoJUnitRunner.class)
+public class ReconcilerTest
+{
+	@Mock
+	private SchedulerDriver driver;
+	
+	private Reconciler reconciler;
+	
+	private static TaskID task(String id)
+	{
+		return TaskID.newBuilder().setValue(id).build();
+	}
+	
+	private static SlaveID slave(String id)
+	{
+		return SlaveID.newBuilder().setValue(id).build();
+	}
+	
+	private static ExecutorID executor(String id)
+	{
+		return ExecutorID.newBuilder().setValue(id).build();
+	}
+	
+	private static TaskStatus status(String id, TaskState state)
+	{
+		return TaskStatus.newBuilder().setTaskId(task(id)).setState(state).build();
+	}
+	
+	@Before
+	public void setUp()
+	{
+		this.reconciler = new Reconciler(2, 1000, 4000, 60000);
+		this.reconciler.taskLaunched(task("t1"), executor("e1"), slave("s1"));
+		this.reconciler.taskLaunched(task("t2"), executor("e1"), slave("s1"));
+		this.reconciler.taskLaunched(task("t3"), executor("e2"), slave("s2"));
+	}
+	
+	@SuppressWarnings("unchecked")
+	@Test
+	public void testBatchesThenImplicit()
+	{
+		this.reconciler.reconcileAll(0);
+		assertEquals(2, this.reconciler.tick(this.driver, 0));
+		assertEquals(1, this.reconciler.tick(this.driver, 1));
+		verify(this.driver, times(2)).reconcileTasks(any(List.class));
+		
+		//
+		// - Nothing until the backoff is over, then only the unanswered task again
+		//
+		this.reconciler.statusUpdate(status("t1", TaskState.TASK_RUNNING));
+		this.reconciler.statusUpdate(status("t2", TaskState.TASK_LOST));
+		assertEquals(0, this.reconciler.tick(this.driver, 500));
+		assertEquals(1, this.reconciler.tick(this.driver, 1001));
+		
+		ArgumentCaptor<List> batch = ArgumentCaptor.forClass(List.class);
+		verify(this.driver, times(3)).reconcileTasks(batch.capture());
+		assertEquals(1, batch.getValue().size());
+		assertEquals(task("t3"), ((TaskStatus) batch.getValue().get(0)).getTaskId());
+		
+		this.reconciler.statusUpdate(status("t3", TaskState.TASK_RUNNING));
+		assertTrue(this.reconciler.isReconciling());
+		this.reconciler.tick(this.driver, 10000);
+		verify(this.driver).reconcileTasks(Collections.<TaskStatus>emptyList());
+		assertFalse(this.reconciler.isReconciling());
+		assertEquals(2, this.reconciler.getNumKnown());
+	}
+	
+	@Test
+	public void testLostSlaveAndExecutor()
+	{
+		assertEquals(2, this.reconciler.reconcileSlave(slave("s1"), 0));
+		assertEquals(0, this.reconciler.reconcileSlave(slave("s1"), 0));
+		assertEquals(1, this.reconciler.reconcileExecutor(executor("e2"), slave("s2"), 0));
+		assertEquals(0, this.reconciler.reconcileExecutor(executor("e2"), slave("s1"), 0));
+		assertEquals(3, this.reconciler.getNumOutstanding());
+		
+		//
+		// - Explicit questions only, no implicit round
+		//
+		this.reconciler.tick(this.driver, 0);
+		this.reconciler.tick(this.driver, 0);
+		this.reconciler.statusUpdate(status("t1", TaskState.TASK_LOST));
+		this.reconciler.statusUpdate(status("t2", TaskState.TASK_LOST));
+		this.reconciler.statusUpdate(status("t3", TaskState.TASK_FAILED));
+		assertFalse(this.reconciler.isReconciling());
+		assertEquals(0, this.reconciler.getNumKnown());
+	}
+}
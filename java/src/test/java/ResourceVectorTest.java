@@ -0,0 +1,117 @@
+import com.adsk.miniframework.ResourceVector;
+
+import java.util.Arrays;
+
+import static org.junit.Assert.*;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import org.apache.mesos.Protos.*;
+
+public class ResourceVectorTest
+{
+	private ResourceVector offer;
+	
+	@Before
+	public void setup()
+	{
+		//
+		// - 4 cpus, 1024 mem, 100 disk, ports 31000-31001 and 31005, one gpu in a set
+		//
+		this.offer = ResourceVector.fromResources(Arrays.asList(
+				Resource.newBuilder().setName("cpus").setType(Value.Type.SCALAR)
+						.setScalar(Value.Scalar.newBuilder().setValue(4)).build(),
+				Resource.newBuilder().setName("mem").setType(Value.Type.SCALAR)
+						.setScalar(Value.Scalar.newBuilder().setValue(1024)).build(),
+				Resource.newBuilder().setName("disk").setType(Value.Type.SCALAR)
+						.setScalar(Value.Scalar.newBuilder().setValue(100)).build(),
+				Resource.newBuilder().setName("ports").setType(Value.Type.RANGES)
+						.setRanges(Value.Ranges.newBuilder()
+								.addRange(Value.Range.newBuilder().setBegin(31005).setEnd(31005))
+								.addRange(Value.Range.newBuilder().setBegin(31000).setEnd(31001))).build(),
+				Resource.newBuilder().setName("gpus").setType(Value.Type.SET)
+						.setSet(Value.Set.newBuilder().addItem("gpu0")).build()));
+	}
+	
+	@Test
+	public void testParse()
+	{
+		assertEquals(4.0, this.offer.getCpu(), 0.0);
+		assertEquals(1024.0, this.offer.getMem(), 0.0);
+		assertEquals(100.0, this.offer.getDisk(), 0.0);
+		assertEquals(3, this.offer.getRangeCount(ResourceVector.PORTS));
+		assertEquals(1, this.offer.getSetSize(ResourceVector.setSlot("gpus")));
+	}
+	
+	@Test
+	public void testFitsAndSubtract()
+	{
+		ResourceVector demand = ResourceVector.of(1, 256).setScalar(ResourceVector.DISK, 10).setRangeCount(ResourceVector.PORTS, 3);
+		assertTrue(this.offer.fits(demand));
+		
+		//
+		// - Ports are handed out from the low end, across ranges
+		//
+		ResourceVector grant = this.offer.subtract(demand);
+		assertArrayEquals(new long[] { 31000, 31001, 31005, 31005 }, grant.getRanges(ResourceVector.PORTS));
+		assertEquals(3.0, this.offer.getCpu(), 0.0);
+		assertEquals(90.0, this.offer.getDisk(), 0.0);
+		assertEquals(0, this.offer.getRangeCount(ResourceVector.PORTS));
+		assertFalse(this.offer.fits(ResourceVector.of(1, 1).setRangeCount(ResourceVector.PORTS, 1)));
+	}
+	
+	@Test
+	public void testSets()
+	{
+		int gpus = ResourceVector.setSlot("gpus");
+		assertTrue(this.offer.fits(new ResourceVector().addSetItem(gpus, "gpu0")));
+		assertFalse(this.offer.fits(new ResourceVector().addSetItem(gpus, "gpu1")));
+		
+		this.offer.subtract(new ResourceVector().addSetItem(gpus, "gpu0"));
+		assertEquals(0, this.offer.getSetSize(gpus));
+	}
+	
+	@Test
+	public void testSetItemsCapped()
+	{
+		int disks = ResourceVector.setSlot("test-disks");
+		ResourceVector vector = new ResourceVector();
+		for (int i = 0; i < ResourceVector.MAX_SET_ITEMS; i++)
+		{
+			vector.addSetItem(disks, "disk" + i);
+		}
+		assertEquals(ResourceVector.MAX_SET_ITEMS, vector.getSetSize(disks));
+		
+		//
+		// - Offered items past the cap are left out, explicit ones throw
+		//
+		Resource offered = Resource.newBuilder()
+				.setName("test-disks")
+				.setType(Value.Type.SET)
+				.setSet(Value.Set.newBuilder().addItem("disk0").addItem("extra"))
+				.build();
+		assertEquals(1, ResourceVector.fromResources(Arrays.asList(offered)).getSetSize(disks));
+		try
+		{
+			vector.addSetItem(disks, "extra");
+			fail();
+		}
+		catch (IllegalStateException e)
+		{
+		}
+		
+		//
+		// - Other sets have their own items
+		//
+		assertEquals(1, new ResourceVector().addSetItem(ResourceVector.setSlot("gpus"), "extra").getSetSize(ResourceVector.setSlot("gpus")));
+	}
+	
+	@Test
+	public void testQuota()
+	{
+		ResourceVector quota = ResourceVector.of(3, 256);
+		assertFalse(ResourceVector.of(2, 128).reaches(quota));
+		assertTrue(ResourceVector.of(1, 256).reaches(quota));
+	}
+}
@@ -0,0 +1,105 @@
+import com.adsk.miniframework.Application;
+import com.adsk.miniframework.ExecutorSpec;
+import com.adsk.miniframework.MiniScheduler;
+import com.adsk.miniframework.SchedulerState;
+
+import static org.junit.Assert.*;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import org.apache.mesos.Protos.*;
+
+import com.fasterxml.jackson.databind.JsonNode;
+
+public class SchedulerStateTest
+{
+	private SchedulerState state;
+	
+	@Before
+	public void setUp()
+	{
+		this.state = new SchedulerState(MiniScheduler.getObjectMapper());
+	}
+	
+	@Test
+	public void testPublishOnlyOnChange()
+	{
+		assertEquals(0, this.state.getSnapshot().getVersion());
+		assertFalse(this.state.publish());
+		
+		Application app = new Application("app1");
+		this.state.appAdded(app);
+		assertTrue(this.state.publish());
+		assertEquals(1, this.state.getSnapshot().getVersion());
+		assertEquals("app1", this.state.getSnapshot().getApp("app1").get("name").asText());
+		assertFalse(this.state.publish());
+	}
+	
+	@Test
+	public void testSnapshotsAreImmutable()
+	{
+		Application app = new Application("app1");
+		this.state.appAdded(app);
+		this.state.publish();
+		SchedulerState.Snapshot before = this.state.getSnapshot();
+		
+		app.setWeight(5);
+		this.state.usageChanged(app);
+		this.state.publish();
+		SchedulerState.Snapshot after = this.state.getSnapshot();
+		
+		assertEquals(1, before.getApp("app1").get("weight").asInt());
+		assertEquals(5, after.getApp("app1").get("weight").asInt());
+		assertEquals(before.getVersion() + 1, after.getVersion());
+	}
+	
+	@Test
+	public void testTaskTransitionsRepublish() throws Exception
+	{
+		Application app = new Application("app1");
+		app.putExecutorSpec(new ExecutorSpec("exec1", "ubuntu:14.04", "true", false, 1, 128, 2, null));
+		String executor = app.getExecutors().keySet().iterator().next();
+		this.state.appAdded(app);
+		this.state.publish();
+		
+		TaskID task = TaskID.newBuilder().setValue("task1").build();
+		app.putLaunchedTask(executor, task);
+		assertTrue(this.state.publish());
+		assertEquals(0, this.state.getSnapshot().getApp("app1").get("allocInstances").asInt());
+		
+		app.putRunningTask(executor, task);
+		assertTrue(this.state.publish());
+		JsonNode running = this.state.getSnapshot().getApp("app1");
+		assertEquals(1, running.get("allocInstances").asInt());
+		assertEquals(1, running.get("allocCpu").asDouble(), 1e-9);
+		assertEquals(128, running.get("allocMem").asDouble(), 1e-9);
+		assertEquals(1, running.get("executors").get(executor).get("tasksRunning").size());
+		
+		app.putStoppedTask(executor, task);
+		assertTrue(this.state.publish());
+		assertEquals(0, this.state.getSnapshot().getApp("app1").get("allocInstances").asInt());
+	}
+	
+	@Test
+	public void testRemoval()
+	{
+		Application app = new Application("app1");
+		this.state.appAdded(app);
+		this.state.publish();
+		
+		this.state.appRemoved(app);
+		assertTrue(this.state.publish());
+		assertNull(this.state.getSnapshot().getApp("app1"));
+		assertTrue(this.state.getSnapshot().getAppNames().isEmpty());
+	}
+	
+	@Test
+	public void testRegistrationQueue()
+	{
+		Application app = new Application("app1");
+		this.state.queueRegistration(app);
+		assertSame(app, this.state.pollRegistration());
+		assertNull(this.state.pollRegistration());
+	}
+}
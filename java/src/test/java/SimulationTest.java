@@ -0,0 +1,79 @@
+import com.adsk.miniframework.sim.Simulation;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+public class SimulationTest
+{
+	private static Simulation.Config smallCluster(long seed)
+	{
+		Simulation.Config config = new Simulation.Config();
+		config.seed = seed;
+		config.agents = 4;
+		config.agentCpu = 4;
+		config.agentMem = 4096;
+		config.racks = 2;
+		config.apps = 2;
+		config.executorsPerApp = 2;
+		config.instances = 3;
+		config.taskCpu = 1;
+		config.taskMem = 512;
+		config.horizonMillis = 60 * 1000;
+		return config;
+	}
+	
+	@Test
+	public void testEverythingLaunches() throws Exception
+	{
+		Simulation.Report report = new Simulation(smallCluster(1)).run();
+		
+		assertEquals(12, report.target);
+		assertEquals(12, report.running);
+		assertEquals(12, report.launched);
+		assertTrue(report.timeToFullLaunchMillis >= 0);
+		assertEquals(report.timeToFullLaunchMillis, report.virtualMillis);
+		assertEquals(12.0 / 16, report.finalCpuUtilisation, 1e-9);
+		assertEquals(12.0 * 512 / (4 * 4096), report.finalMemUtilisation, 1e-9);
+	}
+	
+	@Test
+	public void testSameSeedSameRun() throws Exception
+	{
+		Simulation.Config config = smallCluster(42);
+		config.lossProbability = 0.3;
+		config.taskDurationMillis = 20 * 1000;
+		config.stopWhenLaunched = false;
+		
+		String first = new Simulation(config).run().outcome();
+		String second = new Simulation(config).run().outcome();
+		assertEquals(first, second);
+	}
+	
+	@Test
+	public void testLostTasksAreLaunchedAgain() throws Exception
+	{
+		Simulation.Config config = smallCluster(7);
+		config.lossProbability = 1;
+		config.taskDurationMillis = 10 * 1000;
+		config.stopWhenLaunched = false;
+		
+		Simulation.Report report = new Simulation(config).run();
+		assertTrue(report.lost > 0);
+		assertTrue(report.launched > report.target);
+		assertEquals(0, report.finished);
+	}
+	
+	@Test
+	public void testFullLaunchNotReachedWithoutRoom() throws Exception
+	{
+		Simulation.Config config = smallCluster(1);
+		config.instances = 5;
+		config.horizonMillis = 30 * 1000;
+		
+		Simulation.Report report = new Simulation(config).run();
+		assertEquals(-1, report.timeToFullLaunchMillis);
+		assertEquals(16, report.running);
+		assertEquals(30 * 1000, report.virtualMillis);
+	}
+}
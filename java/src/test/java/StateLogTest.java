@@ -0,0 +1,217 @@
+import com.adsk.miniframework.Application;
+import com.adsk.miniframework.ExecutorSpec;
+import com.adsk.miniframework.StateLog;
+import com.adsk.miniframework.TaskTable;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.zip.CRC32;
+
+import org.apache.mesos.Protos.*;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class StateLogTest
+{
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+	
+	private static class Recorder implements StateLog.Visitor
+	{
+		final List<String> records = new ArrayList<String>();
+		final HashMap<String, SlaveID> slaves = new HashMap<String, SlaveID>();
+		
+		public void frameworkId(String frameworkId) { this.records.add("id " + frameworkId); }
+		public void appRegistered(Application app) { this.records.add("app " + app.name); }
+		public void appTerminated(String app) { this.records.add("terminated " + app); }
+		public void taskLaunched(String app, String executor, TaskID task, SlaveID slave) { this.records.add("launched " + task.getValue()); this.slaves.put(task.getValue(), slave); }
+		public void taskRunning(String app, String executor, TaskID task) { this.records.add("running " + task.getValue()); }
+		public void taskStopped(String app, String executor, TaskID task, TaskTable.State state) { this.records.add(state + " " + task.getValue()); }
+	}
+	
+	@Test
+	public void testReplayInOrder() throws Exception
+	{
+		File dir = this.folder.newFolder();
+		StateLog log = new StateLog(dir);
+		assertEquals(0, log.replay(new Recorder()));
+		
+		TaskID task = TaskID.newBuilder().setValue("t1").build();
+		log.frameworkId("fw");
+		log.appRegistered(new Application("app1"));
+		log.taskLaunched("app1", "exec1", task, SlaveID.newBuilder().setValue("s1").build());
+		log.taskRunning("app1", "exec1", task);
+		log.taskStopped("app1", "exec1", task, TaskTable.State.LOST);
+		log.appTerminated("app1");
+		log.close();
+		
+		Recorder recorder = new Recorder();
+		assertEquals(6, new StateLog(dir).replay(recorder));
+		assertEquals(Arrays.asList("id fw", "app app1", "launched t1", "running t1", "LOST t1", "terminated app1"), recorder.records);
+	}
+	
+	@Test
+	public void testSnapshotAndCompaction() throws Exception
+	{
+		File dir = this.folder.newFolder();
+		StateLog log = new StateLog(dir, 1024);
+		log.replay(new Recorder());
+		log.frameworkId("fw");
+		for (int i = 0; i < 1000; i++)
+		{
+			log.appTerminated("old" + i);
+		}
+		assertEquals(1001, log.getAppended());
+		
+		StateLog.Checkpoint checkpoint = log.checkpoint();
+		assertEquals(0, log.getAppended());
+		checkpoint.frameworkId("fw");
+		Application app = new Application("app1");
+		app.restoreTerminated();
+		checkpoint.app(StateLog.encodeApp(app, task -> null));
+		
+		//
+		// - Appends carry on while the snapshot is written
+		//
+		log.appTerminated("after");
+		log.writeSnapshot(checkpoint);
+		log.close();
+		assertEquals(2, dir.list().length);
+		
+		Recorder recorder = new Recorder();
+		assertEquals(4, new StateLog(dir, 1024).replay(recorder));
+		assertEquals(Arrays.asList("id fw", "app app1", "terminated app1", "terminated after"), recorder.records);
+	}
+	
+	@Test
+	public void testSnapshotOmitsUnknownSlaves() throws Exception
+	{
+		File dir = this.folder.newFolder();
+		StateLog log = new StateLog(dir);
+		log.replay(new Recorder());
+		
+		Application app = new Application("app1");
+		app.putExecutorSpec(new ExecutorSpec("exec1", "ubuntu:14.04", "true", false, 1, 128, 2, null));
+		String executor = app.getExecutors().keySet().iterator().next();
+		final TaskID known = TaskID.newBuilder().setValue("t1").build();
+		final SlaveID slave = SlaveID.newBuilder().setValue("s1").build();
+		app.putLaunchedTask(executor, known);
+		app.putLaunchedTask(executor, TaskID.newBuilder().setValue("t2").build());
+		
+		StateLog.Checkpoint checkpoint = log.checkpoint();
+		checkpoint.app(StateLog.encodeApp(app, task -> task.equals(known) ? slave : null));
+		log.writeSnapshot(checkpoint);
+		log.close();
+		
+		//
+		// - No empty slave id for the master to be asked about
+		//
+		Recorder recorder = new Recorder();
+		assertEquals(3, new StateLog(dir).replay(recorder));
+		assertEquals(slave, recorder.slaves.get("t1"));
+		assertTrue(recorder.slaves.containsKey("t2"));
+		assertNull(recorder.slaves.get("t2"));
+	}
+	
+	@Test
+	public void testSegmentsAndDamage() throws Exception
+	{
+		File dir = this.folder.newFolder();
+		StateLog log = new StateLog(dir, 1024);
+		log.replay(new Recorder());
+		for (int i = 0; i < 1000; i++)
+		{
+			log.appTerminated("app" + i);
+		}
+		log.close();
+		
+		String[] segments = dir.list();
+		Arrays.sort(segments);
+		assertTrue(segments.length > 3);
+		assertEquals(1000, new StateLog(dir, 1024).replay(new Recorder()));
+		
+		//
+		// - Everything from the damaged record on is dropped, and appends carry on from there
+		//
+		RandomAccessFile file = new RandomAccessFile(new File(dir, segments[1]), "rw");
+		file.seek(20);
+		file.write(0x55);
+		file.close();
+		
+		Recorder recorder = new Recorder();
+		log = new StateLog(dir, 1024);
+		long kept = log.replay(recorder);
+		assertTrue(kept > 0 && kept < 1000);
+		assertEquals(2, dir.list().length);
+		log.appTerminated("last");
+		log.close();
+		
+		recorder = new Recorder();
+		assertEquals(kept + 1, new StateLog(dir, 1024).replay(recorder));
+		assertEquals("terminated last", recorder.records.get(recorder.records.size() - 1));
+	}
+	
+	@Test
+	public void testUndecodableRecordEndsTheLog() throws Exception
+	{
+		File dir = this.folder.newFolder();
+		StateLog log = new StateLog(dir);
+		log.replay(new Recorder());
+		TaskID task = TaskID.newBuilder().setValue("t1").build();
+		log.appRegistered(new Application("app1"));
+		log.taskLaunched("app1", "exec1", task, SlaveID.newBuilder().setValue("s1").build());
+		log.taskStopped("app1", "exec1", task, TaskTable.State.LOST);
+		log.close();
+		
+		//
+		// - Give the last record a state that doesn't exist, with a crc that matches
+		//
+		String[] segments = dir.list();
+		assertEquals(1, segments.length);
+		RandomAccessFile file = new RandomAccessFile(new File(dir, segments[0]), "rw");
+		long offset = 0;
+		long last = 0;
+		int length;
+		while ((length = readInt(file, offset)) != 0)
+		{
+			last = offset;
+			offset += 8 + length;
+		}
+		length = readInt(file, last);
+		byte[] record = new byte[length];
+		file.seek(last + 8);
+		file.readFully(record);
+		record[length - 1] = 99;
+		CRC32 crc = new CRC32();
+		crc.update(record, 0, length);
+		file.seek(last + 4);
+		file.writeInt((int) crc.getValue());
+		file.seek(last + 8);
+		file.write(record);
+		file.close();
+		
+		Recorder recorder = new Recorder();
+		log = new StateLog(dir);
+		assertEquals(2, log.replay(recorder));
+		assertEquals(Arrays.asList("app app1", "launched t1"), recorder.records);
+		log.appTerminated("app1");
+		log.close();
+		
+		recorder = new Recorder();
+		assertEquals(3, new StateLog(dir).replay(recorder));
+		assertEquals("terminated app1", recorder.records.get(2));
+	}
+	
+	private static int readInt(RandomAccessFile file, long offset) throws Exception
+	{
+		file.seek(offset);
+		return file.readInt();
+	}
+}
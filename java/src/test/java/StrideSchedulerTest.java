@@ -0,0 +1,138 @@
+import com.adsk.miniframework.Application;
+import com.adsk.miniframework.allocation.StrideScheduler;
+
+import static org.junit.Assert.*;
+
+import org.junit.Before;
+import org.junit.Test;
+
+public class StrideSchedulerTest
+{
+	private StrideScheduler order;
+	private Application heavy;
+	private Application light;
+	
+	@Before
+	public void setUp()
+	{
+		this.heavy = new Application("heavy");
+		this.heavy.setWeight(3);
+		this.light = new Application("light");
+		
+		this.order = new StrideScheduler();
+		this.order.add(this.heavy);
+		this.order.add(this.light);
+	}
+	
+	//
+	// - Always give the next instance to the app at the front
+	//
+	private int[] run(int instances)
+	{
+		int[] given = new int[2];
+		for (int i = 0; i < instances; i++)
+		{
+			Application next = this.order.get(0);
+			given[next == this.heavy ? 0 : 1]++;
+			this.order.charge(next);
+		}
+		return given;
+	}
+	
+	@Test
+	public void testTiesGoByRegistration()
+	{
+		assertSame(this.heavy, this.order.get(0));
+		assertEquals(0, this.order.rank(this.heavy));
+		assertEquals(1, this.order.rank(this.light));
+	}
+	
+	@Test
+	public void testWeightedShares()
+	{
+		int[] given = run(400);
+		assertEquals(300, given[0]);
+		assertEquals(100, given[1]);
+	}
+	
+	@Test
+	public void testDeterministic()
+	{
+		int[] first = run(37);
+		
+		setUp();
+		int[] second = run(37);
+		assertArrayEquals(first, second);
+	}
+	
+	@Test
+	public void testNewAppsStartLevel()
+	{
+		run(40);
+		Application late = new Application("late");
+		this.order.add(late);
+		assertEquals(this.order.getPass(this.order.get(0)), this.order.getPass(late));
+		
+		//
+		// - It gets its turn, but no long catching-up burst
+		//
+		int turns = 0;
+		for (int i = 0; i < 10; i++)
+		{
+			Application next = this.order.get(0);
+			if (next == late) turns++;
+			this.order.charge(next);
+		}
+		assertTrue(turns <= 3);
+	}
+	
+	@Test
+	public void testIdleAppsCatchUp()
+	{
+		//
+		// - Idle while the other app takes 50 instances; back with demand, it starts level
+		// - with the front instead of getting the next 50
+		//
+		this.order.setPending(this.light, false);
+		assertEquals(1, this.order.size());
+		assertEquals(Integer.MAX_VALUE, this.order.rank(this.light));
+		for (int i = 0; i < 50; i++)
+		{
+			this.order.charge(this.order.get(0));
+		}
+		
+		this.order.setPending(this.light, true);
+		assertEquals(this.order.getPass(this.heavy), this.order.getPass(this.light));
+		int[] given = run(8);
+		assertEquals(6, given[0]);
+		assertEquals(2, given[1]);
+	}
+	
+	@Test
+	public void testSlotsAreReused()
+	{
+		int slot = this.order.getSlot(this.heavy);
+		this.order.remove(this.heavy);
+		assertEquals(-1, this.order.getSlot(this.heavy));
+		
+		Application late = new Application("late");
+		this.order.add(late);
+		assertEquals(slot, this.order.getSlot(late));
+		assertEquals(2, this.order.getNumSlots());
+	}
+	
+	@Test
+	public void testRemove()
+	{
+		this.order.remove(this.heavy);
+		assertEquals(1, this.order.size());
+		assertSame(this.light, this.order.get(0));
+		assertEquals(Integer.MAX_VALUE, this.order.rank(this.heavy));
+	}
+	
+	@Test(expected = IllegalArgumentException.class)
+	public void testWeightMustBePositive()
+	{
+		this.light.setWeight(0);
+	}
+}
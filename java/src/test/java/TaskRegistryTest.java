@@ -0,0 +1,95 @@
+import com.adsk.miniframework.Application;
+import com.adsk.miniframework.TaskRegistry;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import org.apache.mesos.Protos.*;
+
+public class TaskRegistryTest
+{
+	private TaskRegistry registry;
+	private Application app1;
+	private Application app2;
+	
+	@Before
+	public void setUp()
+	{
+		this.registry = new TaskRegistry(1760000000L);
+		this.app1 = new Application("app1");
+		this.app2 = new Application("app2");
+	}
+	
+	@Test
+	public void testIdsAreCompactAndUnique()
+	{
+		TaskID first = this.registry.newTaskId(this.app1);
+		TaskID second = this.registry.newTaskId(this.app2);
+		
+		assertNotEquals(first.getValue(), second.getValue());
+		assertTrue(first.getValue().length() < 16);
+		assertEquals("t3uwow-0-0", first.getValue());
+		assertEquals("t3uwow-1-1", second.getValue());
+	}
+	
+	@Test
+	public void testLookup()
+	{
+		TaskID task1 = this.registry.newTaskId(this.app1);
+		TaskID task2 = this.registry.newTaskId(this.app2);
+		
+		assertSame(this.app1, this.registry.getApplication(task1));
+		assertSame(this.app2, this.registry.getApplication(task2));
+		assertNull(this.registry.getApplication(TaskID.newBuilder().setValue("app1-not-ours").build()));
+		
+		this.registry.remove(task1);
+		assertNull(this.registry.getApplication(task1));
+		assertSame(this.app2, this.registry.getApplication(task2));
+		assertEquals(1, this.registry.size());
+	}
+	
+	@Test
+	public void testManyTasks()
+	{
+		List<TaskID> tasks = new ArrayList<TaskID>();
+		for (int i = 0; i < 10000; i++)
+		{
+			tasks.add(this.registry.newTaskId(i % 2 == 0 ? this.app1 : this.app2));
+		}
+		for (int i = 0; i < tasks.size(); i += 3)
+		{
+			this.registry.remove(tasks.get(i));
+		}
+		for (int i = 0; i < tasks.size(); i++)
+		{
+			Application expected = i % 3 == 0 ? null : (i % 2 == 0 ? this.app1 : this.app2);
+			assertSame(expected, this.registry.getApplication(tasks.get(i)));
+		}
+	}
+	
+	@Test
+	public void testReregisteredAppKeepsIndex()
+	{
+		TaskID task = this.registry.newTaskId(this.app1);
+		Application replacement = new Application("app1");
+		this.registry.addApplication(replacement);
+		
+		assertSame(replacement, this.registry.getApplication(task));
+	}
+	
+	@Test
+	public void testRegisterExisting()
+	{
+		TaskRegistry previous = new TaskRegistry(1750000000L);
+		TaskID old = previous.newTaskId(this.app1);
+		
+		assertTrue(this.registry.register(old, this.app1));
+		assertSame(this.app1, this.registry.getApplication(old));
+		assertFalse(this.registry.register(TaskID.newBuilder().setValue("nope").build(), this.app1));
+	}
+}
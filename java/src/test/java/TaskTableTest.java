@@ -0,0 +1,72 @@
+import com.adsk.miniframework.TaskTable;
+import com.adsk.miniframework.TaskTable.State;
+
+import static org.junit.Assert.*;
+
+import java.util.Arrays;
+
+import org.apache.mesos.Protos.TaskID;
+import org.junit.Test;
+
+public class TaskTableTest
+{
+	private static TaskID id(String value)
+	{
+		return TaskID.newBuilder().setValue(value).build();
+	}
+	
+	@Test
+	public void testLifecycle()
+	{
+		TaskTable table = new TaskTable();
+		assertTrue(table.stage(id("t1")));
+		assertTrue(table.stage(id("t2")));
+		assertFalse(table.stage(id("t1")));
+		assertEquals(2, table.count(State.STAGED));
+		
+		assertEquals(State.STAGED, table.transition(id("t1"), State.RUNNING));
+		assertEquals(State.RUNNING, table.getState(id("t1")));
+		assertEquals(Arrays.asList(id("t2")), table.tasks(State.STAGED));
+		assertEquals(Arrays.asList(id("t1")), table.tasks(State.RUNNING));
+		
+		assertEquals(State.RUNNING, table.transition(id("t1"), State.FINISHED));
+		assertEquals(State.STAGED, table.transition(id("t2"), State.LOST));
+		assertNull(table.getState(id("t1")));
+		assertEquals(0, table.count(State.STAGED));
+		assertEquals(0, table.count(State.RUNNING));
+		assertEquals(1, table.count(State.FINISHED));
+		assertEquals(1, table.count(State.LOST));
+	}
+	
+	@Test
+	public void testIgnoredTransitions()
+	{
+		TaskTable table = new TaskTable();
+		assertNull(table.transition(id("unknown"), State.RUNNING));
+		
+		table.stage(id("t1"));
+		table.transition(id("t1"), State.RUNNING);
+		assertNull(table.transition(id("t1"), State.RUNNING));
+		assertNull(table.transition(id("t1"), State.STAGED));
+		assertEquals(1, table.count(State.RUNNING));
+		
+		table.transition(id("t1"), State.FAILED);
+		assertNull(table.transition(id("t1"), State.FINISHED));
+		assertEquals(1, table.count(State.FAILED));
+		assertEquals(0, table.count(State.FINISHED));
+	}
+	
+	@Test
+	public void testOrderAfterUnlink()
+	{
+		TaskTable table = new TaskTable();
+		for (String t : new String[] { "a", "b", "c", "d" })
+		{
+			table.stage(id(t));
+			table.transition(id(t), State.RUNNING);
+		}
+		table.transition(id("b"), State.FINISHED);
+		table.transition(id("d"), State.FAILED);
+		assertEquals(Arrays.asList(id("a"), id("c")), table.tasks(State.RUNNING));
+	}
+}
@@ -0,0 +1,122 @@
+package com.adsk.miniframework.allocation;
+
+import static org.junit.Assert.*;
+
+import java.util.Arrays;
+
+import org.junit.Test;
+
+//
+// - In the solver's package, as the solver is package private
+//
+public class PackingSolverTest
+{
+	private static final long BUDGET_NANOS = 10000000000L;
+	
+	//
+	// - One dimension, each item its own group unless given
+	//
+	private static double[][] sizes(double... sizes)
+	{
+		double[][] demand = new double[sizes.length][];
+		for (int i = 0; i < sizes.length; i++)
+		{
+			demand[i] = new double[] { sizes[i] };
+		}
+		return demand;
+	}
+	
+	private static int[] distinct(int n)
+	{
+		int[] group = new int[n];
+		for (int i = 0; i < n; i++)
+		{
+			group[i] = i;
+		}
+		return group;
+	}
+	
+	@Test
+	public void testBeatsBestFitDecreasing()
+	{
+		//
+		// - Best fit puts 5 and 4 together, then can't fit the last 2; 5+3+2 and 4+4+2 fit everything
+		//
+		double[][] demand = sizes(5, 4, 4, 3, 2, 2);
+		double[][] bins = sizes(10, 10);
+		PackingSolver solver = new PackingSolver(demand, new int[] { 0, 1, 1, 2, 3, 3 }, bins);
+		int[] assignment = solver.solve(BUDGET_NANOS);
+		assertFalse(solver.timedOut());
+		
+		double[] used = new double[bins.length];
+		for (int i = 0; i < demand.length; i++)
+		{
+			assertTrue(assignment[i] >= 0);
+			used[assignment[i]] += demand[i][0];
+		}
+		assertEquals(10, used[0], 1e-9);
+		assertEquals(10, used[1], 1e-9);
+	}
+	
+	@Test
+	public void testOutOfBudgetKeepsTheGreedyPacking()
+	{
+		//
+		// - Three items per bin is the best there is, but the bound allows 40, so the search
+		// - has nowhere near enough time to prove it
+		//
+		double[] items = new double[40];
+		Arrays.fill(items, 3);
+		double[] bins = new double[12];
+		Arrays.fill(bins, 10);
+		PackingSolver solver = new PackingSolver(sizes(items), distinct(items.length), sizes(bins));
+		int[] assignment = solver.solve(0);
+		assertTrue(solver.timedOut());
+		
+		for (int i = 0; i < items.length; i++)
+		{
+			assertEquals(i < 36 ? i / 3 : -1, assignment[i]);
+		}
+	}
+	
+	@Test
+	public void testIdenticalItemsNotPermuted()
+	{
+		double[] items = new double[10];
+		Arrays.fill(items, 3);
+		double[][] bins = sizes(10, 10, 10);
+		
+		PackingSolver distinct = new PackingSolver(sizes(items), distinct(items.length), bins);
+		distinct.solve(BUDGET_NANOS);
+		PackingSolver identical = new PackingSolver(sizes(items), new int[items.length], bins);
+		int[] assignment = identical.solve(BUDGET_NANOS);
+		assertFalse(distinct.timedOut());
+		assertFalse(identical.timedOut());
+		
+		//
+		// - Only the bins' fill levels are tried, never which item goes where
+		//
+		assertTrue(identical.nodes() * 50 < distinct.nodes());
+		for (int i = 1; i < items.length; i++)
+		{
+			assertTrue(assignment[i] < 0 || (assignment[i - 1] >= 0 && assignment[i] >= assignment[i - 1]));
+		}
+	}
+	
+	@Test
+	public void testNoItems()
+	{
+		PackingSolver solver = new PackingSolver(new double[0][], new int[0], new double[][] { { 4, 1024 } });
+		assertEquals(0, solver.solve(BUDGET_NANOS).length);
+	}
+	
+	@Test
+	public void testNoBins()
+	{
+		PackingSolver solver = new PackingSolver(new double[][] { { 1, 128 }, { 2, 256 } }, new int[] { 0, 1 }, new double[0][]);
+		int[] assignment = solver.solve(BUDGET_NANOS);
+		assertEquals(2, assignment.length);
+		assertEquals(-1, assignment[0]);
+		assertEquals(-1, assignment[1]);
+	}
+}